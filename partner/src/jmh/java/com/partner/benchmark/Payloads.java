@@ -0,0 +1,25 @@
+package com.partner.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * 基准测试用的上游响应样本 (src/jmh/resources/payloads，按真实接口的字段结构与数据规模整理，个人信息已替换)
+ */
+public final class Payloads {
+
+    private Payloads() {
+    }
+
+    public static byte[] load(String name) {
+        try (InputStream in = Payloads.class.getResourceAsStream("/payloads/" + name)) {
+            if (in == null) {
+                throw new IllegalStateException("缺少样本: " + name);
+            }
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.partner.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单实例可同时承载的慢同步数：平台线程池 (Tomcat 默认 200 线程) 与每任务一个虚拟线程的对比
+ * 每个任务模拟一次阻塞在上游响应上的同步 (latencyMs)，测量 concurrent 个同步全部完成的耗时；
+ * 平台线程约为 ceil(concurrent / 200) * latencyMs，虚拟线程应接近单次 latencyMs
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class SlowSyncCapacityBenchmark {
+
+    private static final int TOMCAT_MAX_THREADS = 200;
+
+    @Param({"200", "1000", "5000"})
+    private int concurrent;
+
+    @Param({"1000"})
+    private long latencyMs;
+
+    private ExecutorService platform;
+    private ExecutorService virtual;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        platform = Executors.newFixedThreadPool(TOMCAT_MAX_THREADS);
+        virtual = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        platform.shutdownNow();
+        virtual.shutdownNow();
+    }
+
+    @Benchmark
+    public void platformThreads() throws InterruptedException {
+        runAll(platform);
+    }
+
+    @Benchmark
+    public void virtualThreads() throws InterruptedException {
+        runAll(virtual);
+    }
+
+    private void runAll(ExecutorService executor) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(concurrent);
+        for (int i = 0; i < concurrent; i++) {
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(latencyMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,87 @@
+package com.partner.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.partner.utils.WeekMaskUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 周课表筛选：逐行 JSON 反序列化 (原 isWeekInList) 与周次位图的对比
+ * 模拟一个学生一学期的课程行，每次调用筛选出某一周有课的行数
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class WeekFilterBenchmark {
+
+    private static final TypeReference<List<Integer>> WEEK_LIST = new TypeReference<List<Integer>>() {};
+
+    @Param({"30", "300"})
+    private int rows;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private String[] weekLists;
+    private long[] weekMasks;
+    private int targetWeek;
+
+    @Setup
+    public void setup() throws Exception {
+        Random random = new Random(42);
+        weekLists = new String[rows];
+        weekMasks = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            // 典型周次：1-16 周连续、单双周、或前后半学期
+            int start = 1 + random.nextInt(8);
+            int end = start + 4 + random.nextInt(12);
+            int step = random.nextInt(3) == 0 ? 2 : 1;
+            List<Integer> weeks = new ArrayList<>();
+            for (int w = start; w <= end; w += step) weeks.add(w);
+            weekLists[i] = objectMapper.writeValueAsString(weeks);
+            weekMasks[i] = WeekMaskUtil.toMask(weeks);
+        }
+        targetWeek = 9;
+    }
+
+    @Benchmark
+    public void jsonList(Blackhole bh) {
+        int hits = 0;
+        for (String json : weekLists) {
+            try {
+                List<Integer> list = objectMapper.readValue(json, WEEK_LIST);
+                if (list.contains(targetWeek)) hits++;
+            } catch (Exception e) {
+                // 与原实现一致：解析失败视为无课
+            }
+        }
+        bh.consume(hits);
+    }
+
+    @Benchmark
+    public void bitmaskColumn(Blackhole bh) {
+        int hits = 0;
+        for (long mask : weekMasks) {
+            if (WeekMaskUtil.contains(mask, targetWeek)) hits++;
+        }
+        bh.consume(hits);
+    }
+
+    /**
+     * 未回填的旧数据：从 JSON 文本直接扫描出位图
+     */
+    @Benchmark
+    public void bitmaskFromJson(Blackhole bh) {
+        int hits = 0;
+        for (String json : weekLists) {
+            if (WeekMaskUtil.contains(WeekMaskUtil.fromJson(json), targetWeek)) hits++;
+        }
+        bh.consume(hits);
+    }
+}
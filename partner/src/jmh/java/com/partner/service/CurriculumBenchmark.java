@@ -0,0 +1,87 @@
+package com.partner.service;
+
+import com.partner.benchmark.Payloads;
+import com.partner.entity.ScheduleSystem;
+import com.partner.entity.ScheduleUser;
+import com.partner.vo.ClassScheduleVO;
+import com.partner.vo.SemesterScheduleVO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 课表热点路径：周次字符串解析、整学期课表解析、学期合并与按周取课
+ * 样本为一个学生一学期的完整课表响应 (schedule-full.json)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class CurriculumBenchmark {
+
+    private static final String STUDENT_ID = "202216040101";
+    private static final String SEMESTER = "2024-3";
+
+    private final CurriculumService service = new CurriculumService();
+
+    private byte[] payload;
+    private String[] zcds;
+    private List<ScheduleSystem> systemList;
+    private List<ScheduleUser> userOps;
+    private SemesterScheduleVO semester;
+
+    @Setup
+    public void setup() throws Exception {
+        payload = Payloads.load("schedule-full.json");
+        systemList = service.parseFullSchedule(new ByteArrayInputStream(payload), STUDENT_ID, SEMESTER);
+        zcds = systemList.stream().map(ScheduleSystem::getRawZcd).toArray(String[]::new);
+
+        // 典型的用户修改：隐藏一节课、新增两节自定义课程
+        userOps = new ArrayList<>();
+        userOps.add(userOp("DELETE", systemList.get(0).getDayOfWeek(), systemList.get(0).getStartNode(), null, null));
+        userOps.add(userOp("ADD", 6, 3, "考研数学", "[1,2,3,4,5,6,7,8,9,10,11,12,13,14,15,16]"));
+        userOps.add(userOp("ADD", 7, 9, "社团活动", "[2,4,6,8,10,12,14,16]"));
+        semester = service.mergeSemester(SEMESTER, systemList, userOps);
+    }
+
+    @Benchmark
+    public void parseZcd(Blackhole bh) {
+        for (String zcd : zcds) {
+            bh.consume(service.parseZcd(zcd));
+        }
+    }
+
+    @Benchmark
+    public List<ScheduleSystem> parseFullSchedule() throws Exception {
+        return service.parseFullSchedule(new ByteArrayInputStream(payload), STUDENT_ID, SEMESTER);
+    }
+
+    @Benchmark
+    public SemesterScheduleVO mergeSemester() {
+        return service.mergeSemester(SEMESTER, systemList, userOps);
+    }
+
+    @Benchmark
+    public List<ClassScheduleVO> sliceWeek() {
+        return service.sliceWeek(semester, 9);
+    }
+
+    private static ScheduleUser userOp(String type, int day, int startNode, String name, String weeks) {
+        ScheduleUser op = new ScheduleUser();
+        op.setStudentId(STUDENT_ID);
+        op.setSemester(SEMESTER);
+        op.setOperationType(type);
+        op.setTargetDay(day);
+        op.setTargetStartNode(startNode);
+        op.setCustomName(name);
+        op.setCustomLocation(name == null ? null : "图书馆");
+        op.setCustomWeeks(weeks);
+        op.setIsActive(true);
+        return op;
+    }
+}
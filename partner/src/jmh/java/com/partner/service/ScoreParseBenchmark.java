@@ -0,0 +1,117 @@
+package com.partner.service;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.partner.benchmark.Payloads;
+import com.partner.entity.Score;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 成绩页解析：原实现 (响应体转字符串 + Gson 树) 与流式解析的对比，以及真实成绩页样本 (score-page.json) 与数值字段解析
+ * 每次解析的分配量见 gc.alloc.rate.norm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ScoreParseBenchmark {
+
+    @Param({"500"})
+    private int items;
+
+    private byte[] payload;
+    private byte[] recorded;
+    private String[] numericFields;
+
+    @Setup
+    public void setup() throws Exception {
+        recorded = Payloads.load("score-page.json");
+        List<String> values = new ArrayList<>();
+        for (Score s : ScoreService.parseScorePage(new ByteArrayInputStream(recorded), "202216040101").items) {
+            values.add(s.getCredit() == null ? "--" : s.getCredit().toString());
+            values.add(s.getPoint() == null ? "" : s.getPoint().toString());
+            values.add(s.getGrade() == null ? "优秀" : s.getGrade().toString());
+        }
+        numericFields = values.toArray(new String[0]);
+
+        StringBuilder sb = new StringBuilder("{\"currentPage\":1,\"showCount\":").append(items)
+                .append(",\"totalResult\":").append(items).append(",\"totalPage\":1,\"items\":[");
+        for (int i = 0; i < items; i++) {
+            if (i > 0) sb.append(',');
+            int year = 2021 + i % 4;
+            sb.append("{\"bfzcj\":\"").append(60 + i % 40).append("\",\"bh\":\"2102\",\"cj\":\"").append(60 + i % 40)
+                    .append("\",\"jd\":\"").append(String.format("%.2f", 1 + (i % 40) / 10.0))
+                    .append("\",\"jsxm\":\"教师").append(i % 50).append("\",\"kcmc\":\"课程名称").append(i)
+                    .append("\",\"kcxzmc\":\"必修\",\"kkbmmc\":\"信息科学与工程学院\",\"xf\":\"").append(1 + i % 4)
+                    .append(".0\",\"xfjd\":\"").append(String.format("%.2f", (1 + i % 4) * (1 + (i % 40) / 10.0)))
+                    .append("\",\"xnmmc\":\"").append(year).append('-').append(year + 1)
+                    .append("\",\"xqmmc\":\"").append(1 + i % 2).append("\",\"xh\":\"202116040000\"")
+                    .append(",\"queryModel\":{\"currentPage\":1,\"showCount\":15,\"sortOrder\":\" \"}}");
+        }
+        payload = sb.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<Score> gsonTree() {
+        String json = new String(payload, StandardCharsets.UTF_8);
+        List<Score> list = new ArrayList<>();
+        JsonArray array = JsonParser.parseString(json).getAsJsonObject().getAsJsonArray("items");
+        for (JsonElement e : array) {
+            JsonObject obj = e.getAsJsonObject();
+            Score s = new Score();
+            s.setStudentId("202116040000");
+            s.setYear(str(obj, "xnmmc"));
+            s.setSemester(str(obj, "xqmmc"));
+            s.setCourseName(str(obj, "kcmc"));
+            s.setCredit(dbl(obj, "xf"));
+            s.setGrade(dbl(obj, "cj"));
+            s.setPoint(dbl(obj, "jd"));
+            s.setGpa(dbl(obj, "xfjd"));
+            list.add(s);
+        }
+        return list;
+    }
+
+    @Benchmark
+    public List<Score> jacksonStream() throws Exception {
+        return ScoreService.parseScorePage(new ByteArrayInputStream(payload), "202116040000").items;
+    }
+
+    @Benchmark
+    public List<Score> recordedPage() throws Exception {
+        return ScoreService.parseScorePage(new ByteArrayInputStream(recorded), "202216040101").items;
+    }
+
+    @Benchmark
+    public void toDouble(Blackhole bh) {
+        for (String v : numericFields) {
+            bh.consume(ScoreService.toDouble(v));
+        }
+    }
+
+    private static String str(JsonObject o, String k) {
+        return (o.has(k) && !o.get(k).isJsonNull()) ? o.get(k).getAsString() : "";
+    }
+
+    private static Double dbl(JsonObject o, String k) {
+        String v = str(o, k).trim();
+        if (v.isEmpty() || v.equals("--")) return null;
+        try {
+            return new BigDecimal(v).setScale(2, RoundingMode.HALF_UP).doubleValue();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
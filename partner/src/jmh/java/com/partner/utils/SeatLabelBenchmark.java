@@ -0,0 +1,51 @@
+package com.partner.utils;
+
+import com.partner.benchmark.Payloads;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 座位标签解析 (正则校验 + 内存索引查找，即 LibrarySeatUtil.parseSeatLabel 的命中路径)，
+ * 目录由区域布局样本 (seat-layout-03EN.json) 直接建立，不访问图书馆接口
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SeatLabelBenchmark {
+
+    // 用户输入的常见写法：紧凑、带横杠、小写
+    private static final String[] LABELS = {"03EN01A", "03EN11F", "03-EN-07-C", "03en24b", "03-en-18-E", "03EN05D"};
+
+    private final SeatCatalog catalog = new SeatCatalog();
+
+    @Setup
+    public void setup() throws Exception {
+        byte[] payload = Payloads.load("seat-layout-03EN.json");
+        catalog.put("03-EN", SeatCatalog.indexRegionLayout(new ByteArrayInputStream(payload), "03-EN"));
+        for (String label : LABELS) {
+            if (resolve(label) == null) {
+                throw new IllegalStateException("样本中没有座位 " + label);
+            }
+        }
+    }
+
+    @Benchmark
+    public void parseSeatLabel(Blackhole bh) {
+        for (String label : LABELS) {
+            bh.consume(resolve(label));
+        }
+    }
+
+    private Integer resolve(String label) {
+        String normLabel = SeatCatalog.normalize(label);
+        if (normLabel == null || SeatCatalog.regionId(SeatCatalog.regionKeyOf(normLabel)) == null) {
+            return null;
+        }
+        return catalog.seatId(normLabel);
+    }
+}
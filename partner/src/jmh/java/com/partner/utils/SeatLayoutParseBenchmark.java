@@ -0,0 +1,77 @@
+package com.partner.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.partner.benchmark.Payloads;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 区域座位布局解析：原实现 (响应体转字符串 + readTree) 与流式解析的对比，以及真实布局样本 (seat-layout-03EN.json)
+ * 每次解析的分配量见 gc.alloc.rate.norm
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SeatLayoutParseBenchmark {
+
+    private static final Pattern SEAT_SUFFIX_PATTERN = Pattern.compile(" ([0-9]{2})[桌座] ([A-Z])座$");
+
+    @Param({"500"})
+    private int seats;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private byte[] payload;
+    private byte[] recorded;
+
+    @Setup
+    public void setup() {
+        recorded = Payloads.load("seat-layout-03EN.json");
+        StringBuilder sb = new StringBuilder("{\"code\":200,\"msg\":\"查询成功\",\"seatList\":[");
+        for (int i = 0; i < seats; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"id\":").append(1000 + i)
+                    .append(",\"seatName\":\"三层东书库北区 ").append(String.format("%02d", 1 + i / 6)).append("桌 ")
+                    .append((char) ('A' + i % 6)).append("座\",\"regionid\":7,\"status\":").append(i % 3)
+                    .append(",\"x\":").append(i % 30 * 40).append(",\"y\":").append(i / 30 * 40)
+                    .append(",\"bookList\":[]}");
+        }
+        payload = sb.append("],\"total\":").append(seats).append('}').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Map<String, Integer> jacksonTree() throws Exception {
+        String json = new String(payload, StandardCharsets.UTF_8);
+        JsonNode root = mapper.readTree(json);
+        Map<String, Integer> index = new HashMap<>();
+        for (JsonNode node : root.get("seatList")) {
+            String seatName = node.path("seatName").asText("");
+            int id = node.path("id").asInt(-1);
+            if (id <= 0 || !seatName.contains("三层东书库北区")) continue;
+            Matcher m = SEAT_SUFFIX_PATTERN.matcher(seatName);
+            if (m.find()) {
+                index.putIfAbsent("03EN" + m.group(1) + m.group(2), id);
+            }
+        }
+        return index;
+    }
+
+    @Benchmark
+    public Map<String, Integer> jacksonStream() throws Exception {
+        return SeatCatalog.indexRegionLayout(new ByteArrayInputStream(payload), "03-EN");
+    }
+
+    @Benchmark
+    public Map<String, Integer> recordedLayout() throws Exception {
+        return SeatCatalog.indexRegionLayout(new ByteArrayInputStream(recorded), "03-EN");
+    }
+}
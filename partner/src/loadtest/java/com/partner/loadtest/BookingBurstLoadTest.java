@@ -0,0 +1,267 @@
+package com.partner.loadtest;
+
+import com.partner.PartnerApplication;
+import com.partner.entity.library.LibraryProfile;
+import com.partner.entity.library.LibraryTimeConfig;
+import com.partner.mapper.LibraryMapper;
+import com.partner.service.LibraryBookingService;
+import com.partner.service.LibrarySchedulerService;
+import com.partner.utils.HttpClientRegistry;
+import com.partner.utils.InstrumentedExecutor;
+import com.partner.utils.PreciseTimer;
+import com.partner.vo.LibraryBookingReportVO;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 预约开放时刻突发演练
+ * 启动 LibrarySimulator 与完整应用 (sites.library-base-url 指向模拟器)，按档位 (默认 10/100/1000) 写入一批
+ * 同一 autoStartTime 的自动预约配置，由 LibrarySchedulerService 触发、LibraryBookingService 执行，走与线上相同的路径；
+ * 每档输出：首个请求写出相对开放时刻的偏移分布、模拟器侧首个请求到达偏移、开放后 100ms 内落地的预约数，
+ * 以及浪费的请求 (未开放、座位已被占、已有预约、认证失败、释放的多余座位、未写出即取消)
+ *
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.main=com.partner.loadtest.BookingBurstLoadTest \
+ *     -Dloadtest.args="--loadtest.booking.profiles=10,100,1000 --spring.datasource.url=jdbc:mysql://..."
+ * 会写入并删除 library_profile / library_time_config，请使用独立的测试库；每档等待下一个整分钟开放，共需数分钟
+ *
+ * 参数 (--key=value，其余参数原样交给应用，如 --library.booking.burst-size=10)：
+ *   loadtest.booking.profiles      各档用户数 (默认 10,100,1000)
+ *   loadtest.booking.candidates    每个用户的候选座位数 (默认 3)
+ *   loadtest.booking.skew          座位热度偏斜，越大越集中在少数座位 (默认 2，1 为均匀)
+ *   loadtest.booking.lead-seconds  写入配置到开放时刻至少间隔 (默认 20)
+ *   loadtest.booking.settle-seconds  开放后最多等待任务结束的时间 (默认 90)
+ *   loadtest.lib.*                 模拟器座位数、延迟与错误注入，见 LibrarySimulator
+ */
+public class BookingBurstLoadTest {
+
+    private static final DateTimeFormatter HH_MM = DateTimeFormatter.ofPattern("HH:mm");
+    private static final long FIRST_WINDOW_NANOS = 100_000_000L;
+
+    private final PropertyResolver props;
+    private final LibrarySimulator sim;
+    private final LibraryMapper libraryMapper;
+    private final LibrarySchedulerService schedulerService;
+    private final LibraryBookingService bookingService;
+    private final InstrumentedExecutor bookingExecutor;
+
+    private BookingBurstLoadTest(PropertyResolver props, LibrarySimulator sim, ConfigurableApplicationContext ctx) {
+        this.props = props;
+        this.sim = sim;
+        this.libraryMapper = ctx.getBean(LibraryMapper.class);
+        this.schedulerService = ctx.getBean(LibrarySchedulerService.class);
+        this.bookingService = ctx.getBean(LibraryBookingService.class);
+        this.bookingExecutor = ctx.getBean("bookingExecutor", InstrumentedExecutor.class);
+    }
+
+    public static void main(String[] args) throws Exception {
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new SimpleCommandLinePropertySource(args));
+        PropertyResolver props = new PropertySourcesPropertyResolver(sources);
+        int[] levels = Arrays.stream(props.getProperty("loadtest.booking.profiles", "10,100,1000").split(","))
+                .map(String::trim).filter(s -> !s.isEmpty()).mapToInt(Integer::parseInt).toArray();
+        int maxLevel = Arrays.stream(levels).max().orElse(0);
+
+        LibrarySimulator sim = new LibrarySimulator(props);
+        sim.start();
+        System.out.println("图书馆模拟器: " + sim.baseUrl() + ", 座位数 " + sim.seatCount());
+
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(PartnerApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "sites.library-base-url=" + sim.baseUrl(),
+                        "library.booking.max-reports=" + Math.max(200, maxLevel),
+                        // 模拟器实现了取消预约接口，演练时开启释放以统计多抢到的座位
+                        "library.booking.release-extra-seats=true",
+                        "mybatis.configuration.log-impl=org.apache.ibatis.logging.nologging.NoLoggingImpl",
+                        "logging.level.com.partner.utils.LibraryHttpUtil=warn",
+                        "bulk-sync.enabled=false")
+                .run(args);
+
+        List<String> summary = new ArrayList<>();
+        try {
+            BookingBurstLoadTest test = new BookingBurstLoadTest(props, sim, ctx);
+            for (int profiles : levels) {
+                summary.add(test.runLevel(profiles));
+            }
+            System.out.println();
+            System.out.printf("%8s %6s %7s %8s %10s %10s %10s %10s %9s %8s%n", "profiles", "ran", "booked", "<100ms",
+                    "send p50", "send p99", "arrive p50", "arrive p99", "attempts", "wasted");
+            summary.forEach(System.out::println);
+            System.out.println();
+            System.out.println("限流/隔离舱: " + ctx.getBean(HttpClientRegistry.class).limitStats().get("WSLIB"));
+        } finally {
+            ctx.close();
+            sim.close();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * 单档演练：写入配置 -> 等待触发与突发结束 -> 统计 -> 清理
+     * @return 汇总表中的一行
+     */
+    private String runLevel(int profiles) throws InterruptedException {
+        long leadSeconds = props.getProperty("loadtest.booking.lead-seconds", Long.class, 20L);
+        LocalDateTime openAt = LocalDateTime.now().plusSeconds(leadSeconds).truncatedTo(ChronoUnit.MINUTES).plusMinutes(1);
+        long openEpochMillis = openAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        long openNanos = PreciseTimer.toNanoDeadline(openEpochMillis);
+        sim.reset(openNanos);
+
+        System.out.printf("%n=== %d 个用户, 开放时刻 %s ===%n", profiles, openAt);
+        Map<String, Long> configs = createProfiles(profiles, openAt.format(HH_MM));
+        long setupLeftMillis = openEpochMillis - System.currentTimeMillis();
+        if (setupLeftMillis < 6_000) {
+            System.out.printf("警告: 写入配置后距开放仅剩 %dms，可能已错过触发点，请调大 loadtest.booking.lead-seconds%n", setupLeftMillis);
+        }
+
+        awaitTasks(configs.keySet(), openNanos);
+        String row = report(profiles, configs.keySet());
+        removeProfiles(configs);
+        return row;
+    }
+
+    private Map<String, Long> createProfiles(int profiles, String autoStartTime) {
+        int candidates = Math.max(1, props.getProperty("loadtest.booking.candidates", Integer.class, 3));
+        double skew = props.getProperty("loadtest.booking.skew", Double.class, 2.0);
+        String prefix = props.getProperty("loadtest.account-prefix", "LB") + profiles + "_";
+        Random random = new Random(profiles);
+
+        Map<String, Long> configs = new LinkedHashMap<>();
+        for (int i = 0; i < profiles; i++) {
+            String studentId = prefix + i;
+            List<Integer> seats = pickSeats(random, Math.min(candidates, sim.seatCount()), skew);
+
+            LibraryProfile profile = new LibraryProfile();
+            profile.setStudentId(studentId);
+            profile.setPassword("pw-" + studentId);
+            profile.setSeatId(seats.get(0));
+            profile.setBackupSeatIds(seats.stream().skip(1).map(String::valueOf).collect(Collectors.joining(",")));
+            profile.setAutoEnable(true);
+            libraryMapper.saveProfile(profile);
+
+            LibraryTimeConfig config = new LibraryTimeConfig();
+            config.setStudentId(studentId);
+            config.setStartTime("08:00");
+            config.setEndTime("22:00");
+            config.setAutoStartTime(autoStartTime);
+            config.setIsActive(true);
+            libraryMapper.addTimeConfig(config);
+
+            // 与用户保存配置时相同的入口
+            schedulerService.onProfileChanged(studentId);
+            configs.put(studentId, config.getId());
+        }
+        return configs;
+    }
+
+    /**
+     * 按热度偏斜挑选不重复的候选座位：序号小的座位更热门，多人争抢
+     */
+    private List<Integer> pickSeats(Random random, int count, double skew) {
+        Set<Integer> seats = new LinkedHashSet<>();
+        while (seats.size() < count) {
+            int index = (int) (sim.seatCount() * Math.pow(random.nextDouble(), skew));
+            seats.add(LibrarySimulator.seatId(Math.min(index, sim.seatCount() - 1)));
+        }
+        return new ArrayList<>(seats);
+    }
+
+    /**
+     * 等到本档全部任务出报告，或开放后预约执行器已空闲，或超过 settle-seconds
+     */
+    private void awaitTasks(Set<String> studentIds, long openNanos) throws InterruptedException {
+        long settleNanos = props.getProperty("loadtest.booking.settle-seconds", Long.class, 90L) * 1_000_000_000L;
+        PreciseTimer.parkUntil(openNanos);
+        while (System.nanoTime() - openNanos < settleNanos) {
+            if (reportsOf(studentIds).size() >= studentIds.size()) return;
+            if (bookingExecutor.isIdle() && System.nanoTime() - openNanos > 5_000_000_000L) return;
+            Thread.sleep(500);
+        }
+        System.out.println("警告: 等待任务结束超时");
+    }
+
+    private List<LibraryBookingReportVO> reportsOf(Set<String> studentIds) {
+        return bookingService.getRecentReports().stream()
+                .filter(r -> studentIds.contains(r.getStudentId()))
+                .collect(Collectors.toList());
+    }
+
+    private String report(int profiles, Set<String> studentIds) {
+        List<LibraryBookingReportVO> reports = reportsOf(studentIds);
+        List<LibrarySimulator.Attempt> attempts = sim.attempts();
+        Map<String, Integer> held = sim.heldBookings();
+
+        // 首个请求写出 (应用侧) 与到达 (模拟器侧) 相对开放时刻的偏移
+        double[] sendOffsets = reports.stream().map(LibraryBookingReportVO::getFirstSendOffsetMs)
+                .filter(Objects::nonNull).mapToDouble(Double::doubleValue).sorted().toArray();
+        Map<String, Long> firstArrival = new HashMap<>();
+        for (LibrarySimulator.Attempt a : attempts) {
+            if (a.account() != null) firstArrival.merge(a.account(), a.offsetNanos(), Math::min);
+        }
+        double[] arrivalOffsets = firstArrival.values().stream().mapToDouble(n -> n / 1e6).sorted().toArray();
+
+        // 开放后 100ms 内落地且最终保留的预约
+        long landedEarly = attempts.stream()
+                .filter(a -> a.outcome() == LibrarySimulator.Outcome.BOOKED)
+                .filter(a -> a.offsetNanos() >= 0 && a.offsetNanos() < FIRST_WINDOW_NANOS)
+                .filter(a -> Objects.equals(held.get(a.account()), a.seatId()))
+                .count();
+
+        Map<LibrarySimulator.Outcome, Long> outcomes = attempts.stream()
+                .collect(Collectors.groupingBy(LibrarySimulator.Attempt::outcome, () -> new EnumMap<>(LibrarySimulator.Outcome.class), Collectors.counting()));
+        long booked = outcomes.getOrDefault(LibrarySimulator.Outcome.BOOKED, 0L);
+        long released = sim.cancellations();
+        long wasted = attempts.size() - booked + released;
+        int cancelledUnsent = reports.stream().map(LibraryBookingReportVO::getCancelledAttempts)
+                .filter(Objects::nonNull).mapToInt(Integer::intValue).sum();
+        long succeeded = reports.stream().filter(r -> Boolean.TRUE.equals(r.getSuccess())).count();
+
+        System.out.printf("执行: %d/%d 个任务出了报告 (其余未触发或仍在执行), 应用侧成功 %d, 模拟器侧持有预约 %d%n",
+                reports.size(), profiles, succeeded, held.size());
+        System.out.printf("首包写出偏移(ms): %s%n", distribution(sendOffsets));
+        System.out.printf("首包到达偏移(ms): %s%n", distribution(arrivalOffsets));
+        System.out.printf("开放后 100ms 内落地: %d%n", landedEarly);
+        System.out.printf("预约请求 %d 个: %s, 释放多余座位 %d, 未写出即取消 %d%n",
+                attempts.size(), outcomes, released, cancelledUnsent);
+        reports.stream().filter(r -> !Boolean.TRUE.equals(r.getSuccess()))
+                .collect(Collectors.groupingBy(r -> String.valueOf(r.getMessage()), Collectors.counting()))
+                .entrySet().stream().sorted(Map.Entry.<String, Long>comparingByValue().reversed()).limit(5)
+                .forEach(e -> System.out.printf("  失败 x%d: %s%n", e.getValue(), e.getKey()));
+        System.out.printf("模拟器请求: %s%n", sim.requestCounts());
+
+        return String.format("%8d %6d %7d %8d %10.1f %10.1f %10.1f %10.1f %9d %8d", profiles, reports.size(), held.size(),
+                landedEarly, percentile(sendOffsets, 50), percentile(sendOffsets, 99),
+                percentile(arrivalOffsets, 50), percentile(arrivalOffsets, 99), attempts.size(), wasted);
+    }
+
+    private void removeProfiles(Map<String, Long> configs) {
+        configs.forEach((studentId, configId) -> {
+            libraryMapper.deleteTimeConfig(configId);
+            libraryMapper.deleteProfile(studentId);
+            schedulerService.onProfileChanged(studentId);
+        });
+    }
+
+    private static String distribution(double[] sorted) {
+        if (sorted.length == 0) return "无数据";
+        return String.format("min=%.1f p50=%.1f p90=%.1f p99=%.1f max=%.1f (n=%d)", sorted[0],
+                percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), sorted[sorted.length - 1], sorted.length);
+    }
+
+    private static double percentile(double[] sorted, double percentile) {
+        if (sorted.length == 0) return Double.NaN;
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(rank, 1)) - 1];
+    }
+}
@@ -0,0 +1,333 @@
+package com.partner.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.springframework.core.env.PropertyResolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 图书馆座位预约系统 (wslib) 模拟器
+ * 模拟 captchaImage、login、addbooking、cancelbooking 与 layout/query：
+ * 预约窗口在 openAtNanos 开放，之前的预约请求直接拒绝；每个座位只能被一人预约、每人只能持有一个预约，
+ * 按请求到达顺序先到先得；记录每个请求到达相对开放时刻的偏移与结果，供压测统计
+ * 延迟与错误注入读取 loadtest.lib.* (默认值) 与 loadtest.lib.<接口>.*
+ */
+public class LibrarySimulator implements Closeable {
+
+    public static final String BASE_PATH = "/stage-api";
+    // 座位 ID = 区域ID * 1000 + 区域内序号；每个区域 99 桌 x 10 座
+    private static final int SEATS_PER_REGION = 990;
+    private static final int FIRST_REGION = 7;
+    private static final Map<Integer, String> REGION_NAMES = Map.of(
+            7, "三层东书库北区", 8, "三层东书库南区", 9, "三层西书库北区", 10, "三层西书库南区");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Pattern REGION_PARAM = Pattern.compile("[?&]regionid=(\\d+)");
+
+    /**
+     * 模拟的接口 (配置键 loadtest.lib.<key>.*)
+     */
+    public enum Route {
+        CAPTCHA("captcha"), WARM_UP("warm-up"), LOGIN("login"), ADD_BOOKING("addbooking"),
+        CANCEL_BOOKING("cancelbooking"), LAYOUT("layout"), UNKNOWN("unknown");
+
+        private final String key;
+
+        Route(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 预约请求的结果
+     */
+    public enum Outcome {
+        BOOKED, NOT_OPEN, SEAT_TAKEN, ALREADY_BOOKED, AUTH_FAILED, INJECTED_ERROR
+    }
+
+    /**
+     * 单个预约请求：到达时刻相对开放时刻的偏移与结果
+     */
+    public record Attempt(String account, int seatId, long offsetNanos, Outcome outcome) {
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<Route, UpstreamSimulator.Behavior> behaviors = new EnumMap<>(Route.class);
+    private final Map<Route, LongAdder> hits = new EnumMap<>(Route.class);
+    private final AtomicLong ids = new AtomicLong();
+    private final int seatCount;
+
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();          // token -> 账号
+    private final Map<String, String> captchas = new ConcurrentHashMap<>();
+
+    // 当前一轮预约窗口的状态 (reset 时清空)
+    private final Object bookingLock = new Object();
+    private final Map<Integer, String> seatHolders = new HashMap<>();               // 座位 -> 账号
+    private final Map<String, Integer> accountBookings = new HashMap<>();           // 账号 -> 座位
+    private final Map<String, Integer> bookingSeats = new HashMap<>();              // 预约ID -> 座位
+    private final List<Attempt> attempts = new ArrayList<>();
+    private final LongAdder cancellations = new LongAdder();
+    private volatile long openAtNanos = Long.MAX_VALUE;
+
+    public LibrarySimulator(PropertyResolver props) {
+        UpstreamSimulator.Behavior defaults = UpstreamSimulator.Behavior.from(props, "loadtest.lib.",
+                new UpstreamSimulator.Behavior(20, 10, 0));
+        for (Route route : Route.values()) {
+            behaviors.put(route, UpstreamSimulator.Behavior.from(props, "loadtest.lib." + route.key + ".", defaults));
+            hits.put(route, new LongAdder());
+        }
+        seatCount = Math.min(props.getProperty("loadtest.lib.seats", Integer.class, 600), SEATS_PER_REGION * REGION_NAMES.size());
+    }
+
+    public void start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return handle(request);
+            }
+        });
+        server.start(InetAddress.getByName("127.0.0.1"), 0);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getPort() + BASE_PATH;
+    }
+
+    /**
+     * 可预约的座位数
+     */
+    public int seatCount() {
+        return seatCount;
+    }
+
+    /**
+     * 第 index 个座位的 ID (0 <= index < seatCount)
+     */
+    public static int seatId(int index) {
+        return (FIRST_REGION + index / SEATS_PER_REGION) * 1000 + index % SEATS_PER_REGION;
+    }
+
+    /**
+     * 开始新一轮：清空全部预约，窗口在 openAtNanos (System.nanoTime 基准) 开放
+     */
+    public void reset(long openAtNanos) {
+        synchronized (bookingLock) {
+            seatHolders.clear();
+            accountBookings.clear();
+            bookingSeats.clear();
+            attempts.clear();
+            cancellations.reset();
+            for (LongAdder adder : hits.values()) adder.reset();
+            this.openAtNanos = openAtNanos;
+        }
+    }
+
+    public List<Attempt> attempts() {
+        synchronized (bookingLock) {
+            return new ArrayList<>(attempts);
+        }
+    }
+
+    /**
+     * 本轮结束时仍持有预约的账号 -> 座位
+     */
+    public Map<String, Integer> heldBookings() {
+        synchronized (bookingLock) {
+            return new HashMap<>(accountBookings);
+        }
+    }
+
+    public long cancellations() {
+        return cancellations.sum();
+    }
+
+    public Map<String, Long> requestCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (Route route : Route.values()) {
+            long n = hits.get(route).sum();
+            if (n > 0) counts.put(route.key, n);
+        }
+        return counts;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse handle(RecordedRequest request) {
+        long arrivedNanos = System.nanoTime();
+        String path = request.getPath() == null ? "" : request.getPath();
+        Route route = route(request.getMethod(), path);
+        hits.get(route).increment();
+
+        UpstreamSimulator.Behavior behavior = behaviors.get(route);
+        MockResponse response;
+        if (behavior.injectError()) {
+            if (route == Route.ADD_BOOKING) {
+                record(request, arrivedNanos, Outcome.INJECTED_ERROR);
+            }
+            response = new MockResponse().setResponseCode(503);
+            if (route != Route.WARM_UP) response.setBody("<html>Service Unavailable</html>");
+        } else {
+            response = switch (route) {
+                case CAPTCHA -> captcha();
+                // HEAD 请求不能带响应体，否则会污染连接上的下一个响应
+                case WARM_UP -> new MockResponse();
+                case LOGIN -> login(request);
+                case ADD_BOOKING -> addBooking(request, arrivedNanos);
+                case CANCEL_BOOKING -> cancelBooking(request);
+                case LAYOUT -> layout(path);
+                case UNKNOWN -> new MockResponse().setResponseCode(404);
+            };
+        }
+        return response.setHeadersDelay(behavior.nextDelayMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Route route(String method, String path) {
+        if (path.startsWith(BASE_PATH + "/captchaImage")) return "HEAD".equals(method) ? Route.WARM_UP : Route.CAPTCHA;
+        if (path.startsWith(BASE_PATH + "/login")) return Route.LOGIN;
+        if (path.startsWith(BASE_PATH + "/api/seatbook/user/addbooking")) return Route.ADD_BOOKING;
+        if (path.startsWith(BASE_PATH + "/api/seatbook/user/cancelbooking")) return Route.CANCEL_BOOKING;
+        if (path.startsWith(BASE_PATH + "/api/seatbook/layout/query")) return Route.LAYOUT;
+        return Route.UNKNOWN;
+    }
+
+    private MockResponse captcha() {
+        String uuid = "cap-" + ids.incrementAndGet();
+        captchas.put(uuid, uuid);
+        return json("{\"code\":200,\"msg\":\"操作成功\",\"captchaEnabled\":true,\"uuid\":\"" + uuid + "\",\"img\":\"\"}");
+    }
+
+    private MockResponse login(RecordedRequest request) {
+        JsonNode body;
+        try {
+            body = MAPPER.readTree(request.getBody().readUtf8());
+        } catch (IOException e) {
+            return json("{\"code\":500,\"msg\":\"请求格式错误\"}");
+        }
+        String account = body.path("username").asText(null);
+        String uuid = body.path("uuid").asText(null);
+        if (account == null || uuid == null || captchas.remove(uuid) == null) {
+            return json("{\"code\":500,\"msg\":\"验证码已失效\"}");
+        }
+        String token = "tok-" + account + "-" + ids.incrementAndGet();
+        tokens.put(token, account);
+        return json("{\"code\":200,\"msg\":\"操作成功\",\"token\":\"" + token + "\"}");
+    }
+
+    private MockResponse addBooking(RecordedRequest request, long arrivedNanos) {
+        String account = tokenAccount(request);
+        if (account == null) {
+            record(request, arrivedNanos, Outcome.AUTH_FAILED);
+            return json("{\"code\":401,\"msg\":\"认证失败，无法访问系统资源\"}");
+        }
+        int seatId = parseInt(request.getRequestUrl().queryParameter("seatid"));
+
+        Outcome outcome;
+        String bookingId = null;
+        synchronized (bookingLock) {
+            if (arrivedNanos < openAtNanos) {
+                outcome = Outcome.NOT_OPEN;
+            } else if (accountBookings.containsKey(account)) {
+                outcome = Outcome.ALREADY_BOOKED;
+            } else if (seatHolders.putIfAbsent(seatId, account) != null) {
+                outcome = Outcome.SEAT_TAKEN;
+            } else {
+                outcome = Outcome.BOOKED;
+                bookingId = String.valueOf(ids.incrementAndGet());
+                accountBookings.put(account, seatId);
+                bookingSeats.put(bookingId, seatId);
+            }
+            attempts.add(new Attempt(account, seatId, arrivedNanos - openAtNanos, outcome));
+        }
+
+        return switch (outcome) {
+            case BOOKED -> json("{\"code\":200,\"msg\":\"预约成功\",\"data\":{\"id\":" + bookingId + "}}");
+            case NOT_OPEN -> json("{\"code\":500,\"msg\":\"未到预约开放时间\"}");
+            case ALREADY_BOOKED -> json("{\"code\":500,\"msg\":\"您在该时间段已有预约\"}");
+            default -> json("{\"code\":500,\"msg\":\"该座位已被预约\"}");
+        };
+    }
+
+    private MockResponse cancelBooking(RecordedRequest request) {
+        String account = tokenAccount(request);
+        String bookingId = request.getRequestUrl().queryParameter("id");
+        synchronized (bookingLock) {
+            Integer seatId = bookingId == null ? null : bookingSeats.get(bookingId);
+            if (account == null || seatId == null || !account.equals(seatHolders.get(seatId))) {
+                return json("{\"code\":500,\"msg\":\"预约不存在\"}");
+            }
+            bookingSeats.remove(bookingId);
+            seatHolders.remove(seatId);
+            accountBookings.remove(account, seatId);
+            cancellations.increment();
+        }
+        return json("{\"code\":200,\"msg\":\"取消成功\"}");
+    }
+
+    private MockResponse layout(String path) {
+        Matcher m = REGION_PARAM.matcher(path);
+        int regionId = m.find() ? Integer.parseInt(m.group(1)) : -1;
+        String regionName = REGION_NAMES.get(regionId);
+
+        StringBuilder sb = new StringBuilder("{\"code\":200,\"msg\":\"查询成功\",\"seatList\":[");
+        if (regionName != null) {
+            int from = (regionId - FIRST_REGION) * SEATS_PER_REGION;
+            int to = Math.min(seatCount, from + SEATS_PER_REGION);
+            synchronized (bookingLock) {
+                for (int i = from; i < to; i++) {
+                    int k = i % SEATS_PER_REGION;
+                    int seatId = seatId(i);
+                    if (i > from) sb.append(',');
+                    sb.append("{\"id\":").append(seatId)
+                            .append(",\"seatName\":\"").append(regionName).append(' ')
+                            .append(String.format("%02d", k / 10 + 1)).append("桌 ").append((char) ('A' + k % 10)).append("座\"")
+                            .append(",\"regionid\":").append(regionId)
+                            .append(",\"status\":").append(seatHolders.containsKey(seatId) ? 2 : 0)
+                            .append(",\"bookList\":[]}");
+                }
+            }
+        }
+        sb.append("]}");
+        return json(sb.toString());
+    }
+
+    private void record(RecordedRequest request, long arrivedNanos, Outcome outcome) {
+        int seatId = parseInt(request.getRequestUrl().queryParameter("seatid"));
+        synchronized (bookingLock) {
+            attempts.add(new Attempt(tokenAccount(request), seatId, arrivedNanos - openAtNanos, outcome));
+        }
+    }
+
+    private String tokenAccount(RecordedRequest request) {
+        String auth = request.getHeader("Authorization");
+        if (auth == null || !auth.startsWith("Bearer ")) return null;
+        return tokens.get(auth.substring("Bearer ".length()));
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json;charset=UTF-8").setBody(body);
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value == null ? -1 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.partner.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.partner.PartnerApplication;
+import com.partner.utils.HttpClientRegistry;
+import okhttp3.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 登录 -> 成绩同步 -> 课表导入 端到端压测
+ * 启动 UpstreamSimulator 与完整应用 (上游地址通过 sites.* 指向模拟器)，N 个模拟用户并发走完三个阶段，
+ * 按阶段输出 p50/p99 耗时与吞吐量；成绩与课表阶段从提交任务计到长轮询拿到结果
+ *
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--loadtest.users=200 --spring.datasource.url=jdbc:mysql://..."
+ * 会写入 client/score/schedule_system 等表，请使用独立的测试库
+ *
+ * 参数 (--key=value，其余参数原样交给应用)：
+ *   loadtest.users             模拟用户数 (默认 50)
+ *   loadtest.ramp-up-seconds   用户在该时间内均匀开始 (默认 0，同时开始)
+ *   loadtest.account-prefix    模拟账号前缀 (默认 LT)
+ *   loadtest.xnm / xqm         课表学年学期 (默认 2024 / 3)
+ *   loadtest.job-timeout-seconds  单个同步任务的最长等待 (默认 120)
+ *   loadtest.sim.*             模拟器延迟与错误注入，见 UpstreamSimulator
+ */
+public class LoginSyncLoadTest {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final PropertyResolver props;
+    private final OkHttpClient http;
+    private String appUrl;
+
+    private final StageStats login = new StageStats("login");
+    private final StageStats score = new StageStats("score");
+    private final StageStats timetable = new StageStats("timetable");
+    private final StageStats total = new StageStats("total");
+
+    private LoginSyncLoadTest(PropertyResolver props, int users) {
+        this.props = props;
+        this.http = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(Math.max(users, 5), 1, TimeUnit.MINUTES))
+                .readTimeout(60, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        MutablePropertySources sources = new MutablePropertySources();
+        sources.addFirst(new SimpleCommandLinePropertySource(args));
+        PropertyResolver props = new PropertySourcesPropertyResolver(sources);
+        int users = props.getProperty("loadtest.users", Integer.class, 50);
+
+        UpstreamSimulator sim = new UpstreamSimulator(props);
+        sim.start();
+        System.out.println("上游模拟器: " + sim.baseUrl() + " " + sim.behaviors());
+
+        // 命令行参数优先于这里的默认值，如需放宽限流可传 --http.upstream.cas.limit.permits-per-second=...
+        ConfigurableApplicationContext ctx = new SpringApplicationBuilder(PartnerApplication.class)
+                .properties(
+                        "server.port=0",
+                        "sites.cas-base-url=" + sim.baseUrl(),
+                        "sites.service-url=" + sim.baseUrl() + UpstreamSimulator.SERVICE_PATH,
+                        "sites.jwgl-base-url=" + sim.baseUrl(),
+                        "mybatis.configuration.log-impl=org.apache.ibatis.logging.nologging.NoLoggingImpl",
+                        "bulk-sync.enabled=false")
+                .run(args);
+
+        int exitCode;
+        try {
+            LoginSyncLoadTest test = new LoginSyncLoadTest(props, users);
+            test.appUrl = "http://127.0.0.1:" + ctx.getEnvironment().getProperty("local.server.port");
+            test.run(users);
+            test.report(sim, ctx.getBean(HttpClientRegistry.class));
+            exitCode = test.total.failed() > 0 ? 1 : 0;
+        } finally {
+            ctx.close();
+            sim.close();
+        }
+        System.exit(exitCode);
+    }
+
+    private void run(int users) throws InterruptedException {
+        long rampUpNanos = TimeUnit.SECONDS.toNanos(props.getProperty("loadtest.ramp-up-seconds", Long.class, 0L));
+        String prefix = props.getProperty("loadtest.account-prefix", "LT");
+
+        System.out.printf("开始压测: %d 个用户, 爬坡 %d 秒%n", users, TimeUnit.NANOSECONDS.toSeconds(rampUpNanos));
+        long begin = System.nanoTime();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < users; i++) {
+                String account = prefix + String.format("%06d", i + 1);
+                long startAt = begin + (users > 1 ? rampUpNanos * i / (users - 1) : 0);
+                executor.submit(() -> {
+                    sleepUntil(startAt);
+                    runUser(account);
+                });
+            }
+        }
+        System.out.printf("压测结束，耗时 %.1f 秒%n", (System.nanoTime() - begin) / 1e9);
+    }
+
+    /**
+     * 单个用户依次执行三个阶段，前一阶段失败时不再继续
+     */
+    private void runUser(String account) {
+        long start = System.nanoTime();
+        boolean ok = stage(login, () -> {
+            JsonNode data = post("/client/login", Map.of("account", account, "password", "pw-" + account));
+            if (!data.hasNonNull("jsessionid")) throw new IllegalStateException("登录未返回会话");
+        }) && stage(score, () -> awaitJob(post("/client/queryScore",
+                Map.of("account", account, "forceRefresh", true)))
+        ) && stage(timetable, () -> awaitJob(post("/client/importSchedule",
+                Map.of("account", account, "forceRefresh", true,
+                        "xnm", props.getProperty("loadtest.xnm", "2024"),
+                        "xqm", props.getProperty("loadtest.xqm", "3"))))
+        );
+        if (ok) {
+            total.success(start, System.nanoTime());
+        } else {
+            total.failure(start, System.nanoTime(), "阶段失败");
+        }
+    }
+
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private boolean stage(StageStats stats, Step step) {
+        long start = System.nanoTime();
+        try {
+            step.run();
+            stats.success(start, System.nanoTime());
+            return true;
+        } catch (Exception e) {
+            stats.failure(start, System.nanoTime(), e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 长轮询同步任务直到结束；以本地旧数据完成 (stale) 视为失败
+     */
+    private void awaitJob(JsonNode job) throws Exception {
+        long deadline = System.nanoTime()
+                + TimeUnit.SECONDS.toNanos(props.getProperty("loadtest.job-timeout-seconds", Long.class, 120L));
+        String jobId = job.path("jobId").asText();
+        while ("RUNNING".equals(job.path("status").asText())) {
+            if (System.nanoTime() > deadline) throw new TimeoutException("任务超时");
+            job = get("/client/syncJob/" + jobId + "?wait=30");
+        }
+        if (!"SUCCESS".equals(job.path("status").asText())) {
+            throw new IllegalStateException("任务失败: " + job.path("message").asText());
+        }
+        if (job.path("stale").asBoolean(false)) {
+            throw new IllegalStateException("上游熔断，返回本地数据");
+        }
+    }
+
+    private JsonNode post(String path, Map<String, Object> body) throws IOException {
+        Request request = new Request.Builder().url(appUrl + path)
+                .post(RequestBody.create(MAPPER.writeValueAsBytes(body), JSON))
+                .build();
+        return call(request);
+    }
+
+    private JsonNode get(String path) throws IOException {
+        return call(new Request.Builder().url(appUrl + path).build());
+    }
+
+    private JsonNode call(Request request) throws IOException {
+        try (Response response = http.newCall(request).execute()) {
+            if (!response.isSuccessful()) throw new IOException("HTTP " + response.code());
+            JsonNode result = MAPPER.readTree(response.body().byteStream());
+            if (result.path("code").asInt() != 1) throw new IOException(result.path("msg").asText());
+            return result.path("data");
+        }
+    }
+
+    private void report(UpstreamSimulator sim, HttpClientRegistry registry) {
+        System.out.println();
+        System.out.println(StageStats.header());
+        for (StageStats stats : List.of(login, score, timetable, total)) {
+            System.out.println(stats.row());
+        }
+        for (StageStats stats : List.of(login, score, timetable)) {
+            stats.topFailures(5).forEach(e -> System.out.printf("  %s 失败 x%d: %s%n", stats.name(), e.getValue(), e.getKey()));
+        }
+
+        System.out.println();
+        System.out.printf("%-12s %10s %10s%n", "upstream", "requests", "injected");
+        sim.stats().forEach((route, counts) -> System.out.printf("%-12s %10d %10d%n", route, counts[0], counts[1]));
+
+        System.out.println();
+        System.out.println("限流/隔离舱: " + registry.limitStats());
+        System.out.println("熔断: " + registry.breakerStats());
+    }
+
+    private static void sleepUntil(long nanoTime) {
+        long remaining;
+        while ((remaining = nanoTime - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
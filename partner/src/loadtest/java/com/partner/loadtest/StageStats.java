@@ -0,0 +1,98 @@
+package com.partner.loadtest;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个阶段的耗时统计：成功耗时分布 (p50/p99)、失败原因，以及阶段首次开始到最后结束之间的吞吐量
+ */
+public class StageStats {
+
+    private final String name;
+    private final Queue<Long> latenciesNanos = new ConcurrentLinkedQueue<>();
+    private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+    private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastEnd = new AtomicLong(Long.MIN_VALUE);
+
+    public StageStats(String name) {
+        this.name = name;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public void success(long startNanos, long endNanos) {
+        latenciesNanos.add(endNanos - startNanos);
+        span(startNanos, endNanos);
+    }
+
+    public void failure(long startNanos, long endNanos, String reason) {
+        failures.computeIfAbsent(reason == null ? "unknown" : reason, k -> new LongAdder()).increment();
+        span(startNanos, endNanos);
+    }
+
+    private void span(long startNanos, long endNanos) {
+        firstStart.accumulateAndGet(startNanos, Math::min);
+        lastEnd.accumulateAndGet(endNanos, Math::max);
+    }
+
+    public int succeeded() {
+        return latenciesNanos.size();
+    }
+
+    public long failed() {
+        return failures.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * 成功耗时的百分位 (毫秒，最近秩法)
+     */
+    public double percentileMillis(double percentile) {
+        long[] sorted = sorted();
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.min(sorted.length, Math.max(rank, 1)) - 1] / 1e6;
+    }
+
+    public double maxMillis() {
+        long[] sorted = sorted();
+        return sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1e6;
+    }
+
+    /**
+     * 每秒完成的成功次数 (按阶段首次开始到最后结束计算)
+     */
+    public double throughput() {
+        long span = lastEnd.get() - firstStart.get();
+        return span <= 0 ? 0 : succeeded() / (span / 1e9);
+    }
+
+    /**
+     * 出现次数最多的失败原因
+     */
+    public List<Map.Entry<String, Long>> topFailures(int limit) {
+        List<Map.Entry<String, Long>> list = new ArrayList<>();
+        failures.forEach((reason, count) -> list.add(Map.entry(reason, count.sum())));
+        list.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+        return list.subList(0, Math.min(limit, list.size()));
+    }
+
+    private long[] sorted() {
+        long[] values = latenciesNanos.stream().mapToLong(Long::longValue).toArray();
+        Arrays.sort(values);
+        return values;
+    }
+
+    public static String header() {
+        return String.format("%-12s %8s %8s %10s %10s %10s %12s", "stage", "ok", "failed", "p50(ms)", "p99(ms)", "max(ms)", "ops/s");
+    }
+
+    public String row() {
+        return String.format("%-12s %8d %8d %10.1f %10.1f %10.1f %12.2f", name, succeeded(), failed(),
+                percentileMillis(50), percentileMillis(99), maxMillis(), throughput());
+    }
+}
@@ -0,0 +1,353 @@
+package com.partner.loadtest;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.springframework.core.env.PropertyResolver;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 上游模拟器 (MockWebServer)
+ * 模拟 CAS 登录 (getlt -> 提交 -> 带 ticket 重定向到门户)、教务系统 jhlogin 跳转、成绩分页查询与 xskbcxMobile_cxXsKb 课表接口，
+ * 每个接口可单独配置延迟、抖动与错误率；应用通过 sites.* 指向 baseUrl()
+ * 教务会话只认 jhlogin 跳转中签发的 JSESSIONID，其他请求按会话过期返回登录页
+ */
+public class UpstreamSimulator implements Closeable {
+
+    public static final String SERVICE_PATH = "/portal-pc/login/pcLogin";
+    private static final String LOGIN_PAGE = "<!DOCTYPE html><html><head><title>统一身份认证</title></head><body>login</body></html>";
+
+    /**
+     * 模拟的接口 (配置键 loadtest.sim.<key>.*)
+     */
+    public enum Route {
+        GETLT("getlt"), CAS_LOGIN("cas-login"), TICKET("ticket"), JHLOGIN("jhlogin"),
+        SCORE("score"), TIMETABLE("timetable"), PROBE("probe"), UNKNOWN("unknown");
+
+        private final String key;
+
+        Route(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * 接口行为：固定延迟 + 随机抖动，按比例返回 503
+     */
+    public record Behavior(long latencyMs, long jitterMs, double errorRate) {
+
+        /**
+         * 读取 <prefix>latency-ms / jitter-ms / error-rate，未配置的项取 defaults
+         */
+        public static Behavior from(PropertyResolver props, String prefix, Behavior defaults) {
+            return new Behavior(
+                    props.getProperty(prefix + "latency-ms", Long.class, defaults.latencyMs()),
+                    props.getProperty(prefix + "jitter-ms", Long.class, defaults.jitterMs()),
+                    props.getProperty(prefix + "error-rate", Double.class, defaults.errorRate()));
+        }
+
+        public long nextDelayMs() {
+            return latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        }
+
+        public boolean injectError() {
+            return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+        }
+    }
+
+    private final MockWebServer server = new MockWebServer();
+    private final Map<Route, Behavior> behaviors = new EnumMap<>(Route.class);
+    private final Map<Route, LongAdder> hits = new EnumMap<>(Route.class);
+    private final Map<Route, LongAdder> errors = new EnumMap<>(Route.class);
+    private final AtomicLong ids = new AtomicLong();
+
+    // ticket / 门户会话 -> 账号，jhlogin 时换成教务会话
+    private final Map<String, String> tickets = new ConcurrentHashMap<>();
+    private final Map<String, String> portalSessions = new ConcurrentHashMap<>();
+    private final Map<String, String> jwglSessions = new ConcurrentHashMap<>();
+
+    private final List<String> scoreItems;
+    private final byte[] timetable;
+
+    /**
+     * 读取 loadtest.sim.* 配置：latency-ms / jitter-ms / error-rate 为所有接口的默认值，
+     * loadtest.sim.<接口>.* 单独覆盖 (如 loadtest.sim.score.latency-ms=800)；score-items / courses 控制响应大小
+     */
+    public UpstreamSimulator(PropertyResolver props) {
+        Behavior defaults = Behavior.from(props, "loadtest.sim.", new Behavior(50, 20, 0));
+        for (Route route : Route.values()) {
+            behaviors.put(route, Behavior.from(props, "loadtest.sim." + route.key + ".", defaults));
+            hits.put(route, new LongAdder());
+            errors.put(route, new LongAdder());
+        }
+        scoreItems = buildScoreItems(props.getProperty("loadtest.sim.score-items", Integer.class, 60));
+        timetable = buildTimetable(props.getProperty("loadtest.sim.courses", Integer.class, 28));
+    }
+
+    public void start() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return handle(request);
+            }
+        });
+        // 使用 IP 而不是 localhost：CookieManager 会把无点号的主机名改写为 xxx.local，导致 Cookie 取不回来
+        server.start(InetAddress.getByName("127.0.0.1"), 0);
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getPort();
+    }
+
+    public Map<Route, Behavior> behaviors() {
+        return Collections.unmodifiableMap(behaviors);
+    }
+
+    /**
+     * 各接口请求数与注入的错误数
+     */
+    public Map<String, long[]> stats() {
+        Map<String, long[]> stats = new LinkedHashMap<>();
+        for (Route route : Route.values()) {
+            long n = hits.get(route).sum();
+            if (n > 0) stats.put(route.key, new long[]{n, errors.get(route).sum()});
+        }
+        return stats;
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+
+    private MockResponse handle(RecordedRequest request) {
+        String path = request.getPath() == null ? "" : request.getPath();
+        Route route = route(request.getMethod(), path);
+        hits.get(route).increment();
+
+        Behavior behavior = behaviors.get(route);
+        MockResponse response;
+        if (behavior.injectError()) {
+            errors.get(route).increment();
+            response = new MockResponse().setResponseCode(503).setBody("<html>Service Unavailable</html>");
+        } else {
+            response = switch (route) {
+                case GETLT -> getLt();
+                case CAS_LOGIN -> casLogin(request);
+                case TICKET -> ticket(request);
+                case JHLOGIN -> jhlogin(request, path);
+                case SCORE -> score(request);
+                case TIMETABLE -> timetable(request);
+                case PROBE -> probe(request);
+                case UNKNOWN -> new MockResponse().setResponseCode(404);
+            };
+        }
+        return response.setHeadersDelay(behavior.nextDelayMs(), TimeUnit.MILLISECONDS);
+    }
+
+    private static Route route(String method, String path) {
+        if (path.startsWith("/cas/login")) return "POST".equals(method) ? Route.CAS_LOGIN : Route.GETLT;
+        if (path.startsWith(SERVICE_PATH)) return Route.TICKET;
+        if (path.startsWith("/sso/jhlogin") || path.startsWith("/jwglxt/ticketlogin")) return Route.JHLOGIN;
+        if (path.startsWith("/jwglxt/cjcx/cjcx_cxXsgrcj.html")) return Route.SCORE;
+        if (path.startsWith("/jwglxt/kbcx/xskbcxMobile_cxXsKb.html")) return Route.TIMETABLE;
+        if (path.startsWith("/jwglxt/xtgl/index_initMenu.html")) return Route.PROBE;
+        return Route.UNKNOWN;
+    }
+
+    // --- CAS ---
+
+    private MockResponse getLt() {
+        long n = ids.incrementAndGet();
+        return new MockResponse()
+                .setHeader("Content-Type", "application/javascript;charset=UTF-8")
+                .setBody("jQuery1124_" + n + "({\"lt\":\"LT-" + n + "-sim\",\"execution\":\"e1s1\"})");
+    }
+
+    private MockResponse casLogin(RecordedRequest request) {
+        Map<String, String> form = form(request.getBody().readUtf8());
+        String account = form.get("username");
+        String password = form.getOrDefault("password", "");
+        String lt = form.getOrDefault("lt", "");
+        // 密码格式或 lt 不对时 CAS 停留在登录页 (200)
+        if (account == null || account.isEmpty() || !password.startsWith("{gilight}_") || !lt.startsWith("LT-")) {
+            return html(LOGIN_PAGE);
+        }
+        String service = request.getRequestUrl().queryParameter("service");
+        if (service == null || service.isEmpty()) service = baseUrl() + SERVICE_PATH;
+
+        String ticket = "ST-" + ids.incrementAndGet() + "-sim";
+        tickets.put(ticket, account);
+        return new MockResponse().setResponseCode(302)
+                .setHeader("Location", service + (service.contains("?") ? "&" : "?") + "ticket=" + ticket)
+                .addHeader("Set-Cookie", "CASTGC=TGT-" + ticket + "; Path=/cas; HttpOnly");
+    }
+
+    private MockResponse ticket(RecordedRequest request) {
+        String ticket = request.getRequestUrl().queryParameter("ticket");
+        String account = ticket == null ? null : tickets.remove(ticket);
+        if (account == null) return html(LOGIN_PAGE);
+
+        String portalSession = "P" + ids.incrementAndGet();
+        portalSessions.put(portalSession, account);
+        return html("<html><body>portal</body></html>")
+                .addHeader("Set-Cookie", "JSESSIONID=" + portalSession + "; Path=/; HttpOnly");
+    }
+
+    // --- 教务系统 ---
+
+    /**
+     * /sso/jhlogin (带门户会话) -> 302 /jwglxt/ticketlogin (下发 route) -> 302 首页 (下发教务 JSESSIONID)
+     */
+    private MockResponse jhlogin(RecordedRequest request, String path) {
+        Map<String, String> cookies = cookies(request);
+        if (path.startsWith("/sso/jhlogin")) {
+            String account = portalSessions.remove(cookies.getOrDefault("JSESSIONID", ""));
+            if (account == null) return html(LOGIN_PAGE);
+            return new MockResponse().setResponseCode(302)
+                    .setHeader("Location", "/jwglxt/ticketlogin?uid=" + account)
+                    .addHeader("Set-Cookie", "route=" + Integer.toHexString(account.hashCode()) + "; Path=/");
+        }
+        String account = request.getRequestUrl().queryParameter("uid");
+        if (account == null) return html(LOGIN_PAGE);
+        String session = "J" + ids.incrementAndGet();
+        jwglSessions.put(session, account);
+        return new MockResponse().setResponseCode(302)
+                .setHeader("Location", "/jwglxt/xtgl/index_initMenu.html")
+                .addHeader("Set-Cookie", "JSESSIONID=" + session + "; Path=/jwglxt; HttpOnly");
+    }
+
+    private MockResponse probe(RecordedRequest request) {
+        if (sessionAccount(request) == null) {
+            return new MockResponse().setResponseCode(302).setHeader("Location", "/jwglxt/xtgl/login_slogin.html");
+        }
+        return html("<html><body>index</body></html>");
+    }
+
+    private MockResponse score(RecordedRequest request) {
+        String account = sessionAccount(request);
+        if (account == null) return html(LOGIN_PAGE);
+
+        Map<String, String> form = form(request.getBody().readUtf8());
+        int size = Math.max(1, parseInt(form.get("queryModel.showCount"), 15));
+        int page = Math.max(1, parseInt(form.get("queryModel.currentPage"), 1));
+        int total = scoreItems.size();
+        int from = Math.min(total, (page - 1) * size);
+        int to = Math.min(total, from + size);
+
+        StringBuilder sb = new StringBuilder(256 + (to - from) * 400)
+                .append("{\"currentPage\":").append(page).append(",\"showCount\":").append(size)
+                .append(",\"totalResult\":").append(total)
+                .append(",\"totalPage\":").append((total + size - 1) / size).append(",\"items\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) sb.append(',');
+            sb.append(scoreItems.get(i).replace("${xh}", account));
+        }
+        sb.append("]}");
+        return json(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private MockResponse timetable(RecordedRequest request) {
+        if (sessionAccount(request) == null) return html(LOGIN_PAGE);
+        return json(timetable);
+    }
+
+    private String sessionAccount(RecordedRequest request) {
+        String session = cookies(request).get("JSESSIONID");
+        return session == null ? null : jwglSessions.get(session);
+    }
+
+    // --- 响应数据 ---
+
+    private static List<String> buildScoreItems(int count) {
+        String[] kinds = {"必修", "选修", "限选"};
+        List<String> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int year = 2022 + (i / 16) % 4;
+            int score = 60 + (i * 7) % 40;
+            double point = score >= 60 ? 1.0 + (score - 60) / 10.0 : 0;
+            double credit = 1.0 + i % 4 * 0.5;
+            items.add("{\"bfzcj\":\"" + score + "\",\"cj\":\"" + score + "\""
+                    + ",\"jd\":\"" + String.format("%.2f", point) + "\""
+                    + ",\"jsxm\":\"教师" + (i % 30) + "\",\"kcmc\":\"模拟课程" + i + "\""
+                    + ",\"kcxzmc\":\"" + kinds[i % kinds.length] + "\",\"kkbmmc\":\"信息科学与工程学院\""
+                    + ",\"xf\":\"" + credit + "\",\"xfjd\":\"" + String.format("%.2f", credit * point) + "\""
+                    + ",\"xnmmc\":\"" + year + "-" + (year + 1) + "\",\"xqmmc\":\"" + (1 + (i / 8) % 2) + "\""
+                    + ",\"xh\":\"${xh}\"}");
+        }
+        return items;
+    }
+
+    private static byte[] buildTimetable(int count) {
+        String[] zcds = {"1-16周", "1-8周", "9-16周", "1-15周(单)", "2-16周(双)", "1-4周,6-12周"};
+        String[] days = {"星期一", "星期二", "星期三", "星期四", "星期五"};
+        StringBuilder sb = new StringBuilder("{\"kbList\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) sb.append(',');
+            int day = i % 5;
+            int start = 1 + (i / 5 % 5) * 2;
+            sb.append("{\"kcmc\":\"模拟课程").append(i).append("\",\"xm\":\"教师").append(i % 30)
+                    .append("\",\"cdmc\":\"").append(1 + i % 6).append("号教学楼").append(100 + i).append("\"")
+                    .append(",\"zcd\":\"").append(zcds[i % zcds.length]).append("\"")
+                    .append(",\"xqj\":\"").append(day + 1).append("\",\"xqjmc\":\"").append(days[day]).append("\"")
+                    .append(",\"jcs\":\"").append(start).append('-').append(start + 1).append("\"")
+                    .append(",\"xf\":\"").append(1 + i % 4).append(".0\"}");
+        }
+        sb.append("],\"sjkList\":[]}");
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    // --- 工具 ---
+
+    private static MockResponse html(String body) {
+        return new MockResponse().setHeader("Content-Type", "text/html;charset=UTF-8").setBody(body);
+    }
+
+    private static MockResponse json(byte[] body) {
+        return new MockResponse().setHeader("Content-Type", "application/json;charset=UTF-8")
+                .setBody(new okio.Buffer().write(body));
+    }
+
+    private static Map<String, String> cookies(RecordedRequest request) {
+        Map<String, String> cookies = new HashMap<>();
+        for (String header : request.getHeaders().values("Cookie")) {
+            for (String part : header.split(";")) {
+                String[] kv = part.trim().split("=", 2);
+                // 同名 Cookie 按路径由具体到宽泛排列，取第一个 (门户与教务共用一个主机时 JSESSIONID 会同名)
+                if (kv.length == 2) cookies.putIfAbsent(kv[0], kv[1]);
+            }
+        }
+        return cookies;
+    }
+
+    private static Map<String, String> form(String body) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : body.split("&")) {
+            String[] kv = pair.split("=", 2);
+            if (kv.length == 2) {
+                form.put(URLDecoder.decode(kv[0], StandardCharsets.UTF_8), URLDecoder.decode(kv[1], StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static int parseInt(String value, int def) {
+        try {
+            return value == null ? def : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return def;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.partner.config;
+
+import com.partner.utils.InstrumentedExecutor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 执行器配置
+ * bookingExecutor：预约任务用的虚拟线程执行器 (由 LibrarySchedulerService 提交)，每个任务一个虚拟线程，
+ * 等待开放时刻和突发结果时不占用平台线程，同一分钟的预约任务全部同时开始，不排队；
+ * crawlExecutor：爬取任务用的虚拟线程执行器 (每任务一个虚拟线程)，阻塞在网络 IO 上不占用平台线程
+ */
+@Configuration
+public class ExecutorConfig {
+
+    @Bean(name = "bookingExecutor", destroyMethod = "close")
+    public InstrumentedExecutor bookingExecutor() {
+        ThreadFactory factory = Thread.ofVirtual().name("booking-", 0).factory();
+        return new InstrumentedExecutor("booking", Executors.newThreadPerTaskExecutor(factory));
+    }
+
+    @Bean(name = "crawlExecutor", destroyMethod = "close")
+    public InstrumentedExecutor crawlExecutor() {
+        ThreadFactory factory = Thread.ofVirtual().name("crawl-", 0).factory();
+        return new InstrumentedExecutor("crawl", Executors.newThreadPerTaskExecutor(factory));
+    }
+}
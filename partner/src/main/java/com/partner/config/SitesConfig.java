@@ -0,0 +1,26 @@
+package com.partner.config;
+
+import com.partner.enums.SitesURL;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * 上游地址覆盖：sites.<key> 存在时替换 SitesURL 中的默认地址 (压测时指向本地模拟器)
+ */
+@Slf4j
+@Configuration
+public class SitesConfig {
+
+    @Autowired
+    public SitesConfig(Environment env) {
+        for (SitesURL site : SitesURL.values()) {
+            String url = env.getProperty("sites." + site.key());
+            if (url != null && !url.isBlank()) {
+                site.override(url);
+                log.warn("上游地址已覆盖: {} -> {}", site, site.getUrl());
+            }
+        }
+    }
+}
@@ -3,6 +3,8 @@ package com.partner.controller;
 import com.partner.entity.Client;
 import com.partner.entity.Result;
 import com.partner.mapper.ClientMapper;
+import com.partner.service.BulkSyncService;
+import com.partner.service.ScoreAggregateService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +21,12 @@ public class AdminClientController {
     @Autowired
     private ClientMapper clientMapper;
 
+    @Autowired
+    private ScoreAggregateService scoreAggregateService;
+
+    @Autowired
+    private BulkSyncService bulkSyncService;
+
     /**
      * 分页查询用户列表
      * GET /admin/clients?page=1&size=10&keyword=张三
@@ -71,4 +79,26 @@ public class AdminClientController {
         clientMapper.deleteById(id);
         return Result.success("用户删除成功");
     }
-}
\ No newline at end of file
+
+    /**
+     * 从成绩表重建绩点汇总 (不传学号则重建全部)
+     * POST /admin/score-aggregate/rebuild?studentId=202116040000
+     */
+    @PostMapping("/score-aggregate/rebuild")
+    public Result rebuildScoreAggregate(@RequestParam(required = false) String studentId) {
+        int rows = scoreAggregateService.rebuild(studentId);
+        return Result.success("汇总已重建，共 " + rows + " 行");
+    }
+
+    /**
+     * 立即启动一轮后台批量同步 (上一轮未完成时从断点继续)
+     * POST /admin/bulk-sync/run
+     */
+    @PostMapping("/bulk-sync/run")
+    public Result runBulkSync() {
+        if (!bulkSyncService.start()) {
+            return Result.error("批量同步正在执行中");
+        }
+        return Result.success("批量同步已启动");
+    }
+}
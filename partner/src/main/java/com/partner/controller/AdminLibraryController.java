@@ -5,6 +5,7 @@ import com.partner.entity.library.LibraryProfile;
 import com.partner.entity.library.LibraryTimeConfig;
 import com.partner.mapper.LibraryMapper;
 import com.partner.service.LibraryBookingService;
+import com.partner.service.LibrarySchedulerService;
 import com.partner.utils.LibraryHttpUtil;
 import com.partner.utils.LibrarySeatUtil;
 import lombok.Data;
@@ -13,6 +14,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Slf4j
 @RestController
@@ -28,6 +30,9 @@ public class AdminLibraryController {
     @Autowired
     private LibrarySeatUtil seatUtil;
 
+    @Autowired
+    private LibrarySchedulerService schedulerService;
+
     // ================= 用户管理 (Profile) =================
 
     /**
@@ -58,7 +63,15 @@ public class AdminLibraryController {
             }
         }
 
+        // 解析备选座位
+        List<Integer> backupIds = seatUtil.parseSeatLabels(profile.getBackupSeatLabels());
+        if (backupIds == null) {
+            return Result.error("备选座位解析失败: " + profile.getBackupSeatLabels());
+        }
+        profile.setBackupSeatIds(joinIds(backupIds));
+
         libraryMapper.saveProfile(profile);
+        schedulerService.onProfileChanged(profile.getStudentId());
         return Result.success("用户保存成功");
     }
 
@@ -68,6 +81,7 @@ public class AdminLibraryController {
     @DeleteMapping("/user/{studentId}")
     public Result deleteUser(@PathVariable String studentId) {
         libraryMapper.deleteProfile(studentId);
+        schedulerService.onProfileChanged(studentId);
         return Result.success("用户删除成功");
     }
 
@@ -94,6 +108,7 @@ public class AdminLibraryController {
         if (config.getIsActive() == null) config.setIsActive(true);
 
         libraryMapper.addTimeConfig(config);
+        schedulerService.onTimeConfigChanged(config.getId());
         return Result.success("时间配置添加成功");
     }
 
@@ -106,6 +121,7 @@ public class AdminLibraryController {
             return Result.error("配置ID不能为空");
         }
         libraryMapper.updateTimeConfig(config);
+        schedulerService.onTimeConfigChanged(config.getId());
         return Result.success("时间配置更新成功");
     }
 
@@ -115,9 +131,18 @@ public class AdminLibraryController {
     @DeleteMapping("/time/{id}")
     public Result deleteTimeConfig(@PathVariable Long id) {
         libraryMapper.deleteTimeConfig(id);
+        schedulerService.onTimeConfigRemoved(id);
         return Result.success("时间配置删除成功");
     }
 
+    /**
+     * 查看当前自动预约排期 (按触发时间排序)
+     */
+    @GetMapping("/triggers")
+    public Result getTriggers() {
+        return Result.success(schedulerService.snapshot());
+    }
+
     // ================= 测试功能 =================
 
     /**
@@ -145,6 +170,38 @@ public class AdminLibraryController {
         }
     }
 
+    // ================= 座位目录 =================
+
+    /**
+     * 查看座位目录缓存概况 (区域数、座位数、缓存年龄)
+     */
+    @GetMapping("/seat-catalog")
+    public Result getSeatCatalog() {
+        return Result.success(seatUtil.catalogStatus());
+    }
+
+    /**
+     * 强制刷新全部区域的座位目录
+     */
+    @PostMapping("/seat-catalog/refresh")
+    public Result refreshSeatCatalog() {
+        int refreshed = seatUtil.refreshAll();
+        log.info("管理员强制刷新座位目录: 成功 {} 个区域", refreshed);
+        return Result.success(seatUtil.catalogStatus());
+    }
+
+    /**
+     * 最近的自动预约执行报告 (含首包相对开放时刻的偏移)
+     */
+    @GetMapping("/booking-reports")
+    public Result getBookingReports() {
+        return Result.success(bookingService.getRecentReports());
+    }
+
+    private String joinIds(List<Integer> ids) {
+        return ids.isEmpty() ? null : ids.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
     @Data
     public static class TestBookingDTO {
         private String studentId;
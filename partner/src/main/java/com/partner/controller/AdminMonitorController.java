@@ -0,0 +1,182 @@
+package com.partner.controller;
+
+import com.partner.entity.Result;
+import com.partner.enums.Upstream;
+import com.partner.service.AuthService;
+import com.partner.service.BulkSyncService;
+import com.partner.service.CurriculumService;
+import com.partner.service.JwglSessionPool;
+import com.partner.service.ScoreService;
+import com.partner.service.SyncJobService;
+import com.partner.utils.HttpClientRegistry;
+import com.partner.utils.InstrumentedExecutor;
+import com.partner.utils.LibraryTokenCache;
+import com.partner.utils.UpstreamLimiter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 运行状态监控 (连接池、缓存等)
+ */
+@Slf4j
+@RestController
+@RequestMapping("/admin/monitor")
+public class AdminMonitorController {
+
+    @Autowired
+    private HttpClientRegistry clientRegistry;
+
+    @Autowired
+    private LibraryTokenCache libraryTokenCache;
+
+    @Autowired
+    private JwglSessionPool jwglSessionPool;
+
+    @Autowired
+    private CurriculumService curriculumService;
+
+    @Autowired
+    private ScoreService scoreService;
+
+    @Autowired
+    private BulkSyncService bulkSyncService;
+
+    @Autowired
+    private SyncJobService syncJobService;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    @Qualifier("bookingExecutor")
+    private InstrumentedExecutor bookingExecutor;
+
+    @Autowired
+    @Qualifier("crawlExecutor")
+    private InstrumentedExecutor crawlExecutor;
+
+    /**
+     * 各上游 HTTP 连接池与调度器统计
+     * GET /admin/monitor/http-pools
+     */
+    @GetMapping("/http-pools")
+    public Result getHttpPools() {
+        return Result.success(clientRegistry.stats());
+    }
+
+    /**
+     * 各上游限流与隔离舱状态 (当前配置、在途、排队、拒绝次数)
+     * GET /admin/monitor/upstream-limits
+     */
+    @GetMapping("/upstream-limits")
+    public Result getUpstreamLimits() {
+        return Result.success(clientRegistry.limitStats());
+    }
+
+    /**
+     * 各上游熔断状态 (窗口内失败/慢调用数、熔断次数、熔断期间拒绝次数)
+     * GET /admin/monitor/circuit-breakers
+     */
+    @GetMapping("/circuit-breakers")
+    public Result getCircuitBreakers() {
+        return Result.success(clientRegistry.breakerStats());
+    }
+
+    /**
+     * 运行时调整上游限制 (提交完整配置，立即生效，重启后恢复配置文件中的值)
+     * PUT /admin/monitor/upstream-limits/JWGL
+     */
+    @PutMapping("/upstream-limits/{upstream}")
+    public Result updateUpstreamLimits(@PathVariable Upstream upstream, @RequestBody UpstreamLimiter.Config config) {
+        if (config.getMaxConcurrent() <= 0 || config.getReserved() < 0 || config.getReserved() >= config.getMaxConcurrent()) {
+            return Result.error("并发上限必须大于 0，保留名额必须小于并发上限");
+        }
+        if (config.getPermitsPerSecond() > 0 && config.getBurst() < 1) {
+            return Result.error("限速时令牌桶容量至少为 1");
+        }
+        if (config.getMaxQueue() < 0 || config.getMaxWaitMs() < 0) {
+            return Result.error("排队数与等待时间不能为负数");
+        }
+        clientRegistry.limiter(upstream).reconfigure(config);
+        log.info("上游限制已调整: {} -> {}", upstream, config);
+        return Result.success(clientRegistry.limiter(upstream).stats());
+    }
+
+    /**
+     * 图书馆登录态缓存统计
+     */
+    @GetMapping("/library-tokens")
+    public Result getLibraryTokens() {
+        return Result.success(libraryTokenCache.stats());
+    }
+
+    /**
+     * 教务会话池统计
+     */
+    @GetMapping("/jwgl-sessions")
+    public Result getJwglSessions() {
+        return Result.success(jwglSessionPool.stats());
+    }
+
+    /**
+     * 学期/周课表缓存命中统计
+     */
+    @GetMapping("/schedule-cache")
+    public Result getScheduleCache() {
+        return Result.success(curriculumService.cacheStats());
+    }
+
+    /**
+     * 最近的成绩爬取分页统计 (页数、条数、每页耗时)
+     */
+    @GetMapping("/score-syncs")
+    public Result getScoreSyncs() {
+        return Result.success(scoreService.getRecentSyncStats());
+    }
+
+    /**
+     * 后台批量同步进度 (检查点、已处理/失败人数)
+     */
+    @GetMapping("/bulk-sync")
+    public Result getBulkSync() {
+        return Result.success(bulkSyncService.stats());
+    }
+
+    /**
+     * 同步任务数 (保留中 / 执行中)
+     */
+    @GetMapping("/sync-jobs")
+    public Result getSyncJobs() {
+        return Result.success(syncJobService.stats());
+    }
+
+    /**
+     * 并发相同操作的合并统计 (实际执行次数、合并次数、复用期内命中次数)
+     * GET /admin/monitor/single-flight
+     */
+    @GetMapping("/single-flight")
+    public Result getSingleFlight() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("login", authService.flightStats());
+        stats.put("syncScores", scoreService.flightStats());
+        stats.put("importAllSchedules", curriculumService.flightStats());
+        return Result.success(stats);
+    }
+
+    /**
+     * 执行器统计：预约与爬取虚拟线程执行器分开统计
+     * GET /admin/monitor/executors
+     */
+    @GetMapping("/executors")
+    public Result getExecutors() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("booking", bookingExecutor.stats());
+        stats.put("crawl", crawlExecutor.stats());
+        return Result.success(stats);
+    }
+}
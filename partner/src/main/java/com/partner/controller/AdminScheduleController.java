@@ -3,6 +3,7 @@ package com.partner.controller;
 import com.partner.entity.Result;
 import com.partner.entity.ScheduleSystem;
 import com.partner.mapper.CurriculumMapper;
+import com.partner.service.CurriculumService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
@@ -19,6 +20,9 @@ public class AdminScheduleController {
     @Autowired
     private CurriculumMapper curriculumMapper;
 
+    @Autowired
+    private CurriculumService curriculumService;
+
     /**
      * 分页查询课表列表
      * GET /admin/schedules
@@ -60,7 +64,7 @@ public class AdminScheduleController {
         if (id == null) {
             return Result.error("ID不能为空");
         }
-        curriculumMapper.deleteScheduleById(id);
+        curriculumService.deleteSystemSchedule(id);
         log.info("管理员删除了课程记录 ID: {}", id);
         return Result.success("删除成功");
     }
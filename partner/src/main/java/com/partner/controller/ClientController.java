@@ -5,13 +5,20 @@ import com.partner.dto.LoginDTO;
 import com.partner.entity.Result;
 import com.partner.service.AuthService;
 import com.partner.service.CurriculumService;
+import com.partner.service.JwglSessionPool;
+import com.partner.service.ScoreAggregateService;
 import com.partner.service.ScoreService;
+import com.partner.service.SyncJobService;
 import com.partner.vo.ClassScheduleVO;
+import com.partner.vo.SyncJobVO;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -27,6 +34,18 @@ public class ClientController {
     @Autowired
     private CurriculumService curriculumService;
 
+    @Autowired
+    private ScoreAggregateService scoreAggregateService;
+
+    @Autowired
+    private SyncJobService syncJobService;
+
+    @Autowired
+    private JwglSessionPool sessionPool;
+
+    // 长轮询最长挂起时间
+    private static final long MAX_WAIT_SECONDS = 30;
+
 
     /**
      * 客户登录
@@ -44,34 +63,98 @@ public class ClientController {
 
     /**
      * 客户查询成绩
+     * 提交后台同步任务并立即返回 jobId，结果 (变更集) 通过 /client/syncJob/{jobId} 获取
      */
     @PostMapping("/queryScore")
     public Result queryScore(@RequestBody CommonQueryDTO queryDTO) {
         try {
             log.info("查询成绩: {}", queryDTO.getAccount());
-            return Result.success(scoreService.syncScores(queryDTO));
+            return jobResult(syncJobService.submitScoreSync(queryDTO));
         } catch (Exception e) {
             log.error("成绩查询失败", e);
             return Result.error(e.getMessage());
         }
     }
 
+    /**
+     * 客户查询本地成绩 (不访问教务系统，配合 queryScore 返回的变更集使用)
+     */
+    @PostMapping("/queryLocalScore")
+    public Result queryLocalScore(@RequestBody CommonQueryDTO queryDTO) {
+        try {
+            sessionPool.checkIssued(queryDTO.getAccount(), queryDTO.getJsessionid());
+            return Result.success(scoreService.listLocalScores(queryDTO));
+        } catch (Exception e) {
+            log.error("本地成绩查询失败", e);
+            return Result.error(e.getMessage());
+        }
+    }
+
+    /**
+     * 客户查询绩点与学分汇总 (总计 + 按学期，读取预聚合结果)
+     */
+    @PostMapping("/queryGpa")
+    public Result queryGpa(@RequestBody CommonQueryDTO queryDTO) {
+        try {
+            sessionPool.checkIssued(queryDTO.getAccount(), queryDTO.getJsessionid());
+            return Result.success(scoreAggregateService.getSummary(queryDTO.getAccount()));
+        } catch (Exception e) {
+            log.error("绩点汇总查询失败", e);
+            return Result.error(e.getMessage());
+        }
+    }
+
     /**
      * 【新】导入/同步全量课表
      * 场景：用户本学期首次使用，或点击“同步最新课表”按钮
+     * 提交后台导入任务并立即返回 jobId，导入结果通过 /client/syncJob/{jobId} 获取
      */
     @PostMapping("/importSchedule")
     public Result importSchedule(@RequestBody CommonQueryDTO queryDTO) {
         try {
             log.info("导入课表: {}", queryDTO.getAccount());
-            curriculumService.importAllSchedules(queryDTO);
-            return Result.success("课表导入成功");
+            return jobResult(syncJobService.submitScheduleImport(queryDTO));
         } catch (Exception e) {
             log.error("课表导入失败", e);
             return Result.error("导入失败: " + e.getMessage());
         }
     }
 
+    /**
+     * 查询同步任务状态
+     * wait > 0 时长轮询：任务结束立即返回，否则最多挂起 wait 秒 (上限 30) 后返回当前状态，不占用请求线程
+     * GET /client/syncJob/{jobId}?wait=25
+     */
+    @GetMapping("/syncJob/{jobId}")
+    public DeferredResult<Result> getSyncJob(@PathVariable String jobId, @RequestParam(defaultValue = "0") long wait) {
+        long waitSeconds = Math.min(Math.max(wait, 0), MAX_WAIT_SECONDS);
+        DeferredResult<Result> deferred = new DeferredResult<>(TimeUnit.SECONDS.toMillis(waitSeconds) + 1000);
+
+        CompletableFuture<?> done = syncJobService.whenDone(jobId);
+        if (done == null) {
+            deferred.setResult(Result.error("任务不存在或已过期"));
+            return deferred;
+        }
+        if (done.isDone() || waitSeconds == 0) {
+            deferred.setResult(jobResult(syncJobService.getJob(jobId)));
+            return deferred;
+        }
+        done.completeOnTimeout(null, waitSeconds, TimeUnit.SECONDS)
+                .thenRun(() -> deferred.setResult(jobResult(syncJobService.getJob(jobId))));
+        deferred.onTimeout(() -> deferred.setResult(jobResult(syncJobService.getJob(jobId))));
+        return deferred;
+    }
+
+    /**
+     * 任务以本地旧数据完成 (上游熔断) 时在返回结果上标记 stale/asOf
+     */
+    private Result jobResult(SyncJobVO job) {
+        if (job != null && Boolean.TRUE.equals(job.getStale())) {
+            return Result.stale(job, job.getAsOf());
+        }
+        return Result.success(job);
+    }
+
     /**
      * 【改】查询周课表
      * 场景：日常打开课表，切换周次。此接口现在【只查数据库】，速度极快。
@@ -95,6 +178,21 @@ public class ClientController {
         }
     }
 
+    /**
+     * 【新】查询整学期课表
+     * 场景：打开课表时一次拉取，之后切换周次由前端按 weeks 索引直接取，不再请求服务端
+     */
+    @PostMapping("/querySemesterSchedule")
+    public Result querySemesterSchedule(@RequestBody CommonQueryDTO queryDTO) {
+        try {
+            log.info("查询学期课表: {} {}-{}", queryDTO.getAccount(), queryDTO.getXnm(), queryDTO.getXqm());
+            return Result.success(curriculumService.getSemesterSchedule(queryDTO));
+        } catch (Exception e) {
+            log.error("学期课表查询失败", e);
+            return Result.error(e.getMessage());
+        }
+    }
+
     // 【新】添加自定义课程（前端暂未开发，但后端先留好接口）
     // @PostMapping("/addCustomCourse") ...
 }
\ No newline at end of file
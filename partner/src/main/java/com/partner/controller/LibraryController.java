@@ -4,10 +4,14 @@ import com.partner.entity.Result;
 import com.partner.entity.library.LibraryProfile;
 import com.partner.entity.library.LibraryTimeConfig;
 import com.partner.mapper.LibraryMapper;
+import com.partner.service.LibrarySchedulerService;
 import com.partner.utils.LibrarySeatUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 @RestController
 @RequestMapping("/client/library")
 public class LibraryController {
@@ -18,6 +22,9 @@ public class LibraryController {
     @Autowired
     private LibrarySeatUtil seatUtil;
 
+    @Autowired
+    private LibrarySchedulerService schedulerService;
+
     // 保存配置 (对应前端点击保存)
     @PostMapping("/saveConfig")
     public Result saveConfig(@RequestBody LibraryProfile profile) {
@@ -28,7 +35,16 @@ public class LibraryController {
         }
         profile.setSeatId(seatId);
 
+        // 解析备选座位 (可选)
+        List<Integer> backupIds = seatUtil.parseSeatLabels(profile.getBackupSeatLabels());
+        if (backupIds == null) {
+            return Result.error("无效的备选座位号: " + profile.getBackupSeatLabels());
+        }
+        profile.setBackupSeatIds(backupIds.isEmpty() ? null
+                : backupIds.stream().map(String::valueOf).collect(Collectors.joining(",")));
+
         libraryMapper.saveProfile(profile);
+        schedulerService.onProfileChanged(profile.getStudentId());
         return Result.success("配置已保存");
     }
 
@@ -36,6 +52,7 @@ public class LibraryController {
     @PostMapping("/addTime")
     public Result addTime(@RequestBody LibraryTimeConfig config) {
         libraryMapper.addTimeConfig(config);
+        schedulerService.onTimeConfigChanged(config.getId());
         return Result.success("时间段添加成功");
     }
 
@@ -9,6 +9,7 @@ public class CommonQueryDTO {
     private String xqm;        // 学期 (3:秋季, 12:春季)
     private String zs;         // 周数 (课表查询用)
     private String account;    // 学号
+    private Boolean forceRefresh; // 忽略有效期，强制重新爬取
 
     // 认证参数
     private String jsessionid; // 登录凭证
@@ -0,0 +1,18 @@
+package com.partner.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 爬取记录 (每个学生、数据类型、学期一行)
+ */
+@Data
+public class DataCacheMeta {
+    private Long id;
+    private String studentId;
+    private String dataType;            // scores / timetable / exams
+    private String termKey;             // 格式：2024-2025_3，不限学期时为 all
+    private LocalDateTime lastQueryTime;
+    private String status;              // success / failed
+}
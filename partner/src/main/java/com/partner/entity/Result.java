@@ -1,7 +1,10 @@
 package com.partner.entity;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Data;
 
+import java.time.LocalDateTime;
+
 /**
  * 后端统一返回结果
  */
@@ -11,6 +14,10 @@ public class Result {
     private Integer code; //编码：1成功，0为失败
     private String msg; //错误信息
     private Object data; //数据
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean stale; //上游不可用时为 true，data 为本地保存的旧数据
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private LocalDateTime asOf; //旧数据最后一次成功同步的时间
 
     public static Result success() {
         Result result = new Result();
@@ -27,6 +34,14 @@ public class Result {
         return result;
     }
 
+    public static Result stale(Object object, LocalDateTime asOf) {
+        Result result = success(object);
+        result.stale = true;
+        result.asOf = asOf;
+        result.msg = "上游系统暂不可用，返回本地数据";
+        return result;
+    }
+
     public static Result error(String msg) {
         Result result = new Result();
         result.msg = msg;
@@ -20,5 +20,7 @@ public class ScheduleSystem {
     private Integer startNode;  // 开始节次
     private Integer endNode;    // 结束节次
     private String weekList;    // 存 JSON 字符串: "[1,2,3,4,5]"
+    private Long weekMask;      // 周次位图: 第 w 周对应 bit (w-1)
     private String rawZcd;      // 原始周次描述 (备份用)
+    private String contentHash; // 课程内容哈希 (SHA-256)，增量导入时对比
 }
\ No newline at end of file
@@ -0,0 +1,25 @@
+package com.partner.entity;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 成绩汇总 (每个学生每学期一行，另有 year/semester 均为 ALL 的总计行)
+ * 与成绩写入在同一事务中增量维护，读取绩点时无需遍历全部课程
+ */
+@Data
+public class ScoreAggregate {
+    public static final String ALL = "ALL";
+
+    private String studentId;
+    private String year;
+    private String semester;
+    private Integer courseCount;
+    private BigDecimal totalCredit;     // 学分合计
+    private BigDecimal gpaCredit;       // 有绩点课程的学分合计 (加权平均绩点的分母)
+    private BigDecimal pointCreditSum;  // Σ 学分 × 绩点
+    private BigDecimal gpaSum;          // Σ 学分绩点 (xfjd)
+    private LocalDateTime updateTime;
+}
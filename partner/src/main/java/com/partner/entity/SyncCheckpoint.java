@@ -0,0 +1,19 @@
+package com.partner.entity;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 后台批量同步进度 (每个任务一行)，重启后从 lastClientId 之后继续
+ */
+@Data
+public class SyncCheckpoint {
+    private String jobName;
+    private Long lastClientId;          // 已完成批次中最大的 client.id
+    private String status;              // RUNNING / DONE
+    private Integer processed;
+    private Integer failed;
+    private LocalDateTime startedAt;
+    private LocalDateTime updateTime;
+}
@@ -2,6 +2,10 @@ package com.partner.entity.library;
 
 import lombok.Data;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 @Data
 public class LibraryProfile {
@@ -9,7 +13,29 @@ public class LibraryProfile {
     private String password;
     private String seatLabel;
     private Integer seatId;
+    private String backupSeatLabels; // 备选座位标签，逗号分隔，按优先级排列 (如 "03EN11G,03EN12A")
+    private String backupSeatIds;    // 备选座位 ID，逗号分隔，与 backupSeatLabels 一一对应
     private Boolean autoEnable;
     private String sendKey;
     private LocalDateTime updateTime;
-}
\ No newline at end of file
+
+    /**
+     * 按优先级排列的全部候选座位：首选座位在前，随后是备选座位 (去重)
+     */
+    public List<Integer> candidateSeatIds() {
+        Set<Integer> ids = new LinkedHashSet<>();
+        if (seatId != null) ids.add(seatId);
+        if (backupSeatIds != null) {
+            for (String part : backupSeatIds.split(",")) {
+                String trimmed = part.trim();
+                if (!trimmed.isEmpty()) {
+                    try {
+                        ids.add(Integer.parseInt(trimmed));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(ids);
+    }
+}
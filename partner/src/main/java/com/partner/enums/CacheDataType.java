@@ -0,0 +1,22 @@
+package com.partner.enums;
+
+import lombok.Getter;
+
+/**
+ * 需要记录爬取时间的数据类型 (对应 data_cache_meta.data_type)
+ */
+@Getter
+public enum CacheDataType {
+    //成绩
+    SCORES("scores", 30),
+    //课表
+    TIMETABLE("timetable", 720);
+
+    private final String code;
+    private final int defaultTtlMinutes;    // 默认有效期，可用 freshness.ttl-minutes.<code> 覆盖
+
+    CacheDataType(String code, int defaultTtlMinutes) {
+        this.code = code;
+        this.defaultTtlMinutes = defaultTtlMinutes;
+    }
+}
@@ -1,11 +1,10 @@
 package com.partner.enums;
 
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-import lombok.NoArgsConstructor;
-
-@Getter
-
+/**
+ * 上游地址
+ * 可通过 sites.<key> (如 sites.jwgl-base-url) 覆盖，用于指向本地模拟器做压测；
+ * 派生地址 (教务登录、成绩查询) 随其基础地址一起变化，也可单独覆盖
+ */
 public enum SitesURL {
     //统一身份认证（CAS）服务器地址
     CAS_BASE_URL("https://mapp.haut.edu.cn"),
@@ -14,14 +13,43 @@ public enum SitesURL {
     //教务管理系统地址
     JWGL_BASE_URL("https://jwglxt.haut.edu.cn"),    //教务管理系统地址
     //教务系统登录
-    JWGL_LOGIN_URL("https://jwglxt.haut.edu.cn/sso/jhlogin"),
+    JWGL_LOGIN_URL(SitesURL.JWGL_BASE_URL, "/sso/jhlogin"),
     //成绩查询接口（正方教务系统典型路径）
-    SCORE_QUERY_URL(SitesURL.JWGL_BASE_URL.getUrl()+"/jwglxt/cjcx/cjcx_cxXsgrcj.html?doType=query&gnmkdm=N305005");
+    SCORE_QUERY_URL(SitesURL.JWGL_BASE_URL, "/jwglxt/cjcx/cjcx_cxXsgrcj.html?doType=query&gnmkdm=N305005"),
     //课表查询接口
+    //图书馆座位预约系统接口地址
+    LIBRARY_BASE_URL("https://wslib.haut.edu.cn/stage-api");
 
-    private final String url;
+    private final SitesURL base;
+    private final String url;           // 基础地址为空时是完整地址，否则是相对基础地址的路径
+    private volatile String override;
 
     SitesURL(String url) {
+        this(null, url);
+    }
+
+    SitesURL(SitesURL base, String url) {
+        this.base = base;
         this.url = url; // ← 关键：把参数赋值给字段！
     }
+
+    public String getUrl() {
+        String o = override;
+        if (o != null) return o;
+        return base == null ? url : base.getUrl() + url;
+    }
+
+    /**
+     * 配置键 (sites.<key>)，如 JWGL_BASE_URL -> jwgl-base-url
+     */
+    public String key() {
+        return name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * 覆盖地址，传 null 恢复默认
+     */
+    public void override(String url) {
+        this.override = url == null || url.isBlank() ? null : url.replaceAll("/+$", "");
+    }
 }
@@ -0,0 +1,42 @@
+package com.partner.enums;
+
+import lombok.Getter;
+
+/**
+ * 上游系统 (每个上游一套独立的 HTTP 连接池与调度器)
+ */
+@Getter
+public enum Upstream {
+    //统一身份认证（CAS）
+    CAS("cas", "mapp.haut.edu.cn", 16, 32, 16, 30, 60, 10, 16, 0),
+    //教务管理系统
+    JWGL("jwgl", "jwglxt.haut.edu.cn", 32, 64, 32, 15, 60, 20, 32, 0),
+    //图书馆座位预约系统 (预约突发需要较高的单主机并发，预约窗口内为预约请求保留一半名额)
+    WSLIB("wslib", "wslib.haut.edu.cn", 32, 128, 64, 10, 15, 30, 128, 64);
+
+    private final String key;               // 配置前缀 http.upstream.<key>.*
+    private final String host;
+    private final int maxIdleConnections;   // 连接池最大空闲连接数
+    private final int maxRequests;          // 异步调度器总并发
+    private final int maxRequestsPerHost;   // 异步调度器单主机并发
+    private final int connectTimeoutSeconds;
+    private final int readTimeoutSeconds;
+    private final int permitsPerSecond;     // 限流：每秒令牌数
+    private final int maxConcurrent;        // 隔离舱：同时在途请求上限
+    private final int priorityReserved;     // 隔离舱：预约窗口内为预约等优先请求保留的名额
+
+    Upstream(String key, String host, int maxIdleConnections, int maxRequests, int maxRequestsPerHost,
+             int connectTimeoutSeconds, int readTimeoutSeconds,
+             int permitsPerSecond, int maxConcurrent, int priorityReserved) {
+        this.key = key;
+        this.host = host;
+        this.maxIdleConnections = maxIdleConnections;
+        this.maxRequests = maxRequests;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.connectTimeoutSeconds = connectTimeoutSeconds;
+        this.readTimeoutSeconds = readTimeoutSeconds;
+        this.permitsPerSecond = permitsPerSecond;
+        this.maxConcurrent = maxConcurrent;
+        this.priorityReserved = priorityReserved;
+    }
+}
@@ -31,6 +31,10 @@ public interface ClientMapper {
     long count(@Param("keyword") String keyword);
 
 
+    // 按 id 游标分批读取普通用户 (后台批量同步用，走 client 主键范围扫描)
+    @Select("SELECT id, account, password FROM client WHERE id > #{afterId} AND IFNULL(role, 0) = 0 ORDER BY id LIMIT #{limit}")
+    List<Client> selectAfterId(@Param("afterId") long afterId, @Param("limit") int limit);
+
     // 【新增】删除用户
     @Delete("DELETE FROM client WHERE id = #{id}")
     void deleteById(Long id);
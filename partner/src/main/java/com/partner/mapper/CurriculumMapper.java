@@ -39,6 +39,29 @@ public interface CurriculumMapper {
                         @Param("semester") String semester,
                         @Param("week") String week);
 
+    @Update("UPDATE schedule_system SET course_name = #{courseName}, teacher = #{teacher}, location = #{location}, " +
+            "day_of_week = #{dayOfWeek}, start_node = #{startNode}, end_node = #{endNode}, week_list = #{weekList}, " +
+            "week_mask = #{weekMask}, raw_zcd = #{rawZcd}, content_hash = #{contentHash} WHERE id = #{id}")
+    void updateSystemSchedule(ScheduleSystem scheduleSystem);
+
+    // 【移入 XML】按 ID 批量删除
+    void deleteSystemScheduleByIds(@Param("ids") List<Long> ids);
+
+    @Select("SELECT payload_hash FROM schedule_import WHERE student_id = #{studentId} AND semester = #{semester}")
+    String selectImportHash(@Param("studentId") String studentId, @Param("semester") String semester);
+
+    @Insert("INSERT INTO schedule_import (student_id, semester, payload_hash, course_count, import_time) " +
+            "VALUES (#{studentId}, #{semester}, #{payloadHash}, #{courseCount}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE payload_hash = VALUES(payload_hash), course_count = VALUES(course_count), import_time = NOW()")
+    void saveImportHash(@Param("studentId") String studentId, @Param("semester") String semester,
+                        @Param("payloadHash") String payloadHash, @Param("courseCount") int courseCount);
+
+    @Delete("DELETE FROM schedule_import WHERE student_id = #{studentId} AND semester = #{semester}")
+    void deleteImportHash(@Param("studentId") String studentId, @Param("semester") String semester);
+
+    @Select("SELECT * FROM schedule_system WHERE id = #{id}")
+    ScheduleSystem selectSystemScheduleById(Long id);
+
     @Delete("DELETE FROM schedule_system WHERE id = #{id}")
     void deleteScheduleById(Long id);
 }
\ No newline at end of file
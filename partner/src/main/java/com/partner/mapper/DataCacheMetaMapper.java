@@ -0,0 +1,21 @@
+package com.partner.mapper;
+
+import com.partner.entity.DataCacheMeta;
+import org.apache.ibatis.annotations.*;
+
+@Mapper
+public interface DataCacheMetaMapper {
+
+    @Select("SELECT * FROM data_cache_meta WHERE student_id = #{studentId} AND data_type = #{dataType} AND term_key = #{termKey}")
+    DataCacheMeta find(@Param("studentId") String studentId,
+                       @Param("dataType") String dataType,
+                       @Param("termKey") String termKey);
+
+    @Insert("INSERT INTO data_cache_meta (student_id, data_type, term_key, last_query_time, status) " +
+            "VALUES (#{studentId}, #{dataType}, #{termKey}, NOW(), #{status}) " +
+            "ON DUPLICATE KEY UPDATE last_query_time = NOW(), status = VALUES(status)")
+    void upsert(@Param("studentId") String studentId,
+                @Param("dataType") String dataType,
+                @Param("termKey") String termKey,
+                @Param("status") String status);
+}
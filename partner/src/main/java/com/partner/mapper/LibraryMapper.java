@@ -27,6 +27,15 @@ public interface LibraryMapper {
     @Select("SELECT * FROM library_time_config WHERE student_id = #{studentId} AND is_active = 1")
     List<LibraryTimeConfig> findActiveTimeConfigs(String studentId);
 
+    @Select("SELECT * FROM library_time_config WHERE id = #{id}")
+    LibraryTimeConfig findTimeConfigById(Long id);
+
+    // 所有开启自动预约用户的有效时间配置 (一次查询，用于重建触发队列)
+    @Select("SELECT c.* FROM library_time_config c " +
+            "JOIN library_profile p ON p.student_id = c.student_id " +
+            "WHERE p.auto_enable = 1 AND c.is_active = 1")
+    List<LibraryTimeConfig> findAllActiveTimeConfigs();
+
     @Insert("INSERT INTO library_time_config (student_id, start_time, end_time, auto_start_time, is_active) " +
             "VALUES (#{studentId}, #{startTime}, #{endTime}, #{autoStartTime}, #{isActive})")
     @Options(useGeneratedKeys = true, keyProperty = "id")
@@ -0,0 +1,46 @@
+package com.partner.mapper;
+
+import com.partner.entity.ScoreAggregate;
+import org.apache.ibatis.annotations.*;
+
+import java.util.List;
+
+@Mapper
+public interface ScoreAggregateMapper {
+
+    /**
+     * 累加增量 (行不存在时以增量作为初值)
+     */
+    @Insert("INSERT INTO score_aggregate (student_id, year, semester, course_count, total_credit, gpa_credit, point_credit_sum, gpa_sum, update_time) " +
+            "VALUES (#{studentId}, #{year}, #{semester}, #{courseCount}, #{totalCredit}, #{gpaCredit}, #{pointCreditSum}, #{gpaSum}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE course_count = course_count + VALUES(course_count), " +
+            "total_credit = total_credit + VALUES(total_credit), gpa_credit = gpa_credit + VALUES(gpa_credit), " +
+            "point_credit_sum = point_credit_sum + VALUES(point_credit_sum), gpa_sum = gpa_sum + VALUES(gpa_sum), update_time = NOW()")
+    void applyDelta(ScoreAggregate delta);
+
+    @Select("SELECT * FROM score_aggregate WHERE student_id = #{studentId} ORDER BY year, semester")
+    List<ScoreAggregate> selectByStudent(@Param("studentId") String studentId);
+
+    // ========== 一致性重建 (studentId 为空时重建全部) ==========
+
+    /**
+     * 有成绩或汇总的全部学号 (逐个学生重建用)
+     */
+    @Select("SELECT student_id FROM score UNION SELECT student_id FROM score_aggregate")
+    List<String> selectStudentIds();
+
+    @Delete("DELETE FROM score_aggregate WHERE (#{studentId} IS NULL OR student_id = #{studentId})")
+    int deleteAggregates(@Param("studentId") String studentId);
+
+    @Insert("INSERT INTO score_aggregate (student_id, year, semester, course_count, total_credit, gpa_credit, point_credit_sum, gpa_sum, update_time) " +
+            "SELECT student_id, year, semester, COUNT(*), IFNULL(SUM(credit), 0), IFNULL(SUM(IF(point IS NULL, 0, credit)), 0), " +
+            "IFNULL(SUM(credit * point), 0), IFNULL(SUM(gpa), 0), NOW() " +
+            "FROM score WHERE (#{studentId} IS NULL OR student_id = #{studentId}) GROUP BY student_id, year, semester")
+    int rebuildTerms(@Param("studentId") String studentId);
+
+    @Insert("INSERT INTO score_aggregate (student_id, year, semester, course_count, total_credit, gpa_credit, point_credit_sum, gpa_sum, update_time) " +
+            "SELECT student_id, 'ALL', 'ALL', COUNT(*), IFNULL(SUM(credit), 0), IFNULL(SUM(IF(point IS NULL, 0, credit)), 0), " +
+            "IFNULL(SUM(credit * point), 0), IFNULL(SUM(gpa), 0), NOW() " +
+            "FROM score WHERE (#{studentId} IS NULL OR student_id = #{studentId}) GROUP BY student_id")
+    int rebuildTotals(@Param("studentId") String studentId);
+}
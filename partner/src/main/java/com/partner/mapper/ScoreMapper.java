@@ -10,10 +10,10 @@ import java.util.List;
 @Mapper
 public interface ScoreMapper {
     /**
-     * 批量插入成绩
+     * 批量写入成绩：按 (学号, 学年, 学期, 课程名) 唯一键，已存在则更新分数字段
      * @param scoreList
      */
-    void insertScores(List<Score> scoreList);
+    void upsertScores(List<Score> scoreList);
 
     /**
      * 根据课程名称查找成绩记录
@@ -23,12 +23,20 @@ public interface ScoreMapper {
     void findScoreByCourseName(String courseName);
 
     /**
-     * 根据学号查询成绩
-     * @param studentId
-     * @return
+     * 查询本地成绩 (year/semester 为空时不限)
+     * @param year 学年，如 2023-2024
+     * @param semester 学期，如 1、2
      */
-    @Select("SELECT course_name FROM score WHERE student_id = #{studentId}")
-    List<String> findExistingCourseNamesByStudentId(@Param("studentId") String studentId);
+    List<Score> selectByStudentAndTerm(@Param("studentId") String studentId,
+                                       @Param("year") String year,
+                                       @Param("semester") String semester);
+
+    /**
+     * 锁定学生的全部成绩行及其索引区间 (须在事务内)：等待进行中的成绩写入或汇总重建提交，并阻塞之后的写入
+     * 成绩写入与汇总重建都先调用它，再读成绩、写汇总
+     */
+    @Select("SELECT id FROM score WHERE student_id = #{studentId} FOR UPDATE")
+    List<Long> lockByStudent(@Param("studentId") String studentId);
 
 
 }
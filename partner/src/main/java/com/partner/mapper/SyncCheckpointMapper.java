@@ -0,0 +1,17 @@
+package com.partner.mapper;
+
+import com.partner.entity.SyncCheckpoint;
+import org.apache.ibatis.annotations.*;
+
+@Mapper
+public interface SyncCheckpointMapper {
+
+    @Select("SELECT * FROM sync_checkpoint WHERE job_name = #{jobName}")
+    SyncCheckpoint find(@Param("jobName") String jobName);
+
+    @Insert("INSERT INTO sync_checkpoint (job_name, last_client_id, status, processed, failed, started_at, update_time) " +
+            "VALUES (#{jobName}, #{lastClientId}, #{status}, #{processed}, #{failed}, #{startedAt}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE last_client_id = VALUES(last_client_id), status = VALUES(status), " +
+            "processed = VALUES(processed), failed = VALUES(failed), started_at = VALUES(started_at), update_time = NOW()")
+    void save(SyncCheckpoint checkpoint);
+}
@@ -1,24 +1,31 @@
 package com.partner.service;
 
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.partner.dto.LoginDTO;
 import com.partner.entity.Client;
 import com.partner.entity.LoginContext;
 import com.partner.enums.SitesURL;
+import com.partner.enums.Upstream;
 import com.partner.mapper.ClientMapper;
+import com.partner.utils.CircuitBreaker;
+import com.partner.utils.HttpClientRegistry;
+import com.partner.utils.SingleFlight;
+import com.partner.utils.UpstreamLimiter;
 import com.partner.vo.LoginVO;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
 import java.net.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -28,37 +35,83 @@ public class AuthService {
     @Autowired
     ClientMapper clientMapper;
 
+    @Autowired
+    HttpClientRegistry clientRegistry;
+
+    // 会话池依赖本服务完成登录，延迟注入避免循环依赖
+    @Lazy
+    @Autowired
+    JwglSessionPool sessionPool;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${single-flight.share-window-ms:3000}")
+    private long shareWindowMillis;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // 同一账号密码并发的登录 (重复点击、多标签页) 合并为一次 CAS 登录
+    private SingleFlight<LoginKey, LoginVO> loginFlight;
+
+    private record LoginKey(String account, String password) {
+    }
+
+    @PostConstruct
+    public void init() {
+        loginFlight = new SingleFlight<>("login", shareWindowMillis);
+    }
+
     /**
      * 登录逻辑：
      * 1. 先尝试爬虫登录教务系统 (验证账号有效性)
      * 2. 验证通过后，检查数据库
      * 3. 如果是首次登录，将用户信息存入数据库
+     * CAS 登录在事务外进行，只有数据库阶段在事务中
      */
-    @Transactional(rollbackFor = Exception.class)
     public LoginVO login(LoginDTO loginDTO) {
+        LoginKey key = new LoginKey(loginDTO.getAccount(), loginDTO.getPassword());
+        return loginFlight.execute(key, () -> doLogin(loginDTO));
+    }
+
+    public Map<String, Object> flightStats() {
+        return loginFlight.stats();
+    }
+
+    private LoginVO doLogin(LoginDTO loginDTO) {
         // --- 1. 验证阶段：尝试登录教务系统 ---
         log.info("尝试登录教务系统验证账号: {}", loginDTO.getAccount());
 
-        // 构建临时 Client 对象用于爬虫验证
-        Client tempClient = new Client();
-        tempClient.setAccount(loginDTO.getAccount());
-        tempClient.setPassword(loginDTO.getPassword());
-
-        LoginContext ctx;
         Map<String, String> cookies;
 
         try {
-            // 执行爬虫登录
-            ctx = loginServicePortal(tempClient);
-            // 获取最终 Cookies
-            cookies = enterJiaowuSystem(ctx);
+            // 执行爬虫登录并获取最终 Cookies
+            cookies = loginForCookies(loginDTO.getAccount(), loginDTO.getPassword());
         } catch (Exception e) {
             // 登录失败（密码错误、系统崩溃等），直接抛出异常，不操作数据库
             log.warn("教务系统登录失败: {}", e.getMessage());
+            if (CircuitBreaker.isOpenFailure(e)) {
+                throw new RuntimeException("统一身份认证或教务系统暂不可用，请稍后重试", e);
+            }
             throw new RuntimeException("登录失败：请检查账号密码是否正确，或教务系统是否开放。");
         }
 
         // --- 2. 数据库阶段：处理本地用户存储 ---
+        Client dbClient = transactionTemplate.execute(status -> saveClient(loginDTO));
+
+        // 登记到会话池，后续查询由服务端持有并续期会话
+        sessionPool.register(loginDTO.getAccount(), loginDTO.getPassword(), cookies);
+
+        // --- 3. 返回结果 ---
+        return LoginVO.builder()
+                .jsessionid(cookies.get("JSESSIONID"))
+                .route(cookies.getOrDefault("route", ""))
+                .role(dbClient.getRole()) // 返回数据库中的角色
+                .name(dbClient.getName())
+                .build();
+    }
+
+    private Client saveClient(LoginDTO loginDTO) {
         Client dbClient = clientMapper.findClientByAccount(loginDTO.getAccount());
 
         if (dbClient == null) {
@@ -82,24 +135,35 @@ public class AuthService {
             }
             */
         }
+        return dbClient;
+    }
 
-        // --- 3. 返回结果 ---
-        return LoginVO.builder()
-                .jsessionid(cookies.get("JSESSIONID"))
-                .route(cookies.getOrDefault("route", ""))
-                .role(dbClient.getRole()) // 返回数据库中的角色
-                .name(dbClient.getName())
-                .build();
+    /**
+     * 走完 CAS -> 教务系统的登录流程，返回 jwglxt 的 Cookies (JSESSIONID、route)
+     * 供登录接口及会话池重新认证使用
+     */
+    public Map<String, String> loginForCookies(String account, String password) {
+        // 构建临时 Client 对象用于爬虫验证
+        Client tempClient = new Client();
+        tempClient.setAccount(account);
+        tempClient.setPassword(password);
+
+        try {
+            LoginContext ctx = loginServicePortal(tempClient);
+            return enterJiaowuSystem(ctx);
+        } catch (IOException e) {
+            throw new RuntimeException(e instanceof UpstreamLimiter.BusyException || e instanceof CircuitBreaker.OpenException ? e.getMessage() : e.toString(), e);
+        }
     }
 
     // --- 以下为爬虫底层私有方法 (保持原有逻辑不变) ---
 
     private LoginContext loginServicePortal(Client client) {
+        // 每个用户独立的 Cookie，连接池与 TLS 会话复用 CAS 共享客户端
         CookieManager userCookieManager = new CookieManager();
-        OkHttpClient userHttpClient = new OkHttpClient.Builder()
-                .cookieJar(new JavaNetCookieJar(userCookieManager))
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(60, TimeUnit.SECONDS)
+        CookieJar userCookieJar = new JavaNetCookieJar(userCookieManager);
+        OkHttpClient userHttpClient = clientRegistry.withCookies(Upstream.CAS, userCookieJar)
+                .newBuilder()
                 .followRedirects(false)
                 .build();
 
@@ -119,9 +183,9 @@ public class AuthService {
                 if (!ltResponse.isSuccessful()) throw new IOException("获取 lt 失败");
                 String jsonp = ltResponse.body().string();
                 String json = jsonp.substring(jsonp.indexOf('(') + 1, jsonp.lastIndexOf(')'));
-                JsonObject data = JsonParser.parseString(json).getAsJsonObject();
-                lt = data.get("lt").getAsString();
-                execution = data.get("execution").getAsString();
+                JsonNode data = objectMapper.readTree(json);
+                lt = data.path("lt").asText();
+                execution = data.path("execution").asText();
             }
 
             // 3. 提交登录
@@ -159,7 +223,9 @@ public class AuthService {
                     .map(HttpCookie::getValue).findFirst()
                     .orElseThrow(() -> new IllegalStateException("未找到 JSESSIONID"));
 
-            return new LoginContext(userHttpClient, jsession, "");
+            // 后续 jwglxt 跳转走教务系统的客户端 (独立的连接池、限流与熔断)，共用同一个 CookieJar
+            OkHttpClient jwglHttpClient = clientRegistry.withCookies(Upstream.JWGL, userCookieJar);
+            return new LoginContext(jwglHttpClient, jsession, "");
 
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -192,8 +258,8 @@ public class AuthService {
                     String location = response.header("Location");
                     if (location == null) break;
                     try {
-                        currentUrl = new URL(new URL(currentUrl), location).toString();
-                    } catch (MalformedURLException e) {
+                        currentUrl = URI.create(currentUrl).resolve(location).toURL().toString();
+                    } catch (MalformedURLException | IllegalArgumentException e) {
                         currentUrl = location;
                     }
                 } else {
@@ -0,0 +1,280 @@
+package com.partner.service;
+
+import com.partner.dto.CommonQueryDTO;
+import com.partner.entity.Client;
+import com.partner.entity.SyncCheckpoint;
+import com.partner.mapper.ClientMapper;
+import com.partner.enums.CacheDataType;
+import com.partner.enums.Upstream;
+import com.partner.mapper.SyncCheckpointMapper;
+import com.partner.utils.HttpClientRegistry;
+import com.partner.utils.InstrumentedExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后台批量同步：按 client.id 游标分批遍历普通用户，经会话池刷新成绩和当前学期课表
+ * 同时在途的用户数与开始间隔可配置，避免集中冲击教务系统；每批完成后写检查点，重启后从断点继续
+ * 用户查询时有效期内直接读库，不再在请求线程中爬取
+ */
+@Slf4j
+@Service
+public class BulkSyncService {
+
+    private static final String JOB_NAME = "client-bulk-sync";
+    private static final String STATUS_RUNNING = "RUNNING";
+    private static final String STATUS_DONE = "DONE";
+
+    @Autowired
+    private ClientMapper clientMapper;
+
+    @Autowired
+    private SyncCheckpointMapper checkpointMapper;
+
+    @Autowired
+    private ScoreService scoreService;
+
+    @Autowired
+    private CurriculumService curriculumService;
+
+    @Autowired
+    private JwglSessionPool sessionPool;
+
+    @Autowired
+    private DataFreshnessService freshnessService;
+
+    @Autowired
+    private HttpClientRegistry clientRegistry;
+
+    // 每个用户一个虚拟线程，并发数由 permits 控制
+    @Autowired
+    @Qualifier("crawlExecutor")
+    private InstrumentedExecutor crawlExecutor;
+
+    @Value("${bulk-sync.enabled:false}")
+    private boolean enabled;
+
+    @Value("${bulk-sync.batch-size:100}")
+    private int batchSize;
+
+    // 同时在途的用户数
+    @Value("${bulk-sync.concurrency:4}")
+    private int concurrency;
+
+    // 相邻两个用户开始同步的最小间隔 (毫秒)，限制整体请求速率
+    @Value("${bulk-sync.min-interval-ms:500}")
+    private long minIntervalMs;
+
+    // 课表同步的学年/学期 (为空时按当前日期推算)
+    @Value("${bulk-sync.timetable.xnm:}")
+    private String timetableXnm;
+
+    @Value("${bulk-sync.timetable.xqm:}")
+    private String timetableXqm;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private volatile boolean stopping;
+    private volatile LocalDateTime lastStartedAt;
+    private volatile LocalDateTime lastFinishedAt;
+
+    private ExecutorService runner;
+    private Semaphore permits;
+
+    @PostConstruct
+    public void init() {
+        runner = Executors.newSingleThreadExecutor(r -> daemon(r, "bulk-sync"));
+        permits = new Semaphore(concurrency);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        runner.shutdownNow();
+    }
+
+    /**
+     * 定时触发 (调度线程只负责提交，同步在独立线程中执行)
+     */
+    @Scheduled(cron = "${bulk-sync.cron:0 0 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            start();
+        }
+    }
+
+    /**
+     * 启动一轮同步；已有一轮在执行时返回 false
+     */
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                runOnce();
+            } catch (Exception e) {
+                log.error("批量同步异常中止 (检查点已保留，下次从断点继续)", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("running", running.get());
+        stats.put("concurrency", concurrency);
+        stats.put("batchSize", batchSize);
+        stats.put("minIntervalMs", minIntervalMs);
+        stats.put("processed", processed.get());
+        stats.put("failed", failed.get());
+        stats.put("lastStartedAt", lastStartedAt);
+        stats.put("lastFinishedAt", lastFinishedAt);
+        stats.put("checkpoint", checkpointMapper.find(JOB_NAME));
+        return stats;
+    }
+
+    private void runOnce() throws InterruptedException {
+        SyncCheckpoint checkpoint = checkpointMapper.find(JOB_NAME);
+        if (checkpoint == null || !STATUS_RUNNING.equals(checkpoint.getStatus())) {
+            // 上一轮已完成：从头开始新一轮
+            checkpoint = new SyncCheckpoint();
+            checkpoint.setJobName(JOB_NAME);
+            checkpoint.setLastClientId(0L);
+            checkpoint.setProcessed(0);
+            checkpoint.setFailed(0);
+            checkpoint.setStartedAt(LocalDateTime.now());
+            checkpoint.setStatus(STATUS_RUNNING);
+            checkpointMapper.save(checkpoint);
+        } else {
+            log.info("批量同步从断点继续: client.id > {}", checkpoint.getLastClientId());
+        }
+        processed.set(checkpoint.getProcessed());
+        failed.set(checkpoint.getFailed());
+        lastStartedAt = LocalDateTime.now();
+
+        String[] term = timetableTerm();
+        long nextStartAt = 0;
+        while (!stopping) {
+            List<Client> batch = clientMapper.selectAfterId(checkpoint.getLastClientId(), batchSize);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<CompletableFuture<Void>> futures = new ArrayList<>(batch.size());
+            for (Client client : batch) {
+                if (client.getPassword() == null || client.getPassword().isEmpty()) {
+                    continue;
+                }
+                // 教务系统熔断期间暂停，避免整批用户快速失败
+                while (clientRegistry.breaker(Upstream.JWGL).isOpen() && !stopping) {
+                    TimeUnit.SECONDS.sleep(5);
+                }
+                // 控制开始节奏：信号量限制并发，间隔限制速率
+                permits.acquire();
+                long wait = nextStartAt - System.currentTimeMillis();
+                if (wait > 0) {
+                    TimeUnit.MILLISECONDS.sleep(wait);
+                }
+                nextStartAt = System.currentTimeMillis() + minIntervalMs;
+                futures.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        syncClient(client.getAccount(), term);
+                    } finally {
+                        permits.release();
+                    }
+                }, crawlExecutor));
+            }
+            // 整批完成后才推进检查点，重启时最多重做一批
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            checkpoint.setLastClientId(batch.get(batch.size() - 1).getId());
+            checkpoint.setProcessed(processed.get());
+            checkpoint.setFailed(failed.get());
+            checkpointMapper.save(checkpoint);
+        }
+
+        if (!stopping) {
+            checkpoint.setStatus(STATUS_DONE);
+            checkpointMapper.save(checkpoint);
+            lastFinishedAt = LocalDateTime.now();
+            log.info("批量同步完成: 处理 {} 人, 失败 {} 人", processed.get(), failed.get());
+        }
+    }
+
+    private void syncClient(String account, String[] term) {
+        try {
+            CommonQueryDTO scores = new CommonQueryDTO();
+            scores.setAccount(account);
+
+            CommonQueryDTO timetable = new CommonQueryDTO();
+            timetable.setAccount(account);
+            timetable.setXnm(term[0]);
+            timetable.setXqm(term[1]);
+
+            // 都在有效期内时不登录
+            if (freshnessService.isFresh(scores, CacheDataType.SCORES)
+                    && freshnessService.isFresh(timetable, CacheDataType.TIMETABLE)) {
+                return;
+            }
+            // 服务端任务以库中密码登录，取得会话池签发的凭证
+            String token = sessionPool.authenticateStored(account);
+            scores.setJsessionid(token);
+            timetable.setJsessionid(token);
+
+            scoreService.syncScores(scores);
+            curriculumService.importAllSchedules(timetable);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("批量同步用户失败: {}, {}", account, e.getMessage());
+        } finally {
+            processed.incrementAndGet();
+        }
+    }
+
+    /**
+     * 当前学期：8 月至次年 1 月为秋季学期 (xqm=3)，2 月至 7 月为春季学期 (xqm=12)，学年取开始年份
+     */
+    private String[] timetableTerm() {
+        if (!timetableXnm.isEmpty() && !timetableXqm.isEmpty()) {
+            return new String[]{timetableXnm, timetableXqm};
+        }
+        LocalDate today = LocalDate.now();
+        int month = today.getMonthValue();
+        if (month >= 8) {
+            return new String[]{String.valueOf(today.getYear()), "3"};
+        }
+        if (month == 1) {
+            return new String[]{String.valueOf(today.getYear() - 1), "3"};
+        }
+        return new String[]{String.valueOf(today.getYear() - 1), "12"};
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread t = new Thread(r, name);
+        t.setDaemon(true);
+        return t;
+    }
+}
@@ -1,25 +1,41 @@
 package com.partner.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.fasterxml.jackson.core.JsonParser;
 import com.partner.dto.CommonQueryDTO;
 import com.partner.entity.ScheduleSystem;
 import com.partner.entity.ScheduleUser;
+import com.partner.enums.CacheDataType;
 import com.partner.enums.SitesURL;
+import com.partner.enums.Upstream;
 import com.partner.mapper.CurriculumMapper;
+import com.partner.utils.BoundedCache;
+import com.partner.utils.CircuitBreaker;
+import com.partner.utils.HttpClientRegistry;
+import com.partner.utils.JsonStreams;
+import com.partner.utils.SingleFlight;
+import com.partner.utils.UpstreamLimiter;
+import com.partner.utils.WeekMaskUtil;
 import com.partner.vo.ClassScheduleVO;
+import com.partner.vo.ImportSummaryVO;
+import com.partner.vo.SemesterCourseVO;
+import com.partner.vo.SemesterScheduleVO;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -31,107 +47,386 @@ public class CurriculumService {
     @Autowired
     CurriculumMapper curriculumMapper;
 
+    @Autowired
+    HttpClientRegistry clientRegistry;
+
+    @Autowired
+    JwglSessionPool sessionPool;
+
+    @Autowired
+    DataFreshnessService freshnessService;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${curriculum.week-cache.max-size:5000}")
+    private int weekCacheMaxSize;
+
+    @Value("${curriculum.week-cache.ttl-minutes:60}")
+    private long weekCacheTtlMinutes;
+
+    @Value("${curriculum.semester-cache.max-size:2000}")
+    private int semesterCacheMaxSize;
+
+    @Value("${single-flight.share-window-ms:3000}")
+    private long shareWindowMillis;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    // 学期课表缓存: (学号, 学期) -> 合并用户修改后的整学期课表
+    private BoundedCache<SemesterKey, SemesterScheduleVO> semesterCache;
+    // 周课表视图缓存: (学号, 学期, 周次) -> 已合并、排序好的课程列表
+    private BoundedCache<WeekKey, List<ClassScheduleVO>> weekCache;
+    // 同一 (账号, 学期, 是否强制刷新) 并发的导入合并为一次爬取
+    private SingleFlight<String, ImportSummaryVO> importFlight;
+
+    @PostConstruct
+    public void init() {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(weekCacheTtlMinutes);
+        semesterCache = new BoundedCache<>(semesterCacheMaxSize, ttlMillis);
+        weekCache = new BoundedCache<>(weekCacheMaxSize, ttlMillis);
+        importFlight = new SingleFlight<>("importAllSchedules", shareWindowMillis);
+    }
+
     /**
      * 功能1：【导入/同步课程表】
      * 对应前端的 "导入课程表" 按钮。
-     * 逻辑：爬取全量数据 -> 解析 -> 覆盖本地 schedule_system 表
+     * 逻辑：爬取全量数据 -> 解析 -> 按课程内容哈希与本地 schedule_system 对比，只写入有变化的行
+     * 爬取在事务外进行，只有对比与写入在一个短事务中
+     */
+    public ImportSummaryVO importAllSchedules(CommonQueryDTO dto) {
+        // 强制刷新单独成组，不会拿到普通调用 (可能走了有效期) 的结果
+        String key = dto.getAccount() + "|" + dto.getXnm() + "-" + dto.getXqm() + "|" + DataFreshnessService.isForced(dto);
+        return importFlight.execute(key, () -> doImportAllSchedules(dto));
+    }
+
+    public Map<String, Object> flightStats() {
+        return importFlight.stats();
+    }
+
+    /**
+     * 只用本地数据构造导入结果 (有效期内、上游熔断时)：无变更，kept 为本地现有课程数
      */
-    @Transactional(rollbackFor = Exception.class)
-    public void importAllSchedules(CommonQueryDTO dto) {
+    public ImportSummaryVO localSummary(CommonQueryDTO dto) {
+        String semesterKey = dto.getXnm() + "-" + dto.getXqm();
+        ImportSummaryVO summary = new ImportSummaryVO();
+        summary.setSemester(semesterKey);
+        summary.setFresh(false);
+        summary.setUnchanged(true);
+        summary.setAdded(0);
+        summary.setChanged(0);
+        summary.setRemoved(0);
+        summary.setKept(curriculumMapper.selectSystemSchedule(dto.getAccount(), semesterKey).size());
+        return summary;
+    }
+
+    private ImportSummaryVO doImportAllSchedules(CommonQueryDTO dto) {
         String studentId = dto.getAccount();
         // 构造学期标识，例如 2024-3
         String semesterKey = dto.getXnm() + "-" + dto.getXqm();
 
+        // 0. 有效期内不再访问教务系统，直接使用本地课表
+        if (freshnessService.isFresh(dto, CacheDataType.TIMETABLE)) {
+            ImportSummaryVO local = localSummary(dto);
+            local.setFresh(true);
+            log.info("课表在有效期内，跳过导入: {} {}", studentId, semesterKey);
+            return local;
+        }
+
+        ImportSummaryVO summary = new ImportSummaryVO();
+        summary.setSemester(semesterKey);
+        summary.setAdded(0);
+        summary.setChanged(0);
+        summary.setRemoved(0);
+        summary.setKept(0);
+        summary.setUnchanged(false);
+        summary.setFresh(false);
+
         log.info("开始导入全量课表: {} {}", studentId, semesterKey);
 
-        // 1. 爬虫获取全量 JSON (Request 2 接口)
-        String jsonResponse = fetchFullScheduleJson(dto);
+        // 1-2. 爬虫获取全量课表 (Request 2 接口)，边读边解析为 System 实体列表 (已带内容哈希)
+        List<ScheduleSystem> systemList = sessionPool.execute(studentId, dto.getJsessionid(), dto.getRoute(),
+                session -> fetchFullSchedule(dto, session, semesterKey));
+
+        // 上游返回空列表时不清空本地数据 (多为教务异常)
+        if (systemList.isEmpty()) {
+            return summary;
+        }
+
+        // 3. 整体哈希与上次导入一致：不做任何写入
+        String payloadHash = payloadHash(systemList);
+        if (payloadHash.equals(curriculumMapper.selectImportHash(studentId, semesterKey))) {
+            freshnessService.markQueried(dto, CacheDataType.TIMETABLE);
+            summary.setUnchanged(true);
+            summary.setKept(systemList.size());
+            log.info("课表与上次导入一致，跳过: {} {}", studentId, semesterKey);
+            return summary;
+        }
 
-        // 2. 解析 JSON 为 System 实体列表
-        List<ScheduleSystem> systemList = parseFullSchedule(jsonResponse, studentId, semesterKey);
+        // 4. 逐行对比，与导入记录在同一事务中写入
+        transactionTemplate.executeWithoutResult(status -> {
+            diffAndApply(studentId, semesterKey, systemList, summary);
+            curriculumMapper.saveImportHash(studentId, semesterKey, payloadHash, systemList.size());
+        });
+        freshnessService.markQueried(dto, CacheDataType.TIMETABLE);
 
-        // 3. 入库操作
-        if (!systemList.isEmpty()) {
-            // 先删除旧的
-            curriculumMapper.deleteSystemSchedule(studentId, semesterKey);
-            // 批量插入新的
-            curriculumMapper.insertSystemBatch(systemList);
-            log.info("导入成功，共插入 {} 条课程数据", systemList.size());
+        if (summary.getAdded() + summary.getChanged() + summary.getRemoved() > 0) {
+            invalidateWeekCache(studentId, semesterKey);
         }
+        log.info("导入成功: {} {}, 新增 {}, 更新 {}, 删除 {}, 未变 {}", studentId, semesterKey,
+                summary.getAdded(), summary.getChanged(), summary.getRemoved(), summary.getKept());
+        return summary;
+    }
+
+    /**
+     * 先按内容哈希配对 (完全未变的行)，剩余的按 课程名+星期+开始节次 配对为更新，
+     * 仍未配对的上游课程插入，本地多出的行删除
+     */
+    private void diffAndApply(String studentId, String semesterKey, List<ScheduleSystem> incoming, ImportSummaryVO summary) {
+        List<ScheduleSystem> stored = curriculumMapper.selectSystemSchedule(studentId, semesterKey);
+
+        Map<String, Deque<ScheduleSystem>> storedByHash = new HashMap<>();
+        for (ScheduleSystem sys : stored) {
+            String hash = sys.getContentHash() != null ? sys.getContentHash() : contentHash(sys);
+            storedByHash.computeIfAbsent(hash, k -> new ArrayDeque<>()).add(sys);
+        }
+
+        List<ScheduleSystem> pending = new ArrayList<>();
+        int kept = 0;
+        for (ScheduleSystem sys : incoming) {
+            Deque<ScheduleSystem> same = storedByHash.get(sys.getContentHash());
+            if (same != null && !same.isEmpty()) {
+                same.poll();
+                kept++;
+            } else {
+                pending.add(sys);
+            }
+        }
+
+        Map<String, Deque<ScheduleSystem>> leftByIdentity = new HashMap<>();
+        for (Deque<ScheduleSystem> rows : storedByHash.values()) {
+            for (ScheduleSystem sys : rows) {
+                leftByIdentity.computeIfAbsent(identityOf(sys), k -> new ArrayDeque<>()).add(sys);
+            }
+        }
+
+        List<ScheduleSystem> toInsert = new ArrayList<>();
+        int changed = 0;
+        for (ScheduleSystem sys : pending) {
+            Deque<ScheduleSystem> candidates = leftByIdentity.get(identityOf(sys));
+            ScheduleSystem old = candidates == null ? null : candidates.poll();
+            if (old != null) {
+                sys.setId(old.getId());
+                curriculumMapper.updateSystemSchedule(sys);
+                changed++;
+            } else {
+                toInsert.add(sys);
+            }
+        }
+
+        List<Long> toDelete = new ArrayList<>();
+        leftByIdentity.values().forEach(rows -> rows.forEach(sys -> toDelete.add(sys.getId())));
+
+        if (!toDelete.isEmpty()) {
+            curriculumMapper.deleteSystemScheduleByIds(toDelete);
+        }
+        if (!toInsert.isEmpty()) {
+            curriculumMapper.insertSystemBatch(toInsert);
+        }
+
+        summary.setKept(kept);
+        summary.setChanged(changed);
+        summary.setAdded(toInsert.size());
+        summary.setRemoved(toDelete.size());
+    }
+
+    /**
+     * 【添加用户自定义操作】(新增/隐藏/修改课程)
+     */
+    public void addUserSchedule(ScheduleUser scheduleUser) {
+        curriculumMapper.insertUserSchedule(scheduleUser);
+        invalidateWeekCache(scheduleUser.getStudentId(), scheduleUser.getSemester());
+    }
+
+    /**
+     * 【管理端删除单条系统课程】
+     */
+    public void deleteSystemSchedule(Long id) {
+        ScheduleSystem schedule = curriculumMapper.selectSystemScheduleById(id);
+        curriculumMapper.deleteScheduleById(id);
+        if (schedule != null) {
+            // 本地数据已与上次导入不一致，下次导入需重新逐行对比
+            curriculumMapper.deleteImportHash(schedule.getStudentId(), schedule.getSemester());
+            invalidateWeekCache(schedule.getStudentId(), schedule.getSemester());
+        }
+    }
+
+    public Map<String, Object> cacheStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("semester", semesterCache.stats());
+        stats.put("week", weekCache.stats());
+        return stats;
     }
 
     /**
      * 功能2：【查询某周课表】
-     * 逻辑：查本地数据库 -> 筛选该周课程 -> 合并用户自定义修改
+     * 逻辑：取整学期课表 -> 按周次位图筛选该周课程
+     * 结果按 (学号, 学期, 周次) 缓存，导入课表或用户修改时失效
      */
     public List<ClassScheduleVO> getWeeklySchedule(CommonQueryDTO dto) {
         String studentId = dto.getAccount();
         String semesterKey = dto.getXnm() + "-" + dto.getXqm();
         int targetWeek = Integer.parseInt(dto.getZs() == null ? "1" : dto.getZs());
+        return getWeeklySchedule(studentId, semesterKey, targetWeek);
+    }
 
+    /**
+     * 功能3：【查询某天课表】(为 AI 预留)
+     */
+    public List<ClassScheduleVO> getDailySchedule(String studentId, String year, String term, int week, int dayOfWeek) {
+        // 复用周课表缓存，然后过滤那一天
+        List<ClassScheduleVO> weekly = getWeeklySchedule(studentId, year + "-" + term, week);
+        String dayCode = String.valueOf(dayOfWeek);
+        return weekly.stream()
+                .filter(v -> dayCode.equals(v.getDayCode()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 功能4：【查询整学期课表】
+     * 一次返回所有课程 (带周次位图) 及按周索引的课程下标，前端切换周次无需再请求
+     */
+    public SemesterScheduleVO getSemesterSchedule(CommonQueryDTO dto) {
+        return getSemesterSchedule(dto.getAccount(), dto.getXnm() + "-" + dto.getXqm());
+    }
+
+    private SemesterScheduleVO getSemesterSchedule(String studentId, String semesterKey) {
+        return semesterCache.getOrLoad(new SemesterKey(studentId, semesterKey),
+                () -> buildSemesterSchedule(studentId, semesterKey));
+    }
+
+    private List<ClassScheduleVO> getWeeklySchedule(String studentId, String semesterKey, int targetWeek) {
+        return weekCache.getOrLoad(new WeekKey(studentId, semesterKey, targetWeek),
+                () -> sliceWeek(getSemesterSchedule(studentId, semesterKey), targetWeek));
+    }
+
+    /**
+     * 从学期课表中取出某一周的课程 (已按星期、节次排序)
+     */
+    List<ClassScheduleVO> sliceWeek(SemesterScheduleVO semester, int targetWeek) {
+        List<ClassScheduleVO> result = new ArrayList<>();
+        if (targetWeek >= 1 && targetWeek <= semester.getWeeks().length) {
+            for (int index : semester.getWeeks()[targetWeek - 1]) {
+                ClassScheduleVO vo = new ClassScheduleVO();
+                BeanUtils.copyProperties(semester.getCourses().get(index), vo);
+                result.add(vo);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private SemesterScheduleVO buildSemesterSchedule(String studentId, String semesterKey) {
         // 1. 获取系统课表
         List<ScheduleSystem> systemList = curriculumMapper.selectSystemSchedule(studentId, semesterKey);
 
         // 2. 获取用户自定义操作 (增删改)
         List<ScheduleUser> userOps = curriculumMapper.selectUserSchedule(studentId, semesterKey);
 
-        // 3. 过滤与合并逻辑
-        List<ClassScheduleVO> result = new ArrayList<>();
+        return mergeSemester(semesterKey, systemList, userOps);
+    }
+
+    /**
+     * 合并系统课表与用户操作，排序并建立按周索引
+     */
+    SemesterScheduleVO mergeSemester(String semesterKey, List<ScheduleSystem> systemList, List<ScheduleUser> userOps) {
+        // 被用户删除 (隐藏) 的课程位置: 星期-节次
+        Set<String> deletedSlots = new HashSet<>();
+        for (ScheduleUser op : userOps) {
+            if ("DELETE".equals(op.getOperationType())) {
+                deletedSlots.add(op.getTargetDay() + "-" + op.getTargetStartNode());
+            }
+        }
+
+        // 3. 合并逻辑
+        List<SemesterCourseVO> courses = new ArrayList<>();
 
-        // A. 处理系统课程
+        // A. 处理系统课程 (跳过被用户删除的)
         for (ScheduleSystem sys : systemList) {
-            // 3.1 检查该周是否有课
-            if (isWeekInList(sys.getWeekList(), targetWeek)) {
-                // 3.2 检查是否被用户删除了 (Hidden)
-                boolean isDeleted = userOps.stream().anyMatch(op ->
-                        "DELETE".equals(op.getOperationType()) &&
-                                op.getTargetDay().equals(sys.getDayOfWeek()) &&
-                                op.getTargetStartNode().equals(sys.getStartNode())
-                );
-
-                if (!isDeleted) {
-                    result.add(systemToVo(sys, targetWeek));
-                }
+            if (!deletedSlots.contains(sys.getDayOfWeek() + "-" + sys.getStartNode())) {
+                courses.add(systemToCourse(sys));
             }
         }
 
         // B. 处理用户新增课程
         for (ScheduleUser op : userOps) {
-            if ("ADD".equals(op.getOperationType()) && isWeekInList(op.getCustomWeeks(), targetWeek)) {
-                ClassScheduleVO vo = new ClassScheduleVO();
-                vo.setCourseName(op.getCustomName());
-                vo.setLocation(op.getCustomLocation());
-                vo.setDayOfWeek(getDayName(op.getTargetDay())); // 数字转中文
-                vo.setDayCode(String.valueOf(op.getTargetDay()));
-                vo.setSessionInfo(op.getTargetStartNode() + "-" + (op.getTargetStartNode() + 1)); // 简化处理，默认两节
-                vo.setWeekRange("用户添加");
-                result.add(vo);
+            if ("ADD".equals(op.getOperationType())) {
+                SemesterCourseVO course = new SemesterCourseVO();
+                course.setCourseName(op.getCustomName());
+                course.setLocation(op.getCustomLocation());
+                course.setDayOfWeek(getDayName(op.getTargetDay())); // 数字转中文
+                course.setDayCode(String.valueOf(op.getTargetDay()));
+                course.setSessionInfo(op.getTargetStartNode() + "-" + (op.getTargetStartNode() + 1)); // 简化处理，默认两节
+                course.setWeekRange("用户添加");
+                course.setWeekMask(WeekMaskUtil.fromJson(op.getCustomWeeks()));
+                course.setCustom(true);
+                courses.add(course);
             }
         }
 
-        // 4. 排序 (按星期、节次)
-        result.sort(Comparator.comparing(ClassScheduleVO::getDayCode).thenComparing(ClassScheduleVO::getSessionInfo));
+        // 4. 排序 (按星期、节次的数值，避免 "10-11" 排在 "3-4" 前面)，按周筛选后自然有序
+        courses.sort(Comparator.comparingInt((SemesterCourseVO c) -> leadingInt(c.getDayCode()))
+                .thenComparingInt(c -> leadingInt(c.getSessionInfo())));
 
-        return result;
+        // 5. 一次遍历生成按周索引：weeks[w-1] = 第 w 周有课的课程下标
+        long allWeeks = 0L;
+        for (SemesterCourseVO course : courses) {
+            allWeeks |= course.getWeekMask();
+        }
+        int weekCount = 64 - Long.numberOfLeadingZeros(allWeeks);
+        int[] counts = new int[weekCount];
+        for (SemesterCourseVO course : courses) {
+            for (long m = course.getWeekMask(); m != 0; m &= m - 1) {
+                counts[Long.numberOfTrailingZeros(m)]++;
+            }
+        }
+        int[][] weeks = new int[weekCount][];
+        for (int w = 0; w < weekCount; w++) {
+            weeks[w] = new int[counts[w]];
+            counts[w] = 0;
+        }
+        for (int i = 0; i < courses.size(); i++) {
+            for (long m = courses.get(i).getWeekMask(); m != 0; m &= m - 1) {
+                int w = Long.numberOfTrailingZeros(m);
+                weeks[w][counts[w]++] = i;
+            }
+        }
+
+        SemesterScheduleVO vo = new SemesterScheduleVO();
+        vo.setSemester(semesterKey);
+        vo.setWeekCount(weekCount);
+        vo.setCourses(Collections.unmodifiableList(courses));
+        vo.setWeeks(weeks);
+        return vo;
     }
 
     /**
-     * 功能3：【查询某天课表】(为 AI 预留)
+     * 立即失效该学生该学期的学期/周课表缓存；处于事务中时提交 (或回滚) 后再失效一次，
+     * 防止事务期间的并发查询把旧数据重新写回缓存
      */
-    public List<ClassScheduleVO> getDailySchedule(String studentId, String year, String term, int week, int dayOfWeek) {
-        CommonQueryDTO dto = new CommonQueryDTO();
-        dto.setAccount(studentId);
-        dto.setXnm(year);
-        dto.setXqm(term);
-        dto.setZs(String.valueOf(week));
-
-        // 复用周课表逻辑，然后过滤那一天
-        List<ClassScheduleVO> weekly = getWeeklySchedule(dto);
-        return weekly.stream()
-                .filter(v -> String.valueOf(dayOfWeek).equals(v.getDayCode()))
-                .collect(Collectors.toList());
+    private void invalidateWeekCache(String studentId, String semesterKey) {
+        Runnable evict = () -> {
+            semesterCache.invalidate(new SemesterKey(studentId, semesterKey));
+            weekCache.invalidateIf(k -> k.studentId().equals(studentId) && k.semester().equals(semesterKey));
+        };
+        evict.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict.run();
+                }
+            });
+        }
     }
 
     // --- 核心辅助方法 ---
@@ -139,7 +434,7 @@ public class CurriculumService {
     /**
      * 解析 "1-13周,15周(单)" 这种复杂字符串
      */
-    private List<Integer> parseZcd(String zcdStr) {
+    List<Integer> parseZcd(String zcdStr) {
         List<Integer> weeks = new ArrayList<>();
         if (zcdStr == null || zcdStr.isEmpty()) return weeks;
 
@@ -176,19 +471,18 @@ public class CurriculumService {
         return weeks;
     }
 
-    private boolean isWeekInList(String jsonList, int targetWeek) {
-        try {
-            List<Integer> list = objectMapper.readValue(jsonList, new TypeReference<List<Integer>>() {});
-            return list.contains(targetWeek);
-        } catch (Exception e) {
-            return false;
-        }
+    /**
+     * 优先使用入库时计算的位图；尚未回填的旧数据从 week_list 现算
+     */
+    private long weekMaskOf(ScheduleSystem sys) {
+        Long mask = sys.getWeekMask();
+        return mask != null && mask != 0 ? mask : WeekMaskUtil.fromJson(sys.getWeekList());
     }
 
     // --- 爬虫与转换逻辑 ---
 
-    private String fetchFullScheduleJson(CommonQueryDTO dto) {
-        OkHttpClient client = new OkHttpClient.Builder().connectTimeout(15, TimeUnit.SECONDS).build();
+    private List<ScheduleSystem> fetchFullSchedule(CommonQueryDTO dto, JwglSessionPool.Session session, String semesterKey) {
+        OkHttpClient client = clientRegistry.get(Upstream.JWGL);
         // 注意：Request 2 的参数
         FormBody body = new FormBody.Builder()
                 .add("xnm", dto.getXnm())
@@ -205,77 +499,143 @@ public class CurriculumService {
         Request request = new Request.Builder()
                 .url(url)
                 .post(body)
-                .addHeader("Cookie", "JSESSIONID=" + dto.getJsessionid() + "; route=" + dto.getRoute())
+                .addHeader("Cookie", session.cookieHeader())
                 .addHeader("Content-Type", "application/x-www-form-urlencoded;charset=UTF-8")
                 .build();
 
         try (Response response = client.newCall(request).execute()) {
-            return response.body().string();
+            // 会话过期时教务系统返回登录页 HTML
+            if (JsonStreams.looksLikeHtml(response.body())) throw new JwglSessionPool.SessionExpiredException("登录过期");
+            return parseFullSchedule(response.body().byteStream(), dto.getAccount(), semesterKey);
         } catch (IOException e) {
-            throw new RuntimeException("爬取课表失败", e);
+            throw new RuntimeException(e instanceof UpstreamLimiter.BusyException || e instanceof CircuitBreaker.OpenException ? e.getMessage() : "爬取课表失败", e);
         }
     }
 
-    private List<ScheduleSystem> parseFullSchedule(String json, String studentId, String semesterKey) {
+    /**
+     * 从响应流中直接读取 kbList 数组，每读完一门课即生成实体，不保留中间结构
+     */
+    List<ScheduleSystem> parseFullSchedule(InputStream in, String studentId, String semesterKey) throws IOException {
         List<ScheduleSystem> list = new ArrayList<>();
-        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
-
-        if (!root.has("kbList") || root.get("kbList").isJsonNull()) return list;
-
-        JsonArray kbList = root.getAsJsonArray("kbList");
-        for (JsonElement e : kbList) {
-            JsonObject kb = e.getAsJsonObject();
-            try {
-                String zcd = getStr(kb, "zcd"); // "1-13周"
-                String jcs = getStr(kb, "jcs"); // "7-8"
-
-                // 解析周次
-                List<Integer> weeks = parseZcd(zcd);
-                // 解析节次
-                String[] nodes = jcs.split("-");
-                int startNode = Integer.parseInt(nodes[0]);
-                int endNode = nodes.length > 1 ? Integer.parseInt(nodes[1]) : startNode;
-
-                ScheduleSystem schedule = ScheduleSystem.builder()
-                        .studentId(studentId)
-                        .semester(semesterKey)
-                        .courseName(getStr(kb, "kcmc"))
-                        .teacher(getStr(kb, "xm"))
-                        .location(getStr(kb, "cdmc"))
-                        .dayOfWeek(Integer.parseInt(getStr(kb, "xqj")))
-                        .startNode(startNode)
-                        .endNode(endNode)
-                        .weekList(objectMapper.writeValueAsString(weeks)) // 存为 JSON
-                        .rawZcd(zcd)
-                        .build();
-
-                list.add(schedule);
-            } catch (Exception ex) {
-                log.error("解析单条课程失败: {}", ex.getMessage());
-            }
+        try (JsonParser p = JsonStreams.parser(in)) {
+            JsonStreams.readRoot(p, (name, v) -> {
+                if ("kbList".equals(name)) {
+                    JsonStreams.readArray(v, item -> {
+                        ScheduleSystem schedule = readCourse(item, studentId, semesterKey);
+                        if (schedule != null) list.add(schedule);
+                    });
+                }
+            });
         }
         return list;
     }
 
-    private ClassScheduleVO systemToVo(ScheduleSystem sys, int currentWeek) {
-        ClassScheduleVO vo = new ClassScheduleVO();
-        vo.setCourseName(sys.getCourseName());
-        vo.setTeacher(sys.getTeacher());
-        vo.setLocation(sys.getLocation());
-        vo.setDayOfWeek(getDayName(sys.getDayOfWeek()));
-        vo.setDayCode(String.valueOf(sys.getDayOfWeek()));
-        vo.setSessionInfo(sys.getStartNode() + "-" + sys.getEndNode());
-        vo.setWeekRange(sys.getRawZcd());
-        // 可以在这里加一个字段 isCurrentWeek: true
-        return vo;
+    /**
+     * 读取 kbList 中的一门课，文本字段边读边填入实体；节次、星期在整门课读完后解析，格式不对时跳过该门课
+     */
+    private ScheduleSystem readCourse(JsonParser p, String studentId, String semesterKey) throws IOException {
+        ScheduleSystem schedule = new ScheduleSystem();
+        schedule.setStudentId(studentId);
+        schedule.setSemester(semesterKey);
+        schedule.setCourseName("");
+        schedule.setTeacher("");
+        schedule.setLocation("");
+        schedule.setRawZcd("");        // "1-13周"
+        String[] jcsXqj = {"", ""};    // 节次 "7-8"、星期 "3"
+        JsonStreams.readObject(p, (name, v) -> {
+            switch (name) {
+                case "kcmc": schedule.setCourseName(JsonStreams.text(v)); break;
+                case "xm": schedule.setTeacher(JsonStreams.text(v)); break;
+                case "cdmc": schedule.setLocation(JsonStreams.text(v)); break;
+                case "zcd": schedule.setRawZcd(JsonStreams.text(v)); break;
+                case "jcs": jcsXqj[0] = JsonStreams.text(v); break;
+                case "xqj": jcsXqj[1] = JsonStreams.text(v); break;
+                default: break;
+            }
+        });
+
+        try {
+            // 解析周次
+            List<Integer> weeks = parseZcd(schedule.getRawZcd());
+            // 解析节次
+            String[] nodes = jcsXqj[0].split("-");
+            int startNode = Integer.parseInt(nodes[0]);
+            schedule.setStartNode(startNode);
+            schedule.setEndNode(nodes.length > 1 ? Integer.parseInt(nodes[1]) : startNode);
+            schedule.setDayOfWeek(Integer.parseInt(jcsXqj[1]));
+            schedule.setWeekList(objectMapper.writeValueAsString(weeks)); // 存为 JSON
+            schedule.setWeekMask(WeekMaskUtil.toMask(weeks));
+            schedule.setContentHash(contentHash(schedule));
+            return schedule;
+        } catch (Exception ex) {
+            log.error("解析单条课程失败: {}", ex.getMessage());
+            return null;
+        }
+    }
+
+    private SemesterCourseVO systemToCourse(ScheduleSystem sys) {
+        SemesterCourseVO course = new SemesterCourseVO();
+        course.setCourseName(sys.getCourseName());
+        course.setTeacher(sys.getTeacher());
+        course.setLocation(sys.getLocation());
+        course.setDayOfWeek(getDayName(sys.getDayOfWeek()));
+        course.setDayCode(String.valueOf(sys.getDayOfWeek()));
+        course.setSessionInfo(sys.getStartNode() + "-" + sys.getEndNode());
+        course.setWeekRange(sys.getRawZcd());
+        course.setWeekMask(weekMaskOf(sys));
+        course.setCustom(false);
+        return course;
+    }
+
+    /**
+     * 课程内容哈希：任一展示字段或周次变化都会改变哈希
+     */
+    private String contentHash(ScheduleSystem sys) {
+        return sha256(String.join("\u0001",
+                String.valueOf(sys.getCourseName()), String.valueOf(sys.getTeacher()), String.valueOf(sys.getLocation()),
+                String.valueOf(sys.getDayOfWeek()), String.valueOf(sys.getStartNode()), String.valueOf(sys.getEndNode()),
+                String.valueOf(sys.getRawZcd()), Long.toHexString(weekMaskOf(sys))));
+    }
+
+    /**
+     * 整学期哈希：与课程顺序无关
+     */
+    private String payloadHash(List<ScheduleSystem> list) {
+        return sha256(list.stream().map(ScheduleSystem::getContentHash).sorted().collect(Collectors.joining(",")));
     }
 
-    private String getStr(JsonObject o, String k) {
-        return (o.has(k) && !o.get(k).isJsonNull()) ? o.get(k).getAsString() : "";
+    /**
+     * 同一门课的身份 (内容变化时据此原地更新)
+     */
+    private String identityOf(ScheduleSystem sys) {
+        return sys.getCourseName() + "|" + sys.getDayOfWeek() + "|" + sys.getStartNode();
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int leadingInt(String s) {
+        int value = 0;
+        for (int i = 0; s != null && i < s.length() && Character.isDigit(s.charAt(i)); i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
     }
 
     private String getDayName(int day) {
         String[] days = {"", "星期一", "星期二", "星期三", "星期四", "星期五", "星期六", "星期日"};
         return (day >= 1 && day <= 7) ? days[day] : "";
     }
-}
\ No newline at end of file
+
+    private record SemesterKey(String studentId, String semester) {
+    }
+
+    private record WeekKey(String studentId, String semester, int week) {
+    }
+}
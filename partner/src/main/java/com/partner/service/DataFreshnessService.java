@@ -0,0 +1,91 @@
+package com.partner.service;
+
+import com.partner.dto.CommonQueryDTO;
+import com.partner.entity.DataCacheMeta;
+import com.partner.enums.CacheDataType;
+import com.partner.mapper.DataCacheMetaMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * 爬取新鲜度判断
+ * 每次成功爬取记入 data_cache_meta；有效期内的查询直接使用本地数据库，不再访问教务系统
+ */
+@Slf4j
+@Service
+public class DataFreshnessService {
+
+    public static final String STATUS_SUCCESS = "success";
+
+    @Autowired
+    private DataCacheMetaMapper dataCacheMetaMapper;
+
+    @Autowired
+    private Environment env;
+
+    /**
+     * 本地数据是否仍在有效期内 (请求显式要求刷新时始终返回 false)
+     */
+    public boolean isFresh(CommonQueryDTO dto, CacheDataType type) {
+        if (isForced(dto)) {
+            return false;
+        }
+        DataCacheMeta meta = dataCacheMetaMapper.find(dto.getAccount(), type.getCode(), termKey(dto));
+        if (meta == null || meta.getLastQueryTime() == null || !STATUS_SUCCESS.equals(meta.getStatus())) {
+            return false;
+        }
+        Duration age = Duration.between(meta.getLastQueryTime(), LocalDateTime.now());
+        return age.compareTo(ttl(type)) < 0;
+    }
+
+    /**
+     * 记录一次成功的爬取
+     */
+    public void markQueried(CommonQueryDTO dto, CacheDataType type) {
+        dataCacheMetaMapper.upsert(dto.getAccount(), type.getCode(), termKey(dto), STATUS_SUCCESS);
+    }
+
+    /**
+     * 最近一次成功爬取的时间，从未成功时返回 null
+     */
+    public LocalDateTime lastSuccess(CommonQueryDTO dto, CacheDataType type) {
+        DataCacheMeta meta = dataCacheMetaMapper.find(dto.getAccount(), type.getCode(), termKey(dto));
+        return meta != null && STATUS_SUCCESS.equals(meta.getStatus()) ? meta.getLastQueryTime() : null;
+    }
+
+    public Duration ttl(CacheDataType type) {
+        int minutes = env.getProperty("freshness.ttl-minutes." + type.getCode(), Integer.class, type.getDefaultTtlMinutes());
+        return Duration.ofMinutes(minutes);
+    }
+
+    /**
+     * 请求是否显式要求跳过有效期重新爬取 (合并并发调用时，强制刷新不能并入普通调用)
+     */
+    public static boolean isForced(CommonQueryDTO dto) {
+        return Boolean.TRUE.equals(dto.getForceRefresh());
+    }
+
+    /**
+     * 学期标识：学年 2024 + 学期 3 -> 2024-2025_3；未指定学年时为 all
+     */
+    public static String termKey(CommonQueryDTO dto) {
+        String xnm = dto.getXnm();
+        if (xnm == null || xnm.isEmpty()) {
+            return "all";
+        }
+        String year;
+        try {
+            int start = Integer.parseInt(xnm);
+            year = start + "-" + (start + 1);
+        } catch (NumberFormatException e) {
+            year = xnm;
+        }
+        String xqm = dto.getXqm();
+        return xqm == null || xqm.isEmpty() ? year : year + "_" + xqm;
+    }
+}
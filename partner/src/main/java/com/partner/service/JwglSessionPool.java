@@ -0,0 +1,409 @@
+package com.partner.service;
+
+import com.partner.entity.Client;
+import com.partner.enums.SitesURL;
+import com.partner.enums.Upstream;
+import com.partner.mapper.ClientMapper;
+import com.partner.utils.HttpClientRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 教务系统会话池 (按账号)
+ * 服务端持有 jwglxt 的 JSESSIONID/route，定期用轻量请求探活，过期后在后台重新走 CAS 登录，
+ * 业务请求不会因为 Cookie 过期而失败。
+ * 只有携带本服务签发的凭证 (登录接口返回给前端的 JSESSIONID) 的请求才能使用池中会话和库中密码，
+ * 其余请求只用调用方自己的 Cookie 访问教务系统
+ */
+@Slf4j
+@Service
+public class JwglSessionPool {
+
+    // 探活接口：已登录返回 200，会话失效时重定向到登录页
+    private static final String PROBE_PATH = "/jwglxt/xtgl/index_initMenu.html";
+    private static final long LOGIN_WAIT_SECONDS = 90;
+    // 每个账号保留的签发凭证数 (多端登录)，超出时淘汰最早的
+    private static final int MAX_TOKENS_PER_ACCOUNT = 8;
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private ClientMapper clientMapper;
+
+    @Autowired
+    private HttpClientRegistry clientRegistry;
+
+    @Value("${jwgl.session-pool.max-size:500}")
+    private int maxSize;
+
+    @Value("${jwgl.session-pool.max-idle-minutes:30}")
+    private long maxIdleMinutes;
+
+    @Value("${jwgl.session-pool.validate-interval-seconds:120}")
+    private long validateIntervalSeconds;
+
+    // 签发的凭证超过该时长未使用即作废，之后需重新登录
+    @Value("${jwgl.session-pool.token-idle-hours:24}")
+    private long tokenIdleHours;
+
+    // 后台探活/重新认证任务的排队上限，超出的直接丢弃，下个维护周期再处理
+    @Value("${jwgl.session-pool.background-queue:256}")
+    private int backgroundQueue;
+
+    private final Map<String, PooledSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<PooledSession>> pendingLogins = new ConcurrentHashMap<>();
+    // 账号 -> (本服务签发的凭证 -> 最近使用时间)，有效期独立于池中会话，会话被淘汰后凭证仍可用于重新认证
+    private final Map<String, Map<String, Long>> issuedTokens = new ConcurrentHashMap<>();
+    private final AtomicLong logins = new AtomicLong();
+    private final AtomicLong reauths = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+
+    private OkHttpClient probeClient;
+    private ThreadPoolExecutor background;
+
+    @PostConstruct
+    public void init() {
+        background = new ThreadPoolExecutor(4, 4, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(backgroundQueue), r -> {
+            Thread t = new Thread(r, "jwgl-session");
+            t.setDaemon(true);
+            return t;
+        });
+        probeClient = clientRegistry.get(Upstream.JWGL).newBuilder()
+                .followRedirects(false)
+                .followSslRedirects(false)
+                .readTimeout(10, TimeUnit.SECONDS)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        background.shutdownNow();
+    }
+
+    /**
+     * 登录成功后登记会话 (保存密码用于过期后自动重新认证)，并把本次的 JSESSIONID 记为签发给前端的凭证
+     */
+    public Session register(String account, String password, Map<String, String> cookies) {
+        PooledSession pooled = new PooledSession(password,
+                new Session(account, cookies.get("JSESSIONID"), cookies.getOrDefault("route", "")));
+        sessions.put(account, pooled);
+        issue(account, pooled.session.getJsessionid());
+        evictOverflow();
+        return pooled.session;
+    }
+
+    /**
+     * 后台任务 (批量同步) 使用：以库中密码登录并签发凭证，已有有效会话时直接复用其凭证
+     * 只能由服务端内部调用，不得暴露给接口
+     */
+    public String authenticateStored(String account) {
+        PooledSession pooled = sessions.get(account);
+        Session session = pooled != null && pooled.valid ? pooled.session : relogin(account);
+        issue(account, session.getJsessionid());
+        return session.getJsessionid();
+    }
+
+    /**
+     * 凭证是否由本服务签发且未过期 (校验通过时顺延有效期)
+     */
+    public boolean isIssued(String account, String token) {
+        if (account == null || token == null || token.isEmpty()) {
+            return false;
+        }
+        Map<String, Long> tokens = issuedTokens.get(account);
+        if (tokens == null) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long idleMillis = TimeUnit.HOURS.toMillis(tokenIdleHours);
+        return tokens.computeIfPresent(token, (k, usedAt) -> now - usedAt > idleMillis ? null : now) != null;
+    }
+
+    /**
+     * 要求调用方携带本服务签发的凭证，访问本地成绩、提交同步任务等前调用
+     */
+    public void checkIssued(String account, String token) {
+        if (!isIssued(account, token)) {
+            throw new SessionExpiredException("登录过期，请重新登录");
+        }
+    }
+
+    /**
+     * 执行教务请求
+     * 携带本服务签发的凭证时使用池中的会话，会话过期时重新登录并重试一次；
+     * 否则只用调用方自己的 Cookie，过期时由用户重新登录，不使用池中会话和库中密码
+     * @param clientJsessionid 前端回传的 Cookie (登录接口返回的 JSESSIONID)
+     */
+    public <T> T execute(String account, String clientJsessionid, String clientRoute, Function<Session, T> call) {
+        if (clientJsessionid == null || clientJsessionid.isEmpty()) {
+            throw new SessionExpiredException("登录过期，请重新登录");
+        }
+        if (!isIssued(account, clientJsessionid)) {
+            return call.apply(new Session(account, clientJsessionid, clientRoute == null ? "" : clientRoute));
+        }
+
+        Session session = acquire(account);
+        try {
+            return call.apply(session);
+        } catch (SessionExpiredException e) {
+            log.info("教务会话已过期，重新认证: {}", account);
+            invalidate(session);
+            return call.apply(relogin(account));
+        }
+    }
+
+    /**
+     * 获取账号的有效会话 (调用方已通过凭证校验)
+     */
+    private Session acquire(String account) {
+        PooledSession pooled = sessions.get(account);
+        if (pooled != null && pooled.valid) {
+            pooled.lastUsedAt = System.currentTimeMillis();
+            return pooled.session;
+        }
+        return relogin(account);
+    }
+
+    /**
+     * 标记会话失效 (仅当失效的正是池中当前会话)
+     */
+    public void invalidate(Session session) {
+        PooledSession pooled = sessions.get(session.getAccount());
+        if (pooled != null && pooled.session == session) {
+            pooled.valid = false;
+        }
+    }
+
+    /**
+     * 后台维护：淘汰空闲会话，探活到期的会话，失效的在后台重新认证
+     * 每个会话同时最多一个后台任务，上一次探活或认证未结束时本轮跳过，教务系统变慢时任务不会堆积
+     */
+    @Scheduled(fixedDelayString = "${jwgl.session-pool.maintain-interval-ms:30000}")
+    public void maintain() {
+        long now = System.currentTimeMillis();
+        long idleMillis = TimeUnit.MINUTES.toMillis(maxIdleMinutes);
+        long validateMillis = TimeUnit.SECONDS.toMillis(validateIntervalSeconds);
+
+        long tokenIdleMillis = TimeUnit.HOURS.toMillis(tokenIdleHours);
+        for (String account : issuedTokens.keySet()) {
+            issuedTokens.computeIfPresent(account, (k, tokens) -> {
+                tokens.values().removeIf(usedAt -> now - usedAt > tokenIdleMillis);
+                return tokens.isEmpty() ? null : tokens;
+            });
+        }
+
+        for (PooledSession pooled : sessions.values()) {
+            if (now - pooled.lastUsedAt > idleMillis) {
+                sessions.remove(pooled.session.getAccount(), pooled);
+                continue;
+            }
+            if (pooled.valid && now - pooled.lastValidatedAt > validateMillis) {
+                submit(pooled, () -> {
+                    if (!probe(pooled)) {
+                        pooled.valid = false;
+                    }
+                });
+            } else if (!pooled.valid && pooled.password != null) {
+                submit(pooled, () -> {
+                    try {
+                        relogin(pooled.session.getAccount());
+                        reauths.incrementAndGet();
+                    } catch (Exception e) {
+                        // 密码已修改等情况：移出会话池并作废签发的凭证，用户需用新密码重新登录
+                        sessions.remove(pooled.session.getAccount(), pooled);
+                        issuedTokens.remove(pooled.session.getAccount());
+                        log.warn("教务会话后台重新认证失败: {}, {}", pooled.session.getAccount(), e.getMessage());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * 提交会话的后台任务：该会话已有任务在途时跳过；队列已满时丢弃并释放标记
+     */
+    private void submit(PooledSession pooled, Runnable task) {
+        if (!pooled.busy.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            background.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    pooled.busy.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pooled.busy.set(false);
+            discarded.incrementAndGet();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("validSessions", sessions.values().stream().filter(s -> s.valid).count());
+        stats.put("maxSize", maxSize);
+        stats.put("maxIdleMinutes", maxIdleMinutes);
+        stats.put("pendingLogins", pendingLogins.size());
+        stats.put("tokenAccounts", issuedTokens.size());
+        stats.put("logins", logins.get());
+        stats.put("backgroundReauths", reauths.get());
+        stats.put("probes", probes.get());
+        stats.put("backgroundQueued", background.getQueue().size());
+        stats.put("backgroundDiscarded", discarded.get());
+        return stats;
+    }
+
+    /**
+     * 重新走 CAS 登录 (同一账号同时只有一个登录在途)
+     */
+    private Session relogin(String account) {
+        CompletableFuture<PooledSession> mine = new CompletableFuture<>();
+        CompletableFuture<PooledSession> inFlight = pendingLogins.putIfAbsent(account, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.get(LOGIN_WAIT_SECONDS, TimeUnit.SECONDS).session;
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new RuntimeException(e.getCause());
+            } catch (InterruptedException | TimeoutException e) {
+                throw new RuntimeException("教务登录超时", e);
+            }
+        }
+
+        try {
+            PooledSession old = sessions.get(account);
+            String password = old != null ? old.password : null;
+            if (password == null) {
+                Client client = clientMapper.findClientByAccount(account);
+                password = client != null ? client.getPassword() : null;
+            }
+            if (password == null) {
+                throw new SessionExpiredException("登录过期，请重新登录");
+            }
+
+            Map<String, String> cookies = authService.loginForCookies(account, password);
+            logins.incrementAndGet();
+            PooledSession pooled = new PooledSession(password,
+                    new Session(account, cookies.get("JSESSIONID"), cookies.getOrDefault("route", "")));
+            sessions.put(account, pooled);
+            evictOverflow();
+            mine.complete(pooled);
+            return pooled.session;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLogins.remove(account, mine);
+        }
+    }
+
+    private boolean probe(PooledSession pooled) {
+        probes.incrementAndGet();
+        Request request = new Request.Builder()
+                .url(SitesURL.JWGL_BASE_URL.getUrl() + PROBE_PATH)
+                .addHeader("Cookie", pooled.session.cookieHeader())
+                .build();
+        try (Response response = probeClient.newCall(request).execute()) {
+            pooled.lastValidatedAt = System.currentTimeMillis();
+            return response.code() == 200;
+        } catch (Exception e) {
+            // 网络异常不代表会话失效，下次再探
+            log.debug("教务会话探活失败: {}, {}", pooled.session.getAccount(), e.getMessage());
+            return true;
+        }
+    }
+
+    private void evictOverflow() {
+        while (sessions.size() > maxSize) {
+            sessions.values().stream()
+                    .min((a, b) -> Long.compare(a.lastUsedAt, b.lastUsedAt))
+                    .ifPresent(lru -> sessions.remove(lru.session.getAccount(), lru));
+        }
+    }
+
+    private void issue(String account, String token) {
+        if (token == null || token.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        issuedTokens.compute(account, (k, existing) -> {
+            Map<String, Long> tokens = existing != null ? existing : new ConcurrentHashMap<>();
+            tokens.put(token, now);
+            // 多端登录时只保留最近使用的几个
+            while (tokens.size() > MAX_TOKENS_PER_ACCOUNT) {
+                tokens.entrySet().stream().min(Map.Entry.comparingByValue())
+                        .ifPresent(oldest -> tokens.remove(oldest.getKey()));
+            }
+            return tokens;
+        });
+    }
+
+    /**
+     * 教务会话 Cookie (不可变)
+     */
+    public static final class Session {
+        private final String account;
+        private final String jsessionid;
+        private final String route;
+
+        public Session(String account, String jsessionid, String route) {
+            this.account = account;
+            this.jsessionid = jsessionid;
+            this.route = route;
+        }
+
+        public String getAccount() { return account; }
+        public String getJsessionid() { return jsessionid; }
+        public String getRoute() { return route; }
+
+        public String cookieHeader() {
+            return "JSESSIONID=" + jsessionid + "; route=" + route;
+        }
+    }
+
+    /**
+     * 教务接口返回登录页，说明会话已过期
+     */
+    public static class SessionExpiredException extends RuntimeException {
+        public SessionExpiredException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class PooledSession {
+        private final Session session;
+        private final String password;
+        private volatile boolean valid = true;
+        private volatile long lastUsedAt;
+        private volatile long lastValidatedAt;
+        // 是否有探活或重新认证任务在排队/执行
+        private final AtomicBoolean busy = new AtomicBoolean();
+
+        private PooledSession(String password, Session session) {
+            this.session = session;
+            this.password = password;
+            this.lastUsedAt = System.currentTimeMillis();
+            this.lastValidatedAt = this.lastUsedAt;
+        }
+    }
+}
@@ -2,17 +2,33 @@ package com.partner.service;
 
 import com.partner.entity.library.LibraryProfile;
 import com.partner.entity.library.LibraryTimeConfig;
+import com.partner.enums.Upstream;
 import com.partner.mapper.LibraryMapper;
+import com.partner.utils.HttpClientRegistry;
 import com.partner.utils.LibraryHttpUtil;
+import com.partner.utils.LibraryTokenCache;
+import com.partner.utils.PreciseTimer;
+import com.partner.vo.LibraryBookingReportVO;
 import lombok.extern.slf4j.Slf4j;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -24,56 +40,309 @@ public class LibraryBookingService {
     @Autowired
     private LibraryHttpUtil httpUtil; // 原 HttpUtil
 
+    @Autowired
+    private LibraryTokenCache tokenCache;
+
+    @Autowired
+    private HttpClientRegistry clientRegistry;
+
+    private static final DateTimeFormatter HH_MM = DateTimeFormatter.ofPattern("HH:mm");
+    // 开放前多久做第二次预热
+    private static final long WARM_UP_LEAD_NANOS = 1_000_000_000L;
+    // RTT 补偿上限，避免网络抖动时过早发出
+    private static final long MAX_RTT_COMPENSATION_MS = 400;
+    private static final long BURST_AWAIT_SECONDS = 15;
+    // 复用登录态时额外要求的剩余有效期
+    private static final long TOKEN_VALIDITY_MARGIN_MILLIS = 60_000;
+
+    // 每次任务的请求数与间隔 (覆盖开放后的前 burstSize * burstIntervalMs 毫秒)
+    @Value("${library.booking.burst-size:20}")
+    private int burstSize;
+
+    @Value("${library.booking.burst-interval-ms:25}")
+    private long burstIntervalMs;
+
+    @Value("${library.booking.warm-connections:3}")
+    private int warmConnections;
+
+    // 是否调用取消预约接口释放多抢到的座位：接口路径尚未对照线上图书馆系统核实，默认只记录，需人工释放
+    @Value("${library.booking.release-extra-seats:false}")
+    private boolean releaseExtraSeats;
+
+    // 保留的最近任务报告数
+    @Value("${library.booking.max-reports:200}")
+    private int maxReports;
+
+    // 最近的任务报告
+    private final Deque<LibraryBookingReportVO> reports = new ConcurrentLinkedDeque<>();
+
     /**
-     * 执行单次预约任务 (被定时任务调用)
+     * 执行单次预约任务 (由触发器提交到预约执行器，在独立的虚拟线程中阻塞到开放时刻)
+     * 在开放前完成登录与连接预热，精确等待到开放时刻后按固定节奏对全部候选座位突发请求
      */
-    @Async("taskExecutor") // 确保使用了线程池
     public void executeBookingTask(LibraryProfile profile, LibraryTimeConfig timeConfig) {
         log.info("开始执行预约任务: 学号={}, 时间={}", profile.getStudentId(), timeConfig.getStartTime());
 
+        LibraryBookingReportVO report = new LibraryBookingReportVO();
+        report.setStudentId(profile.getStudentId());
+        report.setConfigId(timeConfig.getId());
+        report.setSuccess(false);
+
+        List<Integer> seatIds = profile.candidateSeatIds();
+        if (seatIds.isEmpty()) {
+            report.setMessage("未配置座位");
+            recordReport(report);
+            return;
+        }
+
         try {
-            // 1. 预登录 (获取 Token)
-            String uuid = httpUtil.getCaptchaUuid();
-            LibraryHttpUtil.LoginResult login = httpUtil.login(profile.getStudentId(), profile.getPassword(), uuid);
+            LocalDateTime openAt = resolveWindowOpen(timeConfig.getAutoStartTime());
+            long openEpochMillis = openAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            long openNanos = PreciseTimer.toNanoDeadline(openEpochMillis);
+            report.setWindowOpenAt(openAt);
 
-            // 2. 等待直到 autoStartTime
-            // (原 BookingService 中的 waitUntil 逻辑)
+            // 开始执行时突发窗口已过 (如补发的触发过晚)，不再发请求
+            long lateMillis = System.currentTimeMillis() - openEpochMillis;
+            if (lateMillis > burstSize * burstIntervalMs) {
+                log.warn("预约任务开始时已错过开放时刻: 学号={}, 晚了{}ms", profile.getStudentId(), lateMillis);
+                report.setMessage("任务开始时已错过开放时刻 (晚 " + lateMillis + "ms)");
+                return;
+            }
 
-            // 3. 循环重试预约
-            boolean success = false;
-            int maxRetries = 20;
+            // 从现在到突发结果全部返回，为预约请求保留图书馆上游的并发名额 (窗口外普通请求可借用)
+            clientRegistry.limiter(Upstream.WSLIB).reserve(openEpochMillis - System.currentTimeMillis()
+                    + burstSize * burstIntervalMs + TimeUnit.SECONDS.toMillis(BURST_AWAIT_SECONDS));
 
-            String date = LocalDate.now().toString();
+            // 1. 预登录 (获取 Token)：复用缓存的登录态，要求其至少覆盖到突发结束
+            long minValidMillis = openEpochMillis - System.currentTimeMillis()
+                    + burstSize * burstIntervalMs + TOKEN_VALIDITY_MARGIN_MILLIS;
+            LibraryHttpUtil.LoginResult login = tokenCache.getLogin(profile.getStudentId(), profile.getPassword(), minValidMillis);
+
+            // 2. 连接预热：登录后先建连，临近开放时再预热一次并测量 RTT
+            //    每个时间片会并发请求全部候选座位，HTTP/1.1 下需要同样多的连接
+            int connections = Math.max(warmConnections, seatIds.size());
+            httpUtil.warmUp(connections);
+            PreciseTimer.parkUntil(openNanos - WARM_UP_LEAD_NANOS);
+            long rttMs = httpUtil.warmUp(connections);
+            report.setRttMs(rttMs);
+
+            // 3. 提前半个 RTT 发出首个请求，使其恰好在开放时刻到达
+            long oneWayNanos = rttMs > 0 ? Math.min(rttMs, MAX_RTT_COMPENSATION_MS) * 1_000_000L / 2 : 0;
+
+            String date = openAt.toLocalDate().toString();
             String startDateTime = date + " " + timeConfig.getStartTime() + ":00";
             String endDateTime = date + " " + timeConfig.getEndTime() + ":00";
 
-            for (int i = 0; i < maxRetries; i++) {
-                try {
-                    LibraryHttpUtil.BookingResult result = httpUtil.bookSeat(
-                            profile.getSeatId(),
-                            startDateTime,
-                            endDateTime,
-                            login.getToken(),
-                            login.getTicket()
-                    );
-
-                    if (result.isSuccess()) {
-                        success = true;
-                        log.info("预约成功! 学号={}", profile.getStudentId());
-                        // TODO: 发送 Server酱通知
-                        break;
+            long firstSentNanos = burst(profile, seatIds, startDateTime, endDateTime, login, openNanos - oneWayNanos, report);
+
+            // 4. 统计首个请求相对开放时刻的偏移
+            if (firstSentNanos > 0) {
+                report.setFirstSendOffsetMs((firstSentNanos - openNanos) / 1_000_000.0);
+                report.setFirstArrivalOffsetMs((firstSentNanos + oneWayNanos - openNanos) / 1_000_000.0);
+            }
+
+            if (report.getSuccess()) {
+                log.info("预约成功! 学号={}", profile.getStudentId());
+                // TODO: 发送 Server酱通知
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report.setMessage("任务被中断");
+        } catch (Exception e) {
+            log.error("预约流程致命错误", e);
+            report.setMessage("执行异常: " + e.getMessage());
+        } finally {
+            recordReport(report);
+        }
+    }
+
+    /**
+     * 按节奏突发预约请求：每个时间片对全部候选座位并发发出请求
+     * 任一座位成功后停止后续时间片，并取消尚未写出的请求；
+     * 已写出的请求仍等待返回，若竞态中多抢到座位则记录，开启释放时异步发出释放请求 (不阻塞回调线程)，报告前等待释放结果；
+     * 收到认证失败时使缓存的登录态失效，下一个时间片前重新登录
+     * @return 首个请求写出时刻 (System.nanoTime)，没有请求发出时返回 0
+     */
+    private long burst(LibraryProfile profile, List<Integer> seatIds, String startDateTime, String endDateTime,
+                       LibraryHttpUtil.LoginResult initialLogin, long firstSendNanos,
+                       LibraryBookingReportVO report) throws Exception {
+        AtomicReference<BookingAttempt> winner = new AtomicReference<>();
+        List<CompletableFuture<Boolean>> releases = new CopyOnWriteArrayList<>();
+        AtomicBoolean authFailed = new AtomicBoolean(false);
+        List<BookingAttempt> attempts = new CopyOnWriteArrayList<>();
+        long burstMillis = burstSize * burstIntervalMs;
+        LibraryHttpUtil.LoginResult login = initialLogin;
+
+        slots:
+        for (int i = 0; i < burstSize; i++) {
+            PreciseTimer.parkUntil(firstSendNanos + i * burstIntervalMs * 1_000_000L);
+            if (authFailed.compareAndSet(true, false)) {
+                login = tokenCache.getLogin(profile.getStudentId(), profile.getPassword(), burstMillis);
+            }
+            for (Integer seatId : seatIds) {
+                if (winner.get() != null) break slots;
+
+                BookingAttempt attempt = new BookingAttempt(seatId, login);
+                attempt.call = httpUtil.newBookingCall(seatId, startDateTime, endDateTime,
+                        login.getToken(), login.getTicket(), attempt.timing);
+                attempts.add(attempt);
+                attempt.call.enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        attempt.result.complete(new LibraryHttpUtil.BookingResult(false,
+                                call.isCanceled() ? "已取消" : "网络异常: " + e.getMessage(), ""));
                     }
-                    // 失败立即重试，无 sleep
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        LibraryHttpUtil.BookingResult result;
+                        try (response) {
+                            result = httpUtil.parseBookingResponse(seatId, response);
+                        } catch (Exception e) {
+                            result = new LibraryHttpUtil.BookingResult(false, "响应解析异常: " + e.getMessage(), "");
+                        }
+                        if (result.isSuccess()) {
+                            if (winner.compareAndSet(null, attempt)) {
+                                cancelUnsent(attempts);
+                            } else {
+                                releases.add(releaseExtraSeat(result, attempt.login));
+                            }
+                        } else if (result.isAuthFailure()) {
+                            tokenCache.invalidate(profile.getStudentId(), attempt.login.getToken());
+                            authFailed.set(true);
+                        }
+                        attempt.result.complete(result);
+                    }
+                });
+            }
+        }
+
+        // 等待在途请求全部返回，再等待其中发出的释放请求 (释放请求在预约结果完成前登记)
+        try {
+            CompletableFuture.allOf(attempts.stream().map(a -> a.result).toArray(CompletableFuture[]::new))
+                    .get(BURST_AWAIT_SECONDS, TimeUnit.SECONDS);
+            CompletableFuture.allOf(releases.toArray(CompletableFuture[]::new))
+                    .get(BURST_AWAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("部分预约或释放请求未在 {} 秒内返回", BURST_AWAIT_SECONDS);
+        }
+
+        report.setAttempts(attempts.size());
+        report.setCancelledAttempts((int) attempts.stream().filter(a -> a.call.isCanceled()).count());
+        report.setExtraSeats(releases.size());
+        report.setReleasedSeats((int) releases.stream().filter(r -> Boolean.TRUE.equals(r.getNow(false))).count());
+
+        BookingAttempt won = winner.get();
+        if (won != null) {
+            report.setSuccess(true);
+            report.setSeatId(won.seatId);
+            LibraryHttpUtil.BookingResult r = won.result.getNow(null);
+            report.setMessage(r != null ? r.getMessage() : "预约成功");
+        } else {
+            LibraryHttpUtil.BookingResult last = null;
+            for (BookingAttempt a : attempts) {
+                LibraryHttpUtil.BookingResult r = a.result.getNow(null);
+                if (r != null) last = r;
+            }
+            report.setMessage(last != null ? last.getMessage() : "无响应");
+        }
+
+        return attempts.stream().mapToLong(a -> a.timing.getSentNanos())
+                .filter(n -> n > 0).min().orElse(0);
+    }
+
+    /**
+     * 取消尚未写出到网络的请求 (已写出的请求服务端可能已处理，需等待结果以便释放)
+     */
+    private void cancelUnsent(List<BookingAttempt> attempts) {
+        for (BookingAttempt a : attempts) {
+            if (a.timing.getSentNanos() == 0 && !a.result.isDone()) {
+                a.call.cancel();
+            }
+        }
+    }
+
+    /**
+     * 处理竞态中多抢到的座位：未开启释放时只记录，开启时异步发出取消请求，在 OkHttp 的回调线程中不做阻塞调用
+     * @return 释放结果，成功释放时为 true (不会异常完成)
+     */
+    private CompletableFuture<Boolean> releaseExtraSeat(LibraryHttpUtil.BookingResult result, LibraryHttpUtil.LoginResult login) {
+        String bookingId = result.getBookingId();
+        if (bookingId == null) {
+            log.warn("竞态中多抢到座位但响应缺少预约ID，需人工释放: {}", result.getRawResponse());
+            return CompletableFuture.completedFuture(false);
+        }
+        if (!releaseExtraSeats) {
+            log.warn("竞态中多抢到座位，未开启自动释放，需人工释放: 预约ID={}, 响应={}", bookingId, result.getRawResponse());
+            return CompletableFuture.completedFuture(false);
+        }
+        CompletableFuture<Boolean> released = new CompletableFuture<>();
+        httpUtil.newCancelCall(bookingId, login.getToken(), login.getTicket()).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                log.error("取消预约失败: 预约ID={}", bookingId, e);
+                released.complete(false);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                try (response) {
+                    released.complete(httpUtil.parseCancelResponse(bookingId, response));
                 } catch (Exception e) {
-                    log.error("单次预约异常", e);
+                    log.error("取消预约响应解析失败: 预约ID={}", bookingId, e);
+                    released.complete(false);
                 }
             }
+        });
+        return released;
+    }
 
-        } catch (Exception e) {
-            log.error("预约流程致命错误", e);
+    private LocalDateTime resolveWindowOpen(String autoStartTime) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime openAt = now.toLocalDate().atTime(LocalTime.parse(autoStartTime, HH_MM));
+        // 取离现在最近的一次：触发点在开放前几秒，跨零点时开放时刻在次日；
+        // 任务排队晚于开放时刻执行时仍是当天 (由调用方判断是否已错过)，不能顺延到次日
+        if (openAt.isBefore(now.minusHours(12))) {
+            openAt = openAt.plusDays(1);
+        } else if (openAt.isAfter(now.plusHours(12))) {
+            openAt = openAt.minusDays(1);
+        }
+        return openAt;
+    }
+
+    private void recordReport(LibraryBookingReportVO report) {
+        log.info("预约报告: 学号={}, 成功={}, 请求数={}, RTT={}ms, 首包发出偏移={}ms, 首包到达偏移(估)={}ms",
+                report.getStudentId(), report.getSuccess(), report.getAttempts(), report.getRttMs(),
+                report.getFirstSendOffsetMs(), report.getFirstArrivalOffsetMs());
+        reports.addFirst(report);
+        while (reports.size() > maxReports) {
+            reports.pollLast();
         }
     }
 
+    /**
+     * 单个座位的单次预约请求
+     */
+    private static final class BookingAttempt {
+        private final Integer seatId;
+        private final LibraryHttpUtil.LoginResult login;
+        private final LibraryHttpUtil.CallTiming timing = new LibraryHttpUtil.CallTiming();
+        private final CompletableFuture<LibraryHttpUtil.BookingResult> result = new CompletableFuture<>();
+        private volatile Call call;
+
+        private BookingAttempt(Integer seatId, LibraryHttpUtil.LoginResult login) {
+            this.seatId = seatId;
+            this.login = login;
+        }
+    }
+
+    /**
+     * 最近的预约任务报告 (新的在前)
+     */
+    public List<LibraryBookingReportVO> getRecentReports() {
+        return new ArrayList<>(reports);
+    }
+
     /**
      * 【新增】测试预约 (同步方法，直接返回结果)
      * 用于管理员手动测试某用户的账号或时间段是否有效
@@ -94,9 +363,8 @@ public class LibraryBookingService {
         }
 
         try {
-            // 2. 登录获取 Token
-            String uuid = httpUtil.getCaptchaUuid();
-            LibraryHttpUtil.LoginResult login = httpUtil.login(profile.getStudentId(), profile.getPassword(), uuid);
+            // 2. 获取 Token (优先复用缓存的登录态)
+            LibraryHttpUtil.LoginResult login = tokenCache.getLogin(profile.getStudentId(), profile.getPassword(), TOKEN_VALIDITY_MARGIN_MILLIS);
 
             // 3. 构建完整的日期时间字符串 (假设测试当天的)
             String date = LocalDate.now().toString();
@@ -104,14 +372,14 @@ public class LibraryBookingService {
             String fullStartTime = startTime.contains(" ") ? startTime : (date + " " + startTime + ":00");
             String fullEndTime = endTime.contains(" ") ? endTime : (date + " " + endTime + ":00");
 
-            // 4. 发起一次预约请求
-            return httpUtil.bookSeat(
-                    targetSeatId,
-                    fullStartTime,
-                    fullEndTime,
-                    login.getToken(),
-                    login.getTicket()
-            );
+            // 4. 发起一次预约请求，登录态失效时重新登录再试一次
+            LibraryHttpUtil.BookingResult result = httpUtil.bookSeat(targetSeatId, fullStartTime, fullEndTime, login.getToken(), login.getTicket());
+            if (result.isAuthFailure()) {
+                tokenCache.invalidate(studentId, login.getToken());
+                login = tokenCache.getLogin(profile.getStudentId(), profile.getPassword(), TOKEN_VALIDITY_MARGIN_MILLIS);
+                result = httpUtil.bookSeat(targetSeatId, fullStartTime, fullEndTime, login.getToken(), login.getTicket());
+            }
+            return result;
 
         } catch (Exception e) {
             log.error("测试预约异常", e);
@@ -3,58 +3,291 @@ package com.partner.service;
 import com.partner.entity.library.LibraryProfile;
 import com.partner.entity.library.LibraryTimeConfig;
 import com.partner.mapper.LibraryMapper;
+import com.partner.utils.InstrumentedExecutor;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalTime;
+import java.time.*;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * 图书馆自动预约触发器
+ * 在内存中维护按触发时刻排序的队列，配置变更时增量更新，不再每秒扫库
+ * 到期的任务显式提交到预约执行器 (每任务一个虚拟线程)，触发线程本身不做阻塞操作
+ */
 @Slf4j
 @Service
 public class LibrarySchedulerService {
 
+    private static final DateTimeFormatter HH_MM = DateTimeFormatter.ofPattern("HH:mm");
+
+    // 提前触发的秒数 (给登录、预热留出时间)
+    private static final int TRIGGER_LEAD_SECONDS = 5;
+    // 错过触发点后仍允许补发的最大延迟
+    private static final long CATCH_UP_MILLIS = 5_000;
+    // 检查队头的间隔
+    private static final long TICK_MILLIS = 50;
+    // 全量重建的兜底周期 (防止绕过接口直接改库)
+    private static final long REBUILD_MINUTES = 30;
+
     @Autowired
     private LibraryMapper libraryMapper;
 
     @Autowired
     private LibraryBookingService bookingService;
 
-    // 每秒扫描一次
-    @Scheduled(cron = "* * * * * ?")
-    public void scanAndBook() {
-        LocalTime now = LocalTime.now();
+    // 预约执行器 (见 ExecutorConfig)；预约任务会等待到开放时刻，不能在触发线程上执行
+    @Autowired
+    @Qualifier("bookingExecutor")
+    private InstrumentedExecutor bookingExecutor;
+
+    private final Object lock = new Object();
+    private final PriorityQueue<Trigger> queue = new PriorityQueue<>(Comparator.comparingLong((Trigger t) -> t.fireAt));
+    private final Map<Long, Trigger> triggersByConfig = new HashMap<>();
+    private final Map<String, LibraryProfile> profiles = new HashMap<>();
+    // 每个配置最近一次触发对应的日期，保证每天只触发一次
+    private final Map<Long, LocalDate> lastFired = new ConcurrentHashMap<>();
 
-        // 1. 获取所有开启了自动预约的用户
-        List<LibraryProfile> activeUsers = libraryMapper.findAutoEnabledUsers();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "library-trigger");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void start() {
+        ticker.execute(this::rebuildAll);
+        ticker.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        ticker.scheduleWithFixedDelay(this::rebuildAll, REBUILD_MINUTES, REBUILD_MINUTES, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+    }
 
-        for (LibraryProfile user : activeUsers) {
-            // 2. 获取该用户的时间配置
-            List<LibraryTimeConfig> configs = libraryMapper.findActiveTimeConfigs(user.getStudentId());
+    // ================= 增量维护 =================
 
-            for (LibraryTimeConfig config : configs) {
-                // 3. 检查触发时间 (autoStartTime - 5秒)
-                if (shouldTrigger(now, config.getAutoStartTime())) {
-                    log.info("触发预约: 用户={}, 目标时间={}", user.getStudentId(), config.getAutoStartTime());
-                    // 异步执行
-                    bookingService.executeBookingTask(user, config);
+    /**
+     * 时间配置新增或修改后调用，按数据库最新状态重新排期
+     */
+    public void onTimeConfigChanged(Long configId) {
+        if (configId == null) return;
+        try {
+            LibraryTimeConfig config = libraryMapper.findTimeConfigById(configId);
+            if (config == null) {
+                onTimeConfigRemoved(configId);
+                return;
+            }
+            LibraryProfile profile = libraryMapper.findProfile(config.getStudentId());
+            synchronized (lock) {
+                cancel(configId);
+                if (isAutoEnabled(profile) && Boolean.TRUE.equals(config.getIsActive())) {
+                    profiles.put(profile.getStudentId(), profile);
+                    schedule(config, System.currentTimeMillis());
                 }
             }
+        } catch (Exception e) {
+            log.error("更新预约触发器失败: configId={}", configId, e);
+        }
+    }
+
+    /**
+     * 时间配置删除后调用
+     */
+    public void onTimeConfigRemoved(Long configId) {
+        synchronized (lock) {
+            cancel(configId);
         }
     }
 
-    private boolean shouldTrigger(LocalTime now, String autoStartTimeStr) {
+    /**
+     * 用户配置保存或删除后调用，重新装载该用户的全部时间配置
+     */
+    public void onProfileChanged(String studentId) {
+        if (studentId == null) return;
         try {
-            LocalTime target = LocalTime.parse(autoStartTimeStr, DateTimeFormatter.ofPattern("HH:mm"));
-            LocalTime triggerTime = target.minusSeconds(5); // 提前5秒触发
+            LibraryProfile profile = libraryMapper.findProfile(studentId);
+            List<LibraryTimeConfig> configs = isAutoEnabled(profile)
+                    ? libraryMapper.findActiveTimeConfigs(studentId)
+                    : Collections.emptyList();
+            long now = System.currentTimeMillis();
+            synchronized (lock) {
+                new ArrayList<>(triggersByConfig.values()).stream()
+                        .filter(t -> studentId.equals(t.config.getStudentId()))
+                        .forEach(t -> cancel(t.config.getId()));
+                if (configs.isEmpty()) {
+                    profiles.remove(studentId);
+                    return;
+                }
+                profiles.put(studentId, profile);
+                configs.forEach(c -> schedule(c, now));
+            }
+        } catch (Exception e) {
+            log.error("更新用户预约触发器失败: 学号={}", studentId, e);
+        }
+    }
 
-            return now.getHour() == triggerTime.getHour() &&
-                    now.getMinute() == triggerTime.getMinute() &&
-                    now.getSecond() == triggerTime.getSecond();
+    /**
+     * 从数据库全量重建触发队列 (启动时及兜底周期执行)
+     */
+    public void rebuildAll() {
+        try {
+            List<LibraryProfile> activeUsers = libraryMapper.findAutoEnabledUsers();
+            List<LibraryTimeConfig> configs = libraryMapper.findAllActiveTimeConfigs();
+            long now = System.currentTimeMillis();
+            synchronized (lock) {
+                queue.clear();
+                triggersByConfig.clear();
+                profiles.clear();
+                activeUsers.forEach(p -> profiles.put(p.getStudentId(), p));
+                for (LibraryTimeConfig config : configs) {
+                    if (profiles.containsKey(config.getStudentId())) {
+                        schedule(config, now);
+                    }
+                }
+            }
+            log.info("预约触发队列已重建: 用户={}, 配置={}", activeUsers.size(), triggersByConfig.size());
         } catch (Exception e) {
-            return false;
+            log.error("重建预约触发队列失败", e);
+        }
+    }
+
+    /**
+     * 当前排期快照 (按触发时间排序)，供管理端查看
+     */
+    public List<Map<String, Object>> snapshot() {
+        List<Trigger> list;
+        synchronized (lock) {
+            list = new ArrayList<>(triggersByConfig.values());
+        }
+        list.sort(Comparator.comparingLong((Trigger t) -> t.fireAt));
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Trigger t : list) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("configId", t.config.getId());
+            item.put("studentId", t.config.getStudentId());
+            item.put("autoStartTime", t.config.getAutoStartTime());
+            item.put("fireAt", LocalDateTime.ofInstant(Instant.ofEpochMilli(t.fireAt), ZoneId.systemDefault()));
+            result.add(item);
+        }
+        return result;
+    }
+
+    // ================= 触发 =================
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            List<Trigger> due = new ArrayList<>();
+            synchronized (lock) {
+                while (!queue.isEmpty() && queue.peek().fireAt <= now) {
+                    Trigger t = queue.poll();
+                    if (t.cancelled) continue;
+                    triggersByConfig.remove(t.config.getId());
+                    due.add(t);
+                }
+            }
+            for (Trigger t : due) {
+                fire(t, now);
+            }
+        } catch (Exception e) {
+            // 吞掉异常，避免调度线程退出
+            log.error("预约触发器运行异常", e);
+        }
+    }
+
+    private void fire(Trigger t, long now) {
+        LibraryTimeConfig config = t.config;
+        long lateness = now - t.fireAt;
+
+        if (lateness > CATCH_UP_MILLIS) {
+            log.warn("错过预约触发点且超出补发窗口: 用户={}, 目标时间={}, 延迟={}ms",
+                    config.getStudentId(), config.getAutoStartTime(), lateness);
+        } else if (!t.targetDate.equals(lastFired.put(config.getId(), t.targetDate))) {
+            LibraryProfile profile;
+            synchronized (lock) {
+                profile = profiles.get(config.getStudentId());
+            }
+            if (profile != null) {
+                log.info("触发预约: 用户={}, 目标时间={}, 延迟={}ms", config.getStudentId(), config.getAutoStartTime(), lateness);
+                try {
+                    bookingExecutor.execute(() -> bookingService.executeBookingTask(profile, config));
+                } catch (RejectedExecutionException e) {
+                    // 执行器已关闭 (应用停止中)：只放弃这一个任务，同一时刻到期的其他触发照常处理
+                    log.error("预约任务被拒绝 (预约执行器已关闭): 用户={}, 目标时间={}", config.getStudentId(), config.getAutoStartTime());
+                }
+            }
+        }
+
+        // 排下一天
+        synchronized (lock) {
+            if (!triggersByConfig.containsKey(config.getId()) && profiles.containsKey(config.getStudentId())) {
+                schedule(config, now);
+            }
+        }
+    }
+
+    // ================= 排期计算 (调用方持有 lock) =================
+
+    private void schedule(LibraryTimeConfig config, long now) {
+        LocalTime target;
+        try {
+            target = LocalTime.parse(config.getAutoStartTime(), HH_MM);
+        } catch (Exception e) {
+            log.warn("无效的自动预约时间: configId={}, autoStartTime={}", config.getId(), config.getAutoStartTime());
+            return;
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = LocalDate.now(zone).minusDays(1);
+        // 从昨天开始找：提前量可能跨过零点
+        for (int i = 0; i < 3; i++, date = date.plusDays(1)) {
+            if (date.equals(lastFired.get(config.getId()))) continue;
+            long fireAt = date.atTime(target).minusSeconds(TRIGGER_LEAD_SECONDS)
+                    .atZone(zone).toInstant().toEpochMilli();
+            // 刚错过几秒的仍然排入队列，由 tick 立即补发
+            if (fireAt + CATCH_UP_MILLIS >= now) {
+                Trigger trigger = new Trigger(config, date, fireAt);
+                triggersByConfig.put(config.getId(), trigger);
+                queue.add(trigger);
+                return;
+            }
+        }
+    }
+
+    private void cancel(Long configId) {
+        Trigger old = triggersByConfig.remove(configId);
+        if (old != null) {
+            // 惰性删除：出队时跳过
+            old.cancelled = true;
+        }
+    }
+
+    private boolean isAutoEnabled(LibraryProfile profile) {
+        return profile != null && Boolean.TRUE.equals(profile.getAutoEnable());
+    }
+
+    private static final class Trigger {
+        private final LibraryTimeConfig config;
+        private final LocalDate targetDate;
+        private final long fireAt;
+        private volatile boolean cancelled;
+
+        private Trigger(LibraryTimeConfig config, LocalDate targetDate, long fireAt) {
+            this.config = config;
+            this.targetDate = targetDate;
+            this.fireAt = fireAt;
         }
     }
-}
\ No newline at end of file
+}
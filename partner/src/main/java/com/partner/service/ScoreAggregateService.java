@@ -0,0 +1,164 @@
+package com.partner.service;
+
+import com.partner.entity.Score;
+import com.partner.entity.ScoreAggregate;
+import com.partner.mapper.ScoreAggregateMapper;
+import com.partner.mapper.ScoreMapper;
+import com.partner.vo.GpaSummaryVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.*;
+
+/**
+ * 成绩汇总维护
+ * 成绩写入时按学期和总计累加增量 (需在调用方事务内)；定时全量重建以修正直接改库等造成的偏差
+ * 重建按学生分事务进行，与成绩写入按相同顺序 (成绩行 -> 汇总行) 加锁，并发同步的增量不会丢失或重复计入
+ */
+@Slf4j
+@Service
+public class ScoreAggregateService {
+
+    @Autowired
+    private ScoreAggregateMapper scoreAggregateMapper;
+
+    @Autowired
+    private ScoreMapper scoreMapper;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 记录一批成绩变化：removed 为被替换掉的旧值，added 为新写入的值
+     * 调用方须在同一事务内先用 ScoreMapper.lockByStudent 锁住该学生的成绩行，再读取旧值计算变化
+     */
+    public void apply(String studentId, List<Score> removed, List<Score> added) {
+        Map<String, ScoreAggregate> deltas = new LinkedHashMap<>();
+        for (Score s : removed) {
+            accumulate(deltas, studentId, s, -1);
+        }
+        for (Score s : added) {
+            accumulate(deltas, studentId, s, 1);
+        }
+        deltas.values().forEach(scoreAggregateMapper::applyDelta);
+    }
+
+    /**
+     * 读取绩点汇总 (只读汇总行，与课程数无关)
+     */
+    public GpaSummaryVO getSummary(String studentId) {
+        GpaSummaryVO summary = new GpaSummaryVO();
+        for (ScoreAggregate agg : scoreAggregateMapper.selectByStudent(studentId)) {
+            GpaSummaryVO.Term term = toTerm(agg);
+            if (ScoreAggregate.ALL.equals(agg.getYear())) {
+                summary.setTotal(term);
+            } else {
+                summary.getTerms().add(term);
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * 从 score 表重建汇总 (studentId 为空时逐个学生重建全部)
+     */
+    public int rebuild(String studentId) {
+        if (studentId != null) {
+            int rows = rebuildStudent(studentId);
+            log.info("成绩汇总已重建: 学号={}, 汇总行={}", studentId, rows);
+            return rows;
+        }
+        int rows = 0;
+        int students = 0;
+        int failed = 0;
+        for (String id : scoreAggregateMapper.selectStudentIds()) {
+            try {
+                rows += rebuildStudent(id);
+                students++;
+            } catch (RuntimeException e) {
+                // 单个学生失败 (如锁等待超时) 不影响其他学生，下次重建再校正
+                failed++;
+                log.warn("成绩汇总重建失败: 学号={}, {}", id, e.getMessage());
+            }
+        }
+        log.info("成绩汇总已全部重建: 学生={}, 失败={}, 汇总行={}", students, failed, rows);
+        return rows;
+    }
+
+    /**
+     * 每日凌晨一致性重建
+     */
+    @Scheduled(cron = "${score.aggregate.rebuild-cron:0 30 4 * * *}")
+    public void rebuildAll() {
+        rebuild(null);
+    }
+
+    /**
+     * 单个学生的重建事务：先锁成绩行，进行中的同步提交后才读取成绩，重建提交前新的同步在成绩行上等待
+     */
+    private int rebuildStudent(String studentId) {
+        Integer rows = transactionTemplate.execute(status -> {
+            scoreMapper.lockByStudent(studentId);
+            scoreAggregateMapper.deleteAggregates(studentId);
+            return scoreAggregateMapper.rebuildTerms(studentId) + scoreAggregateMapper.rebuildTotals(studentId);
+        });
+        return rows == null ? 0 : rows;
+    }
+
+    private void accumulate(Map<String, ScoreAggregate> deltas, String studentId, Score s, int sign) {
+        add(deltas.computeIfAbsent(s.getYear() + "|" + s.getSemester(),
+                k -> empty(studentId, s.getYear(), s.getSemester())), s, sign);
+        add(deltas.computeIfAbsent(ScoreAggregate.ALL,
+                k -> empty(studentId, ScoreAggregate.ALL, ScoreAggregate.ALL)), s, sign);
+    }
+
+    private void add(ScoreAggregate agg, Score s, int sign) {
+        BigDecimal credit = decimal(s.getCredit(), 1);
+        BigDecimal signum = BigDecimal.valueOf(sign);
+        agg.setCourseCount(agg.getCourseCount() + sign);
+        agg.setTotalCredit(agg.getTotalCredit().add(credit.multiply(signum)));
+        if (s.getPoint() != null) {
+            agg.setGpaCredit(agg.getGpaCredit().add(credit.multiply(signum)));
+            agg.setPointCreditSum(agg.getPointCreditSum().add(credit.multiply(decimal(s.getPoint(), 2)).multiply(signum)));
+        }
+        agg.setGpaSum(agg.getGpaSum().add(decimal(s.getGpa(), 2).multiply(signum)));
+    }
+
+    private ScoreAggregate empty(String studentId, String year, String semester) {
+        ScoreAggregate agg = new ScoreAggregate();
+        agg.setStudentId(studentId);
+        agg.setYear(year);
+        agg.setSemester(semester);
+        agg.setCourseCount(0);
+        agg.setTotalCredit(BigDecimal.ZERO);
+        agg.setGpaCredit(BigDecimal.ZERO);
+        agg.setPointCreditSum(BigDecimal.ZERO);
+        agg.setGpaSum(BigDecimal.ZERO);
+        return agg;
+    }
+
+    private GpaSummaryVO.Term toTerm(ScoreAggregate agg) {
+        GpaSummaryVO.Term term = new GpaSummaryVO.Term();
+        term.setYear(agg.getYear());
+        term.setSemester(agg.getSemester());
+        term.setCourseCount(agg.getCourseCount());
+        term.setTotalCredit(agg.getTotalCredit());
+        term.setGpaSum(agg.getGpaSum());
+        term.setGpa(agg.getGpaCredit().signum() > 0
+                ? agg.getPointCreditSum().divide(agg.getGpaCredit(), 2, RoundingMode.HALF_UP)
+                : BigDecimal.ZERO);
+        return term;
+    }
+
+    /**
+     * 按 score 表列精度取值 (学分 1 位小数，其余 2 位)，使增量与重建结果一致
+     */
+    private BigDecimal decimal(Double value, int scale) {
+        return value == null ? BigDecimal.ZERO : BigDecimal.valueOf(value).setScale(scale, RoundingMode.HALF_UP);
+    }
+}
@@ -1,30 +1,40 @@
 package com.partner.service;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
+import com.fasterxml.jackson.core.JsonParser;
 import com.partner.dto.CommonQueryDTO;
 import com.partner.entity.Score;
+import com.partner.enums.CacheDataType;
 import com.partner.enums.SitesURL;
+import com.partner.enums.Upstream;
 import com.partner.mapper.ScoreMapper;
+import com.partner.utils.CircuitBreaker;
+import com.partner.utils.HttpClientRegistry;
+import com.partner.utils.JsonStreams;
+import com.partner.utils.SingleFlight;
+import com.partner.utils.UpstreamLimiter;
+import com.partner.vo.ScoreDeltaVO;
+import com.partner.vo.ScoreSyncStatsVO;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
@@ -33,106 +43,437 @@ public class ScoreService {
     @Autowired
     ScoreMapper scoreMapper;
 
-    @Transactional(rollbackFor = Exception.class)
-    public List<Score> syncScores(CommonQueryDTO queryDTO) {
-        // 1. 爬虫获取数据
-        String jsonResponse = fetchScoreJson(queryDTO);
+    @Autowired
+    HttpClientRegistry clientRegistry;
+
+    @Autowired
+    JwglSessionPool sessionPool;
+
+    @Autowired
+    DataFreshnessService freshnessService;
+
+    @Autowired
+    ScoreAggregateService aggregateService;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    // 同一账号同一学期并发的同步合并为一次爬取，完成后短时间内复用结果 (强制刷新与普通调用分开合并)
+    @Value("${single-flight.share-window-ms:3000}")
+    private long shareWindowMillis;
+
+    // 每页条数 (教务系统单页上限通常为 100 以上，过大时响应慢)
+    @Value("${jwgl.score.page-size:100}")
+    private int pageSize;
 
-        // 2. 解析数据
-        List<Score> fetchedScores = parseScoreJson(jsonResponse, queryDTO.getAccount());
+    // 单次同步中同时在途的分页请求数
+    @Value("${jwgl.score.page-concurrency:4}")
+    private int pageConcurrency;
 
-        // 3. 数据库查重与入库
-        saveNewScores(queryDTO.getAccount(), fetchedScores);
+    private static final long PAGE_WAIT_SECONDS = 120;
+    private static final int MAX_SYNC_STATS = 100;
+    private static final int UPSERT_BATCH_SIZE = 200;
+    // 首次入库的学生没有成绩行可锁，并发写入可能在间隙锁上死锁，被回滚的一方重试
+    private static final int PERSIST_ATTEMPTS = 3;
 
-        return fetchedScores;
+    private final Deque<ScoreSyncStatsVO> recentSyncs = new ConcurrentLinkedDeque<>();
+    private SingleFlight<String, ScoreDeltaVO> syncFlight;
+
+    @PostConstruct
+    public void init() {
+        syncFlight = new SingleFlight<>("syncScores", shareWindowMillis);
+    }
+
+    /**
+     * 同步成绩，返回相对本地数据的变更集 (新增/更正)；需要全部成绩时另调 listLocalScores (/client/queryLocalScore)
+     * 同一 (账号, 学期, 是否强制刷新) 的并发调用共享一次爬取与入库
+     * 爬取在事务外进行，只有入库 (锁行、对比、写入、汇总) 在一个短事务中
+     */
+    public ScoreDeltaVO syncScores(CommonQueryDTO queryDTO) {
+        String key = queryDTO.getAccount() + "|" + DataFreshnessService.termKey(queryDTO)
+                + "|" + DataFreshnessService.isForced(queryDTO);
+        return syncFlight.execute(key, () -> doSyncScores(queryDTO));
     }
 
-    private String fetchScoreJson(CommonQueryDTO dto) {
-        if (dto.getJsessionid() == null) throw new IllegalArgumentException("Session 失效");
+    public Map<String, Object> flightStats() {
+        return syncFlight.stats();
+    }
+
+    private ScoreDeltaVO doSyncScores(CommonQueryDTO queryDTO) {
+        // 0. 有效期内不访问教务系统，本地数据即最新
+        if (freshnessService.isFresh(queryDTO, CacheDataType.SCORES)) {
+            log.info("成绩在有效期内，使用本地数据: {}", queryDTO.getAccount());
+            ScoreDeltaVO delta = localDelta(queryDTO);
+            delta.setFresh(true);
+            return delta;
+        }
 
-        OkHttpClient client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS).readTimeout(60, TimeUnit.SECONDS).build();
+        // 1. 爬虫获取数据并边读边解析 (使用会话池中的教务会话，过期自动重新认证)
+        List<Score> fetchedScores = sessionPool.execute(queryDTO.getAccount(), queryDTO.getJsessionid(), queryDTO.getRoute(),
+                session -> fetchScores(queryDTO, session));
+
+        // 2. 与本地按 (学年, 学期, 课程名) 对比，只写入新增和有变化的
+        ScoreDeltaVO delta = persistScores(queryDTO, fetchedScores);
+        freshnessService.markQueried(queryDTO, CacheDataType.SCORES);
+
+        delta.setFresh(false);
+        return delta;
+    }
+
+    /**
+     * 只用本地数据构造变更集 (有效期内、上游熔断时)：added/changed 为空，scores 为本地全部成绩
+     */
+    public ScoreDeltaVO localDelta(CommonQueryDTO queryDTO) {
+        List<Score> local = listLocalScores(queryDTO);
+        ScoreDeltaVO delta = new ScoreDeltaVO();
+        delta.setFresh(false);
+        delta.setUnchanged(local.size());
+        delta.setScores(local);
+        return delta;
+    }
+
+    /**
+     * 查询本地成绩 (不访问教务系统)
+     */
+    public List<Score> listLocalScores(CommonQueryDTO queryDTO) {
+        return scoreMapper.selectByStudentAndTerm(queryDTO.getAccount(),
+                yearName(queryDTO.getXnm()), semesterName(queryDTO.getXqm()));
+    }
+
+    /**
+     * 学年参数 2023 -> 成绩表中的 2023-2024
+     */
+    private String yearName(String xnm) {
+        if (xnm == null || xnm.isEmpty()) return null;
+        try {
+            int start = Integer.parseInt(xnm);
+            return start + "-" + (start + 1);
+        } catch (NumberFormatException e) {
+            return xnm;
+        }
+    }
+
+    /**
+     * 学期参数 (3/12/16) -> 成绩表中的学期名 (1/2/3)
+     */
+    private String semesterName(String xqm) {
+        if (xqm == null || xqm.isEmpty()) return null;
+        switch (xqm) {
+            case "3": return "1";
+            case "12": return "2";
+            case "16": return "3";
+            default: return xqm;
+        }
+    }
+
+    /**
+     * 先同步拉取第一页得到总页数，其余页面以有界并发异步拉取，按页序合并
+     */
+    private List<Score> fetchScores(CommonQueryDTO dto, JwglSessionPool.Session session) {
+        OkHttpClient client = clientRegistry.get(Upstream.JWGL);
+        long startNanos = System.nanoTime();
+
+        ScoreSyncStatsVO stats = new ScoreSyncStatsVO();
+        stats.setStudentId(dto.getAccount());
+        stats.setTermKey(DataFreshnessService.termKey(dto));
+        stats.setStartedAt(LocalDateTime.now());
+        stats.setPageSize(pageSize);
+
+        try {
+            // 1. 第一页
+            ScorePage first;
+            try (Response response = client.newCall(buildPageRequest(dto, session, 1)).execute()) {
+                first = readPage(response, dto.getAccount());
+            }
+            recordPage(stats, 1, first.items.size(), startNanos);
+            stats.setTotalResult(first.totalResult);
+
+            int totalPage = first.totalPage > 0 ? first.totalPage
+                    : Math.max(1, (first.totalResult + pageSize - 1) / pageSize);
+            List<List<Score>> pages = new ArrayList<>(Collections.nCopies(totalPage, (List<Score>) null));
+            pages.set(0, first.items);
+
+            // 2. 其余页面
+            if (totalPage > 1) {
+                fetchRemainingPages(client, dto, session, pages, stats);
+            }
+
+            List<Score> merged = new ArrayList<>(Math.max(first.totalResult, first.items.size()));
+            pages.forEach(merged::addAll);
+
+            stats.setPages(totalPage);
+            stats.setRows(merged.size());
+            for (Score score : merged) {
+                stats.getRowsByTerm().merge(score.getYear() + "_" + score.getSemester(), 1, Integer::sum);
+            }
+            stats.setSuccess(true);
+            return merged;
+        } catch (IOException e) {
+            stats.setSuccess(false);
+            stats.setMessage(e.getMessage());
+            throw new RuntimeException(e instanceof UpstreamLimiter.BusyException || e instanceof CircuitBreaker.OpenException ? e.getMessage() : "网络请求异常", e);
+        } catch (RuntimeException e) {
+            stats.setSuccess(false);
+            stats.setMessage(e.getMessage());
+            throw e;
+        } finally {
+            stats.setElapsedMs((System.nanoTime() - startNanos) / 1_000_000);
+            addSyncStats(stats);
+            log.info("成绩爬取完成: {} 页数={} 条数={} 耗时={}ms", dto.getAccount(), stats.getPages(), stats.getRows(), stats.getElapsedMs());
+        }
+    }
 
+    private void fetchRemainingPages(OkHttpClient client, CommonQueryDTO dto, JwglSessionPool.Session session,
+                                     List<List<Score>> pages, ScoreSyncStatsVO stats) throws IOException {
+        int remaining = pages.size() - 1;
+        Semaphore permits = new Semaphore(Math.max(1, pageConcurrency));
+        CountDownLatch done = new CountDownLatch(remaining);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        try {
+            for (int page = 2; page <= pages.size(); page++) {
+                permits.acquire();
+                if (failure.get() != null) {
+                    // 已有页面失败：不再发出新请求，未发出的页直接计数
+                    permits.release();
+                    done.countDown();
+                    continue;
+                }
+                int pageNo = page;
+                long sentAt = System.nanoTime();
+                client.newCall(buildPageRequest(dto, session, pageNo)).enqueue(new Callback() {
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        try (response) {
+                            ScorePage result = readPage(response, dto.getAccount());
+                            pages.set(pageNo - 1, result.items);
+                            recordPage(stats, pageNo, result.items.size(), sentAt);
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            permits.release();
+                            done.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        failure.compareAndSet(null, e);
+                        permits.release();
+                        done.countDown();
+                    }
+                });
+            }
+            if (!done.await(PAGE_WAIT_SECONDS, TimeUnit.SECONDS)) {
+                throw new IOException("成绩分页拉取超时");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("成绩分页拉取被中断", e);
+        }
+
+        Exception e = failure.get();
+        if (e instanceof RuntimeException) throw (RuntimeException) e;
+        if (e instanceof IOException) throw (IOException) e;
+        if (e != null) throw new IOException(e);
+    }
+
+    private Request buildPageRequest(CommonQueryDTO dto, JwglSessionPool.Session session, int page) {
         FormBody body = new FormBody.Builder()
                 .add("xnm", dto.getXnm() == null ? "" : dto.getXnm())
                 .add("xqm", dto.getXqm() == null ? "" : dto.getXqm())
                 .add("sfzgcj", "").add("_search", "false")
                 .add("nd", String.valueOf(Instant.now().toEpochMilli()))
-                .add("queryModel.showCount", "100").add("queryModel.currentPage", "1")
+                .add("queryModel.showCount", String.valueOf(pageSize))
+                .add("queryModel.currentPage", String.valueOf(page))
                 .add("queryModel.sortOrder", "asc").add("time", "2")
                 .build();
 
-        Request request = new Request.Builder()
+        return new Request.Builder()
                 .url(SitesURL.SCORE_QUERY_URL.getUrl())
                 .post(body)
-                .addHeader("Cookie", "JSESSIONID=" + dto.getJsessionid() + "; route=" + dto.getRoute())
+                .addHeader("Cookie", session.cookieHeader())
                 .addHeader("Referer", SitesURL.JWGL_BASE_URL.getUrl() + "/jwglxt/cjcx/cjcx_cxDgXscj.html")
                 .addHeader("User-Agent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36")
                 .build();
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("请求失败: " + response.code());
-            String res = response.body().string();
-            if (res.contains("login") || res.contains("html")) throw new RuntimeException("登录过期");
-            return res;
-        } catch (IOException e) {
-            throw new RuntimeException("网络请求异常", e);
+    private ScorePage readPage(Response response, String studentId) throws IOException {
+        if (!response.isSuccessful()) throw new IOException("请求失败: " + response.code());
+        // 会话过期时教务系统返回登录页 HTML
+        if (JsonStreams.looksLikeHtml(response.body())) throw new JwglSessionPool.SessionExpiredException("登录过期");
+        return parseScorePage(response.body().byteStream(), studentId);
+    }
+
+    private void recordPage(ScoreSyncStatsVO stats, int page, int rows, long sentAtNanos) {
+        ScoreSyncStatsVO.PageTiming timing = new ScoreSyncStatsVO.PageTiming();
+        timing.setPage(page);
+        timing.setRows(rows);
+        timing.setElapsedMs((System.nanoTime() - sentAtNanos) / 1_000_000);
+        synchronized (stats) {
+            stats.getPageTimings().add(timing);
+        }
+    }
+
+    private void addSyncStats(ScoreSyncStatsVO stats) {
+        recentSyncs.addFirst(stats);
+        while (recentSyncs.size() > MAX_SYNC_STATS) {
+            recentSyncs.pollLast();
+        }
+    }
+
+    /**
+     * 最近的成绩爬取统计 (新的在前)
+     */
+    public List<ScoreSyncStatsVO> getRecentSyncStats() {
+        return new ArrayList<>(recentSyncs);
+    }
+
+    /**
+     * 从响应流中直接读取一页成绩：items 数组解析为实体，同时取出 totalResult/totalPage
+     */
+    static ScorePage parseScorePage(InputStream in, String studentId) throws IOException {
+        ScorePage page = new ScorePage();
+        try (JsonParser p = JsonStreams.parser(in)) {
+            JsonStreams.readRoot(p, (name, v) -> {
+                switch (name) {
+                    case "items": JsonStreams.readArray(v, item -> page.items.add(readScore(item, studentId))); break;
+                    case "totalResult": page.totalResult = JsonStreams.intValue(v, 0); break;
+                    case "totalPage": page.totalPage = JsonStreams.intValue(v, 0); break;
+                    default: break;
+                }
+            });
+        }
+        return page;
+    }
+
+    private static Score readScore(JsonParser p, String studentId) throws IOException {
+        Score s = new Score();
+        s.setStudentId(studentId);
+        s.setYear("");
+        s.setSemester("");
+        s.setCourseName("");
+        JsonStreams.readObject(p, (name, v) -> {
+            switch (name) {
+                case "xnmmc": s.setYear(JsonStreams.text(v)); break;
+                case "xqmmc": s.setSemester(JsonStreams.text(v)); break;
+                case "kcmc": s.setCourseName(JsonStreams.text(v)); break;
+                case "xf": s.setCredit(toDouble(JsonStreams.text(v))); break;
+                case "cj": s.setGrade(toDouble(JsonStreams.text(v))); break;
+                case "jd": s.setPoint(toDouble(JsonStreams.text(v))); break;
+                case "xfjd": s.setGpa(toDouble(JsonStreams.text(v))); break;
+                default: break;
+            }
+        });
+        // 简单的兼容逻辑
+        if (s.getGrade() == null && s.getPoint() != null) s.setGrade(s.getPoint() * 10 + 40);
+        return s;
+    }
+
+    /**
+     * 入库事务，锁冲突 (死锁、锁等待超时) 被回滚时整体重试
+     */
+    private ScoreDeltaVO persistScores(CommonQueryDTO dto, List<Score> fetched) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> upsertScores(dto, fetched));
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt >= PERSIST_ATTEMPTS) {
+                    throw e;
+                }
+                log.info("成绩入库锁冲突，重试: {} 第{}次, {}", dto.getAccount(), attempt, e.getMessage());
+            }
         }
     }
 
-    private List<Score> parseScoreJson(String json, String studentId) {
-        List<Score> list = new ArrayList<>();
-        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
-        JsonArray items = root.getAsJsonArray("items");
-        if (items != null) {
-            for (JsonElement e : items) {
-                JsonObject obj = e.getAsJsonObject();
-                Score s = new Score();
-                s.setStudentId(studentId);
-                s.setYear(getStr(obj, "xnmmc"));
-                s.setSemester(getStr(obj, "xqmmc"));
-                s.setCourseName(getStr(obj, "kcmc"));
-                s.setCredit(getDbl(obj, "xf"));
-                s.setGrade(getDbl(obj, "cj"));
-                s.setPoint(getDbl(obj, "jd"));
-                s.setGpa(getDbl(obj, "xfjd"));
-                // 简单的兼容逻辑
-                if (s.getGrade() == null && s.getPoint() != null) s.setGrade(s.getPoint() * 10 + 40);
-                list.add(s);
+    /**
+     * 先锁住该学生的全部成绩行，再读取本地成绩对比：并发的同步 (不同学期、强制刷新、批量同步) 与汇总重建依次进行，
+     * 后者看到前者已提交的结果，同一变化不会被重复计入汇总
+     */
+    private ScoreDeltaVO upsertScores(CommonQueryDTO dto, List<Score> fetched) {
+        String studentId = dto.getAccount();
+        scoreMapper.lockByStudent(studentId);
+        // 锁定后的第一次普通读取才建立快照，能看到此前持锁事务提交的数据
+        Map<String, Score> existing = new HashMap<>();
+        for (Score s : scoreMapper.selectByStudentAndTerm(studentId, yearName(dto.getXnm()), semesterName(dto.getXqm()))) {
+            existing.put(naturalKey(s), s);
+        }
+
+        // 同一页面中重复的课程以最后一条为准
+        Map<String, Score> incoming = new LinkedHashMap<>();
+        for (Score s : fetched) {
+            incoming.put(naturalKey(s), s);
+        }
+
+        ScoreDeltaVO delta = new ScoreDeltaVO();
+        List<Score> replaced = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Map.Entry<String, Score> e : incoming.entrySet()) {
+            Score s = e.getValue();
+            Score old = existing.get(e.getKey());
+            if (old == null) {
+                s.setCreateTime(now);
+                s.setUpdateTime(now);
+                delta.getAdded().add(s);
+            } else if (!sameValues(old, s)) {
+                replaced.add(old);
+                s.setId(old.getId());
+                s.setCreateTime(old.getCreateTime());
+                s.setUpdateTime(now);
+                delta.getChanged().add(s);
+            } else {
+                delta.setUnchanged(delta.getUnchanged() + 1);
             }
         }
-        return list;
-    }
-
-    private void saveNewScores(String studentId, List<Score> scores) {
-        List<String> existList = scoreMapper.findExistingCourseNamesByStudentId(studentId);
-        Set<String> existSet = new HashSet<>(existList);
-        List<Score> newScores = scores.stream()
-                .filter(s -> !existSet.contains(s.getCourseName()))
-                .peek(s -> {
-                    s.setCreateTime(LocalDateTime.now());
-                    s.setUpdateTime(LocalDateTime.now());
-                }).collect(Collectors.toList());
-
-        if (!newScores.isEmpty()) {
-            scoreMapper.insertScores(newScores);
-            log.info("入库 {} 条新成绩", newScores.size());
+
+        List<Score> writes = new ArrayList<>(delta.getAdded().size() + delta.getChanged().size());
+        writes.addAll(delta.getAdded());
+        writes.addAll(delta.getChanged());
+        for (int from = 0; from < writes.size(); from += UPSERT_BATCH_SIZE) {
+            scoreMapper.upsertScores(writes.subList(from, Math.min(from + UPSERT_BATCH_SIZE, writes.size())));
         }
+        if (!writes.isEmpty()) {
+            // 汇总与成绩在同一事务中更新 (仍持有成绩行锁)
+            aggregateService.apply(studentId, replaced, writes);
+            log.info("成绩入库: {} 新增 {} 条, 更正 {} 条", studentId, delta.getAdded().size(), delta.getChanged().size());
+        }
+        return delta;
+    }
+
+    private static String naturalKey(Score s) {
+        return s.getYear() + "|" + s.getSemester() + "|" + s.getCourseName();
+    }
+
+    /**
+     * 按数据库列精度比较 (学分 1 位小数，其余 2 位)，避免舍入差异被当成更正
+     */
+    private static boolean sameValues(Score a, Score b) {
+        return sameDecimal(a.getGrade(), b.getGrade(), 2)
+                && sameDecimal(a.getPoint(), b.getPoint(), 2)
+                && sameDecimal(a.getGpa(), b.getGpa(), 2)
+                && sameDecimal(a.getCredit(), b.getCredit(), 1);
+    }
+
+    private static boolean sameDecimal(Double a, Double b, int scale) {
+        if (a == null || b == null) return a == b;
+        return BigDecimal.valueOf(a).setScale(scale, RoundingMode.HALF_UP)
+                .compareTo(BigDecimal.valueOf(b).setScale(scale, RoundingMode.HALF_UP)) == 0;
     }
 
     // 工具方法
-    private String getStr(JsonObject o, String k) {
-        return (o.has(k) && !o.get(k).isJsonNull()) ? o.get(k).getAsString() : "";
-    }
-    private Double getDbl(JsonObject o, String k) {
-        if (o.has(k) && !o.get(k).isJsonNull()) {
-            String v = o.get(k).getAsString().trim();
-            if (!v.isEmpty() && !v.equals("null") && !v.equals("--")) {
-                try {
-                    return new BigDecimal(v).setScale(2, RoundingMode.HALF_UP).doubleValue();
-                } catch (Exception ignored) {}
-            }
+    static Double toDouble(String v) {
+        v = v.trim();
+        if (!v.isEmpty() && !v.equals("null") && !v.equals("--")) {
+            try {
+                return new BigDecimal(v).setScale(2, RoundingMode.HALF_UP).doubleValue();
+            } catch (Exception ignored) {}
         }
         return null;
     }
-}
\ No newline at end of file
+
+    static final class ScorePage {
+        final List<Score> items = new ArrayList<>();
+        int totalResult;
+        int totalPage;
+    }
+}
@@ -0,0 +1,226 @@
+package com.partner.service;
+
+import com.partner.dto.CommonQueryDTO;
+import com.partner.enums.CacheDataType;
+import com.partner.enums.Upstream;
+import com.partner.utils.CircuitBreaker;
+import com.partner.utils.HttpClientRegistry;
+import com.partner.utils.InstrumentedExecutor;
+import com.partner.vo.ImportSummaryVO;
+import com.partner.vo.ScoreDeltaVO;
+import com.partner.vo.SyncJobVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 成绩/课表同步任务
+ * 接口提交后立即返回 jobId，爬取在爬取执行器上进行；同一账号、同类数据、同一学期的重复提交并入正在执行的任务，
+ * 客户端放弃重试不会再触发新的爬取；教务系统熔断时直接用本地数据完成任务并标记为旧数据 (stale)
+ */
+@Slf4j
+@Service
+public class SyncJobService {
+
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCESS = "SUCCESS";
+    public static final String STATUS_FAILED = "FAILED";
+
+    @Autowired
+    private ScoreService scoreService;
+
+    @Autowired
+    private CurriculumService curriculumService;
+
+    @Autowired
+    private DataFreshnessService freshnessService;
+
+    @Autowired
+    private HttpClientRegistry clientRegistry;
+
+    @Autowired
+    private JwglSessionPool sessionPool;
+
+    @Autowired
+    @Qualifier("crawlExecutor")
+    private InstrumentedExecutor crawlExecutor;
+
+    // 已结束任务的保留时间 (之后查询返回不存在)
+    @Value("${sync-job.retention-minutes:30}")
+    private long retentionMinutes;
+
+    // jobId -> 任务
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    // (账号, 数据类型, 学期, 是否强制刷新) -> 正在执行的任务
+    private final Map<String, Job> running = new ConcurrentHashMap<>();
+
+    public SyncJobVO submitScoreSync(CommonQueryDTO dto) {
+        return submit(CacheDataType.SCORES, dto, () -> scoreService.syncScores(dto), asOf -> {
+            ScoreDeltaVO delta = scoreService.localDelta(dto);
+            delta.setStale(true);
+            delta.setAsOf(asOf);
+            return delta;
+        });
+    }
+
+    public SyncJobVO submitScheduleImport(CommonQueryDTO dto) {
+        return submit(CacheDataType.TIMETABLE, dto, () -> curriculumService.importAllSchedules(dto), asOf -> {
+            ImportSummaryVO summary = curriculumService.localSummary(dto);
+            summary.setStale(true);
+            summary.setAsOf(asOf);
+            return summary;
+        });
+    }
+
+    /**
+     * 任务当前状态，不存在 (或已过保留期) 时返回 null
+     */
+    public SyncJobVO getJob(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.snapshot(false);
+    }
+
+    /**
+     * 任务结束时完成的 Future (用于长轮询)，不存在时返回 null
+     */
+    public CompletableFuture<SyncJobVO> whenDone(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.future.handle((r, e) -> job.snapshot(false));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("jobs", jobs.size());
+        stats.put("running", running.size());
+        stats.put("retentionMinutes", retentionMinutes);
+        return stats;
+    }
+
+    /**
+     * 清理超过保留期的已结束任务
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void purge() {
+        LocalDateTime expireBefore = LocalDateTime.now().minusMinutes(retentionMinutes);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(expireBefore));
+    }
+
+    /**
+     * @param localData 熔断时的降级结果：由本地数据构造与 work 同类型的结果 (参数为本地数据最后一次成功同步的时间)
+     */
+    private SyncJobVO submit(CacheDataType type, CommonQueryDTO dto, Supplier<Object> work,
+                             Function<LocalDateTime, Object> localData) {
+        // 只有本服务登录签发的凭证才能发起同步、并入他人的任务或读取降级的本地数据
+        sessionPool.checkIssued(dto.getAccount(), dto.getJsessionid());
+
+        String termKey = DataFreshnessService.termKey(dto);
+        String key = dto.getAccount() + "|" + type.getCode() + "|" + termKey + "|" + DataFreshnessService.isForced(dto);
+
+        Job created = new Job(dto.getAccount(), type, termKey);
+        if (clientRegistry.breaker(Upstream.JWGL).isOpen()) {
+            // 熔断期间不提交爬取，立即以本地数据完成
+            LocalDateTime asOf = freshnessService.lastSuccess(dto, type);
+            created.finishStale(localData.apply(asOf), asOf);
+            jobs.put(created.id, created);
+            return created.snapshot(false);
+        }
+
+        Job job = running.putIfAbsent(key, created);
+        if (job != null) {
+            log.info("并入正在执行的同步任务: {} {}", key, job.id);
+            return job.snapshot(true);
+        }
+
+        job = created;
+        jobs.put(job.id, job);
+        Job started = job;
+        CompletableFuture.supplyAsync(work, crawlExecutor).whenComplete((result, error) -> {
+            if (error != null && CircuitBreaker.isOpenFailure(error)) {
+                // 执行中上游熔断 (含会话重新认证时 CAS 熔断)：降级为本地数据
+                try {
+                    LocalDateTime asOf = freshnessService.lastSuccess(dto, type);
+                    started.finishStale(localData.apply(asOf), asOf);
+                } catch (RuntimeException e) {
+                    started.finish(null, e);
+                }
+            } else {
+                started.finish(result, error);
+            }
+            running.remove(key, started);
+        });
+        log.info("提交同步任务: {} {}", key, job.id);
+        return job.snapshot(false);
+    }
+
+    private static final class Job {
+        private final String id = UUID.randomUUID().toString().replace("-", "");
+        private final String account;
+        private final CacheDataType type;
+        private final String termKey;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private volatile String status = STATUS_RUNNING;
+        private volatile boolean stale;
+        private volatile LocalDateTime asOf;
+        private volatile LocalDateTime finishedAt;
+        private volatile Object result;
+        private volatile String message;
+
+        private Job(String account, CacheDataType type, String termKey) {
+            this.account = account;
+            this.type = type;
+            this.termKey = termKey;
+        }
+
+        private void finish(Object result, Throwable error) {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                log.warn("同步任务失败: {} {}, {}", account, type.getCode(), cause.getMessage());
+                this.message = cause.getMessage();
+                this.status = STATUS_FAILED;
+            } else {
+                this.result = result;
+                this.status = STATUS_SUCCESS;
+            }
+            this.finishedAt = LocalDateTime.now();
+            future.complete(result);
+        }
+
+        private void finishStale(Object localData, LocalDateTime lastSuccess) {
+            this.stale = true;
+            this.asOf = lastSuccess;
+            finish(localData, null);
+        }
+
+        private SyncJobVO snapshot(boolean attached) {
+            SyncJobVO vo = new SyncJobVO();
+            vo.setJobId(id);
+            vo.setAccount(account);
+            vo.setDataType(type.getCode());
+            vo.setTermKey(termKey);
+            vo.setStatus(status);
+            vo.setStale(stale);
+            vo.setAsOf(asOf);
+            vo.setAttached(attached);
+            vo.setSubmittedAt(submittedAt);
+            vo.setFinishedAt(finishedAt);
+            vo.setResult(result);
+            vo.setMessage(message);
+            return vo;
+        }
+    }
+}
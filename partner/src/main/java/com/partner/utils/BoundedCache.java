@@ -0,0 +1,148 @@
+package com.partner.utils;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 有界本地缓存：按容量 (最近最少使用) 和存活时间淘汰，带命中统计
+ * 失效与加载并发时，失效之前开始的同一个键的加载结果不会写回，避免把旧数据重新放进缓存；
+ * 其他键的在途加载不受影响
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> map;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    // 在途加载 (按键)：失效时摘下并标记作废，加载完成后据此决定是否写回
+    private final Map<K, Load> loading = new HashMap<>();
+
+    public BoundedCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.map = new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry != null && System.currentTimeMillis() - entry.createdAt <= ttlMillis) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        if (entry != null) {
+            map.remove(key);
+            evictions.incrementAndGet();
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 命中直接返回，否则调用 loader 计算并写入 (loader 在锁外执行)
+     */
+    public V getOrLoad(K key, Supplier<V> loader) {
+        Load load;
+        synchronized (this) {
+            V cached = get(key);
+            if (cached != null) return cached;
+            load = loading.computeIfAbsent(key, k -> new Load());
+            load.loaders++;
+        }
+        V value = null;
+        try {
+            value = loader.get();
+        } finally {
+            synchronized (this) {
+                if (value != null && !load.stale) {
+                    map.put(key, new Entry<>(value, System.currentTimeMillis()));
+                }
+                if (--load.loaders == 0) {
+                    loading.remove(key, load);
+                }
+            }
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        Load load = loading.remove(key);
+        if (load != null) load.stale = true;
+        if (map.remove(key) != null) invalidations.incrementAndGet();
+    }
+
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        loading.entrySet().removeIf(e -> {
+            if (predicate.test(e.getKey())) {
+                e.getValue().stale = true;
+                return true;
+            }
+            return false;
+        });
+        map.keySet().removeIf(k -> {
+            if (predicate.test(k)) {
+                invalidations.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    public synchronized void clear() {
+        loading.values().forEach(load -> load.stale = true);
+        loading.clear();
+        invalidations.addAndGet(map.size());
+        map.clear();
+    }
+
+    public Map<String, Object> stats() {
+        long h = hits.get();
+        long m = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("size", map.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlSeconds", ttlMillis / 1000);
+        stats.put("hits", h);
+        stats.put("misses", m);
+        stats.put("hitRate", h + m == 0 ? 0.0 : (double) h / (h + m));
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    /**
+     * 同一个键的一批并发加载 (由锁保护)
+     */
+    private static final class Load {
+        private int loaders;
+        private boolean stale;
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final long createdAt;
+
+        private Entry(V value, long createdAt) {
+            this.value = value;
+            this.createdAt = createdAt;
+        }
+    }
+}
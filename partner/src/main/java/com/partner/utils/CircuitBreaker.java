@@ -0,0 +1,268 @@
+package com.partner.utils;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单个上游的熔断器
+ * 按最近 windowSize 次调用的失败率 (网络异常、5xx) 与慢调用率判断是否熔断；熔断期间请求立即失败 (OpenException)，
+ * 熔断时间过后放行一个探测请求 (半开)，探测成功则恢复，失败则继续熔断。
+ * 优先通道的请求 (预约突发) 不受熔断影响，也不计入统计
+ */
+@Slf4j
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    @Data
+    public static class Config {
+        private int windowSize = 20;            // 统计最近多少次调用
+        private int minCalls = 10;              // 调用数不足时不判断
+        private int failureRatePercent = 50;    // 失败率阈值
+        private long slowCallMillis = 10_000;   // 超过该耗时视为慢调用
+        private int slowRatePercent = 80;       // 慢调用率阈值
+        private long openSeconds = 30;          // 熔断持续时间，之后半开探测
+    }
+
+    public static class OpenException extends IOException {
+        public OpenException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 一次放行的调用，记录放行时的状态代次；结果只在代次未变时计入
+     */
+    public static final class Permit {
+        private final long epoch;
+
+        private Permit(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    private final String name;
+    private final Config config;
+
+    // 环形窗口
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int index;
+    private int count;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    // 每次状态切换递增：切换前放行的调用 (如熔断前发出、半开时才返回的请求) 结果不再影响状态
+    private long epoch;
+    // 半开状态下唯一的探测调用，只有它的结果决定恢复还是继续熔断
+    private Permit probe;
+
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong opens = new AtomicLong();
+
+    public CircuitBreaker(String name, Config config) {
+        this.name = name;
+        this.config = config;
+        this.failed = new boolean[config.getWindowSize()];
+        this.slow = new boolean[config.getWindowSize()];
+    }
+
+    /**
+     * 是否处于熔断期 (不消耗半开探测名额，供调用方提前走降级)
+     */
+    public synchronized boolean isOpen() {
+        return state == State.OPEN && System.currentTimeMillis() - openedAt < TimeUnit.SECONDS.toMillis(config.getOpenSeconds())
+                || state == State.HALF_OPEN && probe != null;
+    }
+
+    /**
+     * 申请一次调用；返回 null 时应立即失败
+     */
+    public synchronized Permit tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return new Permit(epoch);
+            case OPEN:
+                if (System.currentTimeMillis() - openedAt < TimeUnit.SECONDS.toMillis(config.getOpenSeconds())) {
+                    rejected.incrementAndGet();
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                epoch++;
+                probe = new Permit(epoch);
+                return probe;
+            default:
+                if (probe != null) {
+                    rejected.incrementAndGet();
+                    return null;
+                }
+                probe = new Permit(epoch);
+                return probe;
+        }
+    }
+
+    /**
+     * 记录调用结果
+     */
+    public synchronized void record(Permit permit, boolean failure, long elapsedMillis) {
+        if (permit.epoch != epoch) {
+            // 放行后状态已切换，结果不再影响状态
+            return;
+        }
+        boolean isSlow = elapsedMillis >= config.getSlowCallMillis();
+        if (state == State.HALF_OPEN) {
+            if (permit != probe) {
+                return;
+            }
+            probe = null;
+            if (failure || isSlow) {
+                open();
+            } else {
+                close();
+            }
+            return;
+        }
+        if (count == failed.length) {
+            if (failed[index]) failures--;
+            if (slow[index]) slowCalls--;
+        } else {
+            count++;
+        }
+        failed[index] = failure;
+        slow[index] = isSlow;
+        if (failure) failures++;
+        if (isSlow) slowCalls++;
+        index = (index + 1) % failed.length;
+
+        if (count >= config.getMinCalls()
+                && (failures * 100 >= config.getFailureRatePercent() * count
+                || slowCalls * 100 >= config.getSlowRatePercent() * count)) {
+            open();
+        }
+    }
+
+    /**
+     * 调用未产生有效结果 (被取消)：只归还探测名额
+     */
+    public synchronized void ignore(Permit permit) {
+        if (state == State.HALF_OPEN && permit == probe) {
+            probe = null;
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state);
+        stats.put("config", config);
+        stats.put("calls", count);
+        stats.put("failures", failures);
+        stats.put("slowCalls", slowCalls);
+        stats.put("openedAt", state == State.CLOSED ? null : Instant.ofEpochMilli(openedAt));
+        stats.put("opens", opens.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    /**
+     * 快速失败拦截器 (位于限流拦截器之外)：熔断期间直接拒绝，不占用限流名额；不消耗半开探测名额
+     */
+    public Interceptor gate() {
+        return chain -> {
+            Request request = chain.request();
+            if (request.tag(UpstreamLimiter.Lane.class) != UpstreamLimiter.Lane.PRIORITY && isOpen()) {
+                rejected.incrementAndGet();
+                throw openException();
+            }
+            return chain.proceed(request);
+        };
+    }
+
+    /**
+     * 统计拦截器 (位于限流拦截器之内)：拿到限流名额后才开始计时，本地排队等待不会被算成上游慢调用
+     */
+    public Interceptor interceptor() {
+        return chain -> {
+            Request request = chain.request();
+            if (request.tag(UpstreamLimiter.Lane.class) == UpstreamLimiter.Lane.PRIORITY) {
+                return chain.proceed(request);
+            }
+            Permit permit = tryAcquire();
+            if (permit == null) {
+                throw openException();
+            }
+            long start = System.nanoTime();
+            Response response;
+            try {
+                response = chain.proceed(request);
+            } catch (IOException e) {
+                if (chain.call().isCanceled()) {
+                    ignore(permit);
+                } else {
+                    record(permit, true, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+                throw e;
+            } catch (RuntimeException e) {
+                ignore(permit);
+                throw e;
+            }
+            record(permit, response.code() >= 500, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return response;
+        };
+    }
+
+    /**
+     * 异常 (含原因链) 是否由熔断引起
+     */
+    public static boolean isOpenFailure(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof OpenException) return true;
+        }
+        return false;
+    }
+
+    private OpenException openException() {
+        return new OpenException(name + " 暂不可用 (熔断中)，请稍后重试");
+    }
+
+    private void open() {
+        log.warn("{} 熔断: 最近 {} 次调用失败 {} 次, 慢调用 {} 次, {} 秒后半开探测",
+                name, count, failures, slowCalls, config.getOpenSeconds());
+        state = State.OPEN;
+        epoch++;
+        openedAt = System.currentTimeMillis();
+        probe = null;
+        opens.incrementAndGet();
+        resetWindow();
+    }
+
+    private void close() {
+        log.info("{} 探测成功，熔断恢复", name);
+        state = State.CLOSED;
+        epoch++;
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        index = 0;
+        count = 0;
+        failures = 0;
+        slowCalls = 0;
+        Arrays.fill(failed, false);
+        Arrays.fill(slow, false);
+    }
+}
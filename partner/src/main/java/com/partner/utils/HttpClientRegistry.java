@@ -0,0 +1,179 @@
+package com.partner.utils;
+
+import com.partner.enums.Upstream;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.*;
+import java.security.KeyStore;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 上游 HTTP 客户端注册表
+ * 每个上游一个调优过的 OkHttpClient (独立连接池、调度器、TLS 会话缓存)，全局共享；
+ * 需要按用户隔离 Cookie 时通过 withCookies 派生，派生客户端与基础客户端共用连接池和调度器；
+ * 每个上游挂熔断与限流/隔离舱拦截器，派生客户端同样生效
+ */
+@Slf4j
+@Component
+public class HttpClientRegistry {
+
+    private final Map<Upstream, OkHttpClient> clients = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, UpstreamLimiter> limiters = new EnumMap<>(Upstream.class);
+    private final Map<Upstream, CircuitBreaker> breakers = new EnumMap<>(Upstream.class);
+
+    @Autowired
+    public HttpClientRegistry(Environment env) {
+        for (Upstream upstream : Upstream.values()) {
+            limiters.put(upstream, new UpstreamLimiter(upstream.getHost(), limitConfig(upstream, env)));
+            breakers.put(upstream, new CircuitBreaker(upstream.getHost(), breakerConfig(upstream, env)));
+            clients.put(upstream, build(upstream, env));
+        }
+    }
+
+    /**
+     * 获取上游的共享客户端 (不带 Cookie 管理)
+     */
+    public OkHttpClient get(Upstream upstream) {
+        return clients.get(upstream);
+    }
+
+    /**
+     * 派生带独立 CookieJar 的客户端，用于单个用户的登录会话
+     */
+    public OkHttpClient withCookies(Upstream upstream, CookieJar cookieJar) {
+        return clients.get(upstream).newBuilder().cookieJar(cookieJar).build();
+    }
+
+    public UpstreamLimiter limiter(Upstream upstream) {
+        return limiters.get(upstream);
+    }
+
+    public CircuitBreaker breaker(Upstream upstream) {
+        return breakers.get(upstream);
+    }
+
+    /**
+     * 各上游熔断状态
+     */
+    public Map<String, Object> breakerStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        breakers.forEach((upstream, breaker) -> stats.put(upstream.name(), breaker.stats()));
+        return stats;
+    }
+
+    /**
+     * 各上游限流与隔离舱状态
+     */
+    public Map<String, Object> limitStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        limiters.forEach((upstream, limiter) -> stats.put(upstream.name(), limiter.stats()));
+        return stats;
+    }
+
+    /**
+     * 连接池与调度器统计 (用于按峰值负载调整参数)
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (Map.Entry<Upstream, OkHttpClient> e : clients.entrySet()) {
+            OkHttpClient client = e.getValue();
+            ConnectionPool pool = client.connectionPool();
+            Dispatcher dispatcher = client.dispatcher();
+
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("host", e.getKey().getHost());
+            item.put("connections", pool.connectionCount());
+            item.put("idleConnections", pool.idleConnectionCount());
+            item.put("activeConnections", pool.connectionCount() - pool.idleConnectionCount());
+            item.put("runningCalls", dispatcher.runningCallsCount());
+            item.put("queuedCalls", dispatcher.queuedCallsCount());
+            item.put("maxRequests", dispatcher.getMaxRequests());
+            item.put("maxRequestsPerHost", dispatcher.getMaxRequestsPerHost());
+            stats.put(e.getKey().name(), item);
+        }
+        return stats;
+    }
+
+    private OkHttpClient build(Upstream upstream, Environment env) {
+        String prefix = "http.upstream." + upstream.getKey() + ".";
+        int maxIdle = env.getProperty(prefix + "max-idle-connections", Integer.class, upstream.getMaxIdleConnections());
+        int keepAliveMinutes = env.getProperty(prefix + "keep-alive-minutes", Integer.class, 5);
+        int maxRequests = env.getProperty(prefix + "max-requests", Integer.class, upstream.getMaxRequests());
+        int maxPerHost = env.getProperty(prefix + "max-requests-per-host", Integer.class, upstream.getMaxRequestsPerHost());
+        int connectTimeout = env.getProperty(prefix + "connect-timeout-seconds", Integer.class, upstream.getConnectTimeoutSeconds());
+        int readTimeout = env.getProperty(prefix + "read-timeout-seconds", Integer.class, upstream.getReadTimeoutSeconds());
+        int tlsCacheSize = env.getProperty(prefix + "tls-session-cache-size", Integer.class, 256);
+        int tlsTimeoutSeconds = env.getProperty(prefix + "tls-session-timeout-seconds", Integer.class, 3600);
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxPerHost);
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdle, keepAliveMinutes, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                // 熔断快速失败在限流之外 (不占名额)，熔断统计在限流之内 (只计上游耗时，不含排队)
+                .addInterceptor(breakers.get(upstream).gate())
+                .addInterceptor(limiters.get(upstream).interceptor())
+                .addInterceptor(breakers.get(upstream).interceptor())
+                // 服务端支持时经 ALPN 协商 HTTP/2，多个请求复用同一连接
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+                .readTimeout(readTimeout, TimeUnit.SECONDS)
+                .writeTimeout(readTimeout, TimeUnit.SECONDS);
+
+        try {
+            // 独立的 SSLContext，使 TLS 会话缓存按上游隔离并可单独调整容量
+            TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+            tmf.init((KeyStore) null);
+            X509TrustManager trustManager = (X509TrustManager) tmf.getTrustManagers()[0];
+            SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(null, new TrustManager[]{trustManager}, null);
+            SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+            sessionContext.setSessionCacheSize(tlsCacheSize);
+            sessionContext.setSessionTimeout(tlsTimeoutSeconds);
+            builder.sslSocketFactory(sslContext.getSocketFactory(), trustManager);
+        } catch (Exception e) {
+            log.warn("初始化 {} 的 TLS 会话缓存失败，使用默认配置: {}", upstream, e.getMessage());
+        }
+
+        log.info("HTTP 客户端已创建: {} (空闲连接={}, 并发={}/{}, 超时={}s/{}s)",
+                upstream, maxIdle, maxRequests, maxPerHost, connectTimeout, readTimeout);
+        return builder.build();
+    }
+
+    /**
+     * 限流与隔离舱初始配置：http.upstream.<key>.limit.* 覆盖枚举中的默认值
+     */
+    private UpstreamLimiter.Config limitConfig(Upstream upstream, Environment env) {
+        String prefix = "http.upstream." + upstream.getKey() + ".limit.";
+        UpstreamLimiter.Config config = new UpstreamLimiter.Config();
+        config.setPermitsPerSecond(env.getProperty(prefix + "permits-per-second", Double.class, (double) upstream.getPermitsPerSecond()));
+        config.setBurst(env.getProperty(prefix + "burst", Integer.class, upstream.getPermitsPerSecond() * 2));
+        config.setMaxConcurrent(env.getProperty(prefix + "max-concurrent", Integer.class, upstream.getMaxConcurrent()));
+        config.setReserved(env.getProperty(prefix + "priority-reserved", Integer.class, upstream.getPriorityReserved()));
+        config.setMaxQueue(env.getProperty(prefix + "max-queue", Integer.class, 64));
+        config.setMaxWaitMs(env.getProperty(prefix + "max-wait-ms", Long.class, 5000L));
+        return config;
+    }
+
+    /**
+     * 熔断配置：http.upstream.<key>.breaker.* 覆盖 CircuitBreaker.Config 中的默认值
+     */
+    private CircuitBreaker.Config breakerConfig(Upstream upstream, Environment env) {
+        String prefix = "http.upstream." + upstream.getKey() + ".breaker.";
+        CircuitBreaker.Config config = new CircuitBreaker.Config();
+        config.setWindowSize(env.getProperty(prefix + "window-size", Integer.class, config.getWindowSize()));
+        config.setMinCalls(env.getProperty(prefix + "min-calls", Integer.class, config.getMinCalls()));
+        config.setFailureRatePercent(env.getProperty(prefix + "failure-rate-percent", Integer.class, config.getFailureRatePercent()));
+        config.setSlowCallMillis(env.getProperty(prefix + "slow-call-ms", Long.class, config.getSlowCallMillis()));
+        config.setSlowRatePercent(env.getProperty(prefix + "slow-rate-percent", Integer.class, config.getSlowRatePercent()));
+        config.setOpenSeconds(env.getProperty(prefix + "open-seconds", Long.class, config.getOpenSeconds()));
+        return config;
+    }
+}
@@ -0,0 +1,73 @@
+package com.partner.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 带统计的执行器包装：提交数、在途数 (及峰值)、完成/失败数、平均执行耗时
+ */
+public class InstrumentedExecutor implements Executor, AutoCloseable {
+
+    private final String name;
+    private final ExecutorService delegate;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicInteger peakActive = new AtomicInteger();
+
+    public InstrumentedExecutor(String name, ExecutorService delegate) {
+        this.name = name;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        submitted.incrementAndGet();
+        delegate.execute(() -> {
+            peakActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            long start = System.nanoTime();
+            try {
+                task.run();
+                completed.incrementAndGet();
+            } catch (RuntimeException | Error e) {
+                failed.incrementAndGet();
+                throw e;
+            } finally {
+                totalNanos.addAndGet(System.nanoTime() - start);
+                active.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * 已提交的任务是否全部结束 (含尚未开始执行的)
+     */
+    public boolean isIdle() {
+        return completed.get() + failed.get() == submitted.get();
+    }
+
+    @Override
+    public void close() {
+        delegate.shutdownNow();
+    }
+
+    public Map<String, Object> stats() {
+        long done = completed.get() + failed.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("submitted", submitted.get());
+        stats.put("active", active.get());
+        stats.put("peakActive", peakActive.get());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("avgMillis", done == 0 ? 0.0 : totalNanos.get() / 1_000_000.0 / done);
+        return stats;
+    }
+}
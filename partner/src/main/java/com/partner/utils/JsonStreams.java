@@ -0,0 +1,113 @@
+package com.partner.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 流式 JSON 读取工具 (Jackson Streaming API)
+ * 直接从响应体字节流逐个 token 读取，不把整个响应体复制成字符串，也不构建中间的树结构
+ */
+public final class JsonStreams {
+
+    private static final JsonFactory FACTORY = new JsonFactory();
+
+    private JsonStreams() {
+    }
+
+    @FunctionalInterface
+    public interface FieldHandler {
+        /**
+         * 解析器停在字段值上；未消费的对象/数组值会被自动跳过
+         */
+        void field(String name, JsonParser p) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface ElementHandler {
+        /**
+         * 解析器停在数组元素对象的 START_OBJECT 上
+         */
+        void element(JsonParser p) throws IOException;
+    }
+
+    public static JsonParser parser(InputStream in) throws IOException {
+        return FACTORY.createParser(in);
+    }
+
+    /**
+     * 读取根对象 (解析器尚未读取任何 token)
+     */
+    public static void readRoot(JsonParser p, FieldHandler handler) throws IOException {
+        if (p.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("响应不是 JSON 对象");
+        }
+        readObject(p, handler);
+    }
+
+    /**
+     * 遍历当前对象的字段 (解析器停在 START_OBJECT 上)，结束时停在对应的 END_OBJECT
+     */
+    public static void readObject(JsonParser p, FieldHandler handler) throws IOException {
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String name = p.currentName();
+            p.nextToken();
+            handler.field(name, p);
+            p.skipChildren();
+        }
+    }
+
+    /**
+     * 遍历当前数组中的对象元素 (解析器停在 START_ARRAY 上)，非对象元素跳过；值为 null 时直接返回
+     */
+    public static void readArray(JsonParser p, ElementHandler handler) throws IOException {
+        if (p.currentToken() != JsonToken.START_ARRAY) {
+            return;
+        }
+        JsonToken t;
+        while ((t = p.nextToken()) != JsonToken.END_ARRAY && t != null) {
+            if (t == JsonToken.START_OBJECT) {
+                handler.element(p);
+                if (p.currentToken() != JsonToken.END_OBJECT) {
+                    throw new IOException("数组元素未读完");
+                }
+            } else {
+                p.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * 当前标量值的文本形式，null 返回空串
+     */
+    public static String text(JsonParser p) throws IOException {
+        String value = p.getValueAsString();
+        return value == null ? "" : value;
+    }
+
+    /**
+     * 当前数值 (或数字字符串) 值，无法解析时返回默认值
+     */
+    public static int intValue(JsonParser p, int defaultValue) throws IOException {
+        return p.getValueAsInt(defaultValue);
+    }
+
+    /**
+     * 响应体是否为 HTML (如会话过期后返回的登录页)，只窥视开头字节，不消费响应体
+     */
+    public static boolean looksLikeHtml(ResponseBody body) throws IOException {
+        BufferedSource peek = body.source().peek();
+        while (!peek.exhausted()) {
+            byte b = peek.readByte();
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != (byte) 0xEF && b != (byte) 0xBB && b != (byte) 0xBF) {
+                return b == '<';
+            }
+        }
+        return false;
+    }
+}
@@ -2,14 +2,20 @@ package com.partner.utils;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.partner.enums.SitesURL;
+import com.partner.enums.Upstream;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * HTTP工具类 (Library 专用)
@@ -19,22 +25,34 @@ import java.util.concurrent.TimeUnit;
 @Component
 public class LibraryHttpUtil {
 
-    private static final String BASE_URL = "https://wslib.haut.edu.cn/stage-api";
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final String USER_AGENT = "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/138.0.0.0 Safari/537.36";
 
-    // 复用 OkHttpClient 实例
-    private static final OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(10, TimeUnit.SECONDS)
-            .readTimeout(15, TimeUnit.SECONDS)
-            .writeTimeout(15, TimeUnit.SECONDS)
-            .build();
+    @Autowired
+    private HttpClientRegistry clientRegistry;
+
+    // 基于共享的 wslib 客户端派生 (共用连接池与调度器)，额外记录预约请求的写出时刻
+    private OkHttpClient client;
+
+    @PostConstruct
+    public void init() {
+        client = clientRegistry.get(Upstream.WSLIB).newBuilder()
+                .eventListenerFactory(c -> new EventListener() {
+                    @Override
+                    public void requestHeadersEnd(Call call, Request request) {
+                        // 记录请求真正写出的时刻 (仅对带 CallTiming 标签的预约请求生效)
+                        CallTiming timing = request.tag(CallTiming.class);
+                        if (timing != null) timing.markSent();
+                    }
+                })
+                .build();
+    }
 
     /**
      * 获取验证码UUID
      */
     public String getCaptchaUuid() throws Exception {
-        String url = BASE_URL + "/captchaImage";
+        String url = SitesURL.LIBRARY_BASE_URL.getUrl() + "/captchaImage";
 
         Request request = new Request.Builder()
                 .url(url)
@@ -68,7 +86,7 @@ public class LibraryHttpUtil {
      * 用户登录
      */
     public LoginResult login(String userId, String password, String uuid) throws Exception {
-        String url = BASE_URL + "/login";
+        String url = SitesURL.LIBRARY_BASE_URL.getUrl() + "/login";
 
         Map<String, Object> requestMap = new HashMap<>();
         requestMap.put("username", userId);
@@ -121,19 +139,58 @@ public class LibraryHttpUtil {
     }
 
     /**
-     * 预约座位
+     * 连接预热：并发发出若干轻量请求，提前完成 DNS/TCP/TLS 握手并放入连接池
+     * @return 观测到的最小往返耗时 (毫秒)，全部失败时返回 -1
      */
-    public BookingResult bookSeat(Integer seatId, String startTime, String endTime, String token, String ticket) throws Exception {
+    public long warmUp(int connections) {
+        Request request = new Request.Builder()
+                .url(SitesURL.LIBRARY_BASE_URL.getUrl() + "/captchaImage")
+                .head()
+                .header("User-Agent", USER_AGENT)
+                .tag(UpstreamLimiter.Lane.class, UpstreamLimiter.Lane.PRIORITY)
+                .build();
+
+        CountDownLatch latch = new CountDownLatch(connections);
+        AtomicLong minRtt = new AtomicLong(Long.MAX_VALUE);
+        for (int i = 0; i < connections; i++) {
+            long start = System.nanoTime();
+            client.newCall(request).enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    log.debug("连接预热失败: {}", e.getMessage());
+                    latch.countDown();
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                    minRtt.accumulateAndGet((System.nanoTime() - start) / 1_000_000, Math::min);
+                    latch.countDown();
+                }
+            });
+        }
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        long rtt = minRtt.get();
+        return rtt == Long.MAX_VALUE ? -1 : rtt;
+    }
+
+    /**
+     * 构建预约请求 (不执行)，供突发模式异步发送
+     * @param timing 可选，用于记录请求写出时刻
+     */
+    public Call newBookingCall(Integer seatId, String startTime, String endTime, String token, String ticket, CallTiming timing) {
         // 构建带参数的 URL
-        HttpUrl.Builder urlBuilder = HttpUrl.parse(BASE_URL + "/api/seatbook/user/addbooking").newBuilder();
+        HttpUrl.Builder urlBuilder = HttpUrl.parse(SitesURL.LIBRARY_BASE_URL.getUrl() + "/api/seatbook/user/addbooking").newBuilder();
         urlBuilder.addQueryParameter("channel", "1001");
         urlBuilder.addQueryParameter("seatid", String.valueOf(seatId));
         urlBuilder.addQueryParameter("starttime", startTime);
         urlBuilder.addQueryParameter("endtime", endTime);
         urlBuilder.addQueryParameter("terminal", "WEB");
 
-        String url = urlBuilder.build().toString();
-
         // 构建 Cookie
         StringBuilder cookieBuilder = new StringBuilder();
         cookieBuilder.append("Admin-Token=").append(token);
@@ -141,31 +198,104 @@ public class LibraryHttpUtil {
             cookieBuilder.append("; my_client_ticket=").append(ticket);
         }
 
-        Request request = new Request.Builder()
-                .url(url)
+        Request.Builder request = new Request.Builder()
+                .url(urlBuilder.build())
                 .get() // GET 请求
                 .header("Authorization", "Bearer " + token)
                 .header("Cookie", cookieBuilder.toString())
                 .header("User-Agent", USER_AGENT)
                 .header("Accept", "application/json, text/plain, */*")
                 .header("authority", "wslib.haut.edu.cn")
-                .build();
+                .tag(UpstreamLimiter.Lane.class, UpstreamLimiter.Lane.PRIORITY);
+        if (timing != null) {
+            request.tag(CallTiming.class, timing);
+        }
+        return client.newCall(request.build());
+    }
 
-        try (Response response = client.newCall(request).execute()) {
-            if (!response.isSuccessful()) throw new IOException("预约请求网络失败: " + response.code());
-            String responseBody = response.body() != null ? response.body().string() : "";
+    /**
+     * 解析预约响应
+     */
+    public BookingResult parseBookingResponse(Integer seatId, Response response) throws IOException {
+        if (response.code() == 401) {
+            return new BookingResult(false, "登录状态已过期", "", null, true);
+        }
+        if (!response.isSuccessful()) throw new IOException("预约请求网络失败: " + response.code());
+        String responseBody = response.body() != null ? response.body().string() : "";
 
-            log.info("预约响应 - 座位: {}, 响应: {}", seatId, responseBody);
-            JsonNode jsonNode = objectMapper.readTree(responseBody);
+        log.info("预约响应 - 座位: {}, 响应: {}", seatId, responseBody);
+        JsonNode jsonNode = objectMapper.readTree(responseBody);
 
-            boolean success = jsonNode.has("code") && jsonNode.get("code").asInt() == 200;
-            String message = jsonNode.has("msg") ? jsonNode.get("msg").asText() : "";
-            if (!success && message.isEmpty() && jsonNode.has("message")) {
-                message = jsonNode.get("message").asText();
+        int code = jsonNode.has("code") ? jsonNode.get("code").asInt() : -1;
+        boolean success = code == 200;
+        String message = jsonNode.has("msg") ? jsonNode.get("msg").asText() : "";
+        if (!success && message.isEmpty() && jsonNode.has("message")) {
+            message = jsonNode.get("message").asText();
+        }
+        if (message.isEmpty()) message = success ? "预约成功" : "预约失败(未知原因)";
+
+        // 预约记录 ID (data 可能是对象或直接是 ID)，用于释放并发抢到的多余座位
+        String bookingId = null;
+        JsonNode dataNode = jsonNode.get("data");
+        if (dataNode != null && !dataNode.isNull()) {
+            if (dataNode.isObject()) {
+                if (dataNode.has("id")) bookingId = dataNode.get("id").asText();
+                else if (dataNode.has("bookingId")) bookingId = dataNode.get("bookingId").asText();
+            } else if (dataNode.isValueNode()) {
+                bookingId = dataNode.asText();
             }
-            if (message.isEmpty()) message = success ? "预约成功" : "预约失败(未知原因)";
+        }
+
+        // 若依框架的认证失败：业务码 401，或提示登录过期/认证失败
+        boolean authFailure = code == 401 || message.contains("登录状态已过期") || message.contains("认证失败");
 
-            return new BookingResult(success, message, responseBody);
+        return new BookingResult(success, message, responseBody, bookingId, authFailure);
+    }
+
+    /**
+     * 构建取消预约 (释放座位) 请求 (不执行)，在预约回调中异步发送，不阻塞 OkHttp 的回调线程
+     * 注意：路径按 addbooking 的命名推断，尚未对照线上图书馆系统核实，仅在 library.booking.release-extra-seats 开启时使用
+     */
+    public Call newCancelCall(String bookingId, String token, String ticket) {
+        HttpUrl url = HttpUrl.parse(SitesURL.LIBRARY_BASE_URL.getUrl() + "/api/seatbook/user/cancelbooking").newBuilder()
+                .addQueryParameter("id", bookingId)
+                .addQueryParameter("terminal", "WEB")
+                .build();
+
+        StringBuilder cookieBuilder = new StringBuilder();
+        cookieBuilder.append("Admin-Token=").append(token);
+        if (ticket != null && !ticket.isEmpty()) {
+            cookieBuilder.append("; my_client_ticket=").append(ticket);
+        }
+
+        Request request = new Request.Builder()
+                .url(url)
+                .get()
+                .header("Authorization", "Bearer " + token)
+                .header("Cookie", cookieBuilder.toString())
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", "application/json, text/plain, */*")
+                .tag(UpstreamLimiter.Lane.class, UpstreamLimiter.Lane.PRIORITY)
+                .build();
+        return client.newCall(request);
+    }
+
+    /**
+     * 解析取消预约响应
+     */
+    public boolean parseCancelResponse(String bookingId, Response response) throws IOException {
+        String responseBody = response.body() != null ? response.body().string() : "";
+        log.info("取消预约响应 - 预约ID: {}, 响应: {}", bookingId, responseBody);
+        JsonNode jsonNode = objectMapper.readTree(responseBody);
+        return jsonNode.has("code") && jsonNode.get("code").asInt() == 200;
+    }
+
+    /**
+     * 预约座位
+     */
+    public BookingResult bookSeat(Integer seatId, String startTime, String endTime, String token, String ticket) throws Exception {
+        try (Response response = newBookingCall(seatId, startTime, endTime, token, ticket, null).execute()) {
+            return parseBookingResponse(seatId, response);
         }
     }
 
@@ -187,14 +317,36 @@ public class LibraryHttpUtil {
         private final boolean success;
         private final String message;
         private final String rawResponse;
+        private final String bookingId;
+        private final boolean authFailure;
 
         public BookingResult(boolean success, String message, String rawResponse) {
+            this(success, message, rawResponse, null, false);
+        }
+        public BookingResult(boolean success, String message, String rawResponse, String bookingId, boolean authFailure) {
             this.success = success;
             this.message = message;
             this.rawResponse = rawResponse;
+            this.bookingId = bookingId;
+            this.authFailure = authFailure;
         }
         public boolean isSuccess() { return success; }
         public String getMessage() { return message; }
         public String getRawResponse() { return rawResponse; }
+        public String getBookingId() { return bookingId; }
+        public boolean isAuthFailure() { return authFailure; }
+    }
+
+    /**
+     * 单个预约请求的发送时刻记录
+     */
+    public static class CallTiming {
+        private volatile long sentNanos;
+
+        void markSent() {
+            if (sentNanos == 0) sentNanos = System.nanoTime();
+        }
+        /** 请求头写出时刻 (System.nanoTime)，未发出时为 0 */
+        public long getSentNanos() { return sentNanos; }
     }
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package com.partner.utils;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import com.partner.enums.SitesURL;
+import com.partner.enums.Upstream;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
@@ -14,46 +16,39 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
 
 /**
  * 座位解析工具类
- * 纯爬虫模式：直接调用图书馆接口查询座位 ID
+ * 启动时预加载全部区域的座位布局，按区域建立 "标准化标签 -> seatId" 的索引 (SeatCatalog) 并按 TTL 刷新，
+ * 标签解析只做内存查找；索引未命中时才回源刷新对应区域
  */
 @Slf4j
 @Component
 public class LibrarySeatUtil {
 
-    private static final ObjectMapper MAPPER = new ObjectMapper();
-
-    // 复用 OkHttpClient，设置较短的超时时间，因为解析需要在用户交互时完成
-    private static final OkHttpClient client = new OkHttpClient.Builder()
-            .connectTimeout(5, TimeUnit.SECONDS)
-            .readTimeout(5, TimeUnit.SECONDS)
-            .build();
-
-    // 楼层-区域 到 regionId 的映射
-    private static final Map<String, Integer> REGION_ID_MAP = new HashMap<>();
-    static {
-        // 3F
-        REGION_ID_MAP.put("03-EN", 7); REGION_ID_MAP.put("03-ES", 8); REGION_ID_MAP.put("03-WN", 9); REGION_ID_MAP.put("03-WS", 10);
-        // 4F
-        REGION_ID_MAP.put("04-EN", 11); REGION_ID_MAP.put("04-ES", 12); REGION_ID_MAP.put("04-WN", 13); REGION_ID_MAP.put("04-WS", 14);
-        // 5F
-        REGION_ID_MAP.put("05-EN", 15); REGION_ID_MAP.put("05-ES", 16); REGION_ID_MAP.put("05-MM", 17); REGION_ID_MAP.put("05-WN", 18); REGION_ID_MAP.put("05-WS", 19);
-        // 6F
-        REGION_ID_MAP.put("06-EN", 20); REGION_ID_MAP.put("06-ES", 21); REGION_ID_MAP.put("06-WN", 22); REGION_ID_MAP.put("06-WS", 23);
-        // 7F
-        REGION_ID_MAP.put("07-EN", 24); REGION_ID_MAP.put("07-ES", 25); REGION_ID_MAP.put("07-WN", 26); REGION_ID_MAP.put("07-WS", 27);
-        // 8F
-        REGION_ID_MAP.put("08-EN", 28); REGION_ID_MAP.put("08-ES", 29); REGION_ID_MAP.put("08-MM", 30); REGION_ID_MAP.put("08-WN", 31); REGION_ID_MAP.put("08-WS", 32);
-        // 9F
-        REGION_ID_MAP.put("09-EN", 33); REGION_ID_MAP.put("09-ES", 34); REGION_ID_MAP.put("09-WN", 35); REGION_ID_MAP.put("09-WS", 36); REGION_ID_MAP.put("09-MM", 37);
-        // 10F
-        REGION_ID_MAP.put("10-EN", 38); REGION_ID_MAP.put("10-ES", 39); REGION_ID_MAP.put("10-WN", 40); REGION_ID_MAP.put("10-WS", 4);
+    // 索引未命中时，同一区域两次回源之间的最小间隔，避免错误标签反复打到图书馆接口
+    private static final long MISS_REFRESH_INTERVAL_MILLIS = 60_000;
+
+    // 区域座位目录
+    private final SeatCatalog catalog = new SeatCatalog();
+
+    @Value("${library.seat-catalog.ttl-minutes:360}")
+    private long catalogTtlMinutes;
+
+    @Autowired
+    private HttpClientRegistry clientRegistry;
+
+    // 复用 wslib 共享客户端，设置较短的超时时间，因为未命中时的解析需要在用户交互时完成
+    private OkHttpClient client;
+
+    @PostConstruct
+    public void init() {
+        client = clientRegistry.get(Upstream.WSLIB).newBuilder()
+                .connectTimeout(5, TimeUnit.SECONDS)
+                .readTimeout(5, TimeUnit.SECONDS)
+                .build();
     }
 
     /**
@@ -66,37 +61,122 @@ public class LibrarySeatUtil {
             return null;
         }
 
-        // 标准化输入：去除横杠，转大写
-        String normLabel = label.trim().toUpperCase(Locale.ROOT).replace("-", "");
-
-        // 1. 预校验格式 (例如 03EN11F)
-        if (!normLabel.matches("^[0-9]{2}(EN|ES|WN|WS|MM)[0-9]{2}[A-Z]$")) {
+        // 1. 标准化并预校验格式 (例如 03EN11F)
+        String normLabel = SeatCatalog.normalize(label);
+        if (normLabel == null) {
             log.warn("座位标签格式错误: {}", label);
             return null;
         }
 
-        // 2. 提取参数
-        String floor = normLabel.substring(0, 2);
-        String dir = normLabel.substring(2, 4);
-        int table = Integer.parseInt(normLabel.substring(4, 6));
-        char column = normLabel.charAt(6);
-
-        // 3. 获取区域 ID
-        Integer regionId = REGION_ID_MAP.get(floor + "-" + dir);
-        if (regionId == null) {
-            log.warn("未知的楼层区域: {}-{}", floor, dir);
+        // 2. 定位区域
+        String regionKey = SeatCatalog.regionKeyOf(normLabel);
+        if (SeatCatalog.regionId(regionKey) == null) {
+            log.warn("未知的楼层区域: {}", regionKey);
             return null;
         }
 
-        // 4. 调用 API 查找 seatId
-        return fetchSeatIdFromApi(regionId, floor, dir, table, column);
+        // 3. 内存索引查找
+        Integer seatId = catalog.seatId(normLabel);
+        if (seatId != null) return seatId;
+
+        // 4. 未命中：区域尚未加载或可能新增了座位，回源刷新该区域后再查
+        long loadedAt = catalog.loadedAt(regionKey);
+        if (loadedAt < 0 || System.currentTimeMillis() - loadedAt > MISS_REFRESH_INTERVAL_MILLIS) {
+            if (refreshRegion(regionKey)) {
+                seatId = catalog.seatId(normLabel);
+                if (seatId != null) return seatId;
+            }
+        }
+        log.warn("座位目录中未找到匹配座位: {}", normLabel);
+        return null;
+    }
+
+    /**
+     * 批量解析逗号分隔的座位标签 (保持原顺序)
+     * @return 座位 ID 列表；任一标签解析失败返回 null，空输入返回空列表
+     */
+    public List<Integer> parseSeatLabels(String labels) {
+        List<Integer> ids = new ArrayList<>();
+        if (labels == null || labels.trim().isEmpty()) {
+            return ids;
+        }
+        for (String label : labels.trim().split("[,，\\s]+")) {
+            if (label.isEmpty()) continue;
+            Integer seatId = parseSeatLabel(label);
+            if (seatId == null) {
+                return null;
+            }
+            ids.add(seatId);
+        }
+        return ids;
+    }
+
+    /**
+     * 定时刷新：启动后立即预加载，之后只刷新超过 TTL 的区域
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${library.seat-catalog.check-interval-ms:600000}")
+    public void refreshStaleRegions() {
+        long ttlMillis = TimeUnit.MINUTES.toMillis(catalogTtlMinutes);
+        long now = System.currentTimeMillis();
+        int refreshed = 0;
+        for (String regionKey : SeatCatalog.regionKeys()) {
+            long loadedAt = catalog.loadedAt(regionKey);
+            if (loadedAt < 0 || now - loadedAt > ttlMillis) {
+                if (refreshRegion(regionKey)) refreshed++;
+            }
+        }
+        if (refreshed > 0) {
+            log.info("座位目录已刷新 {} 个区域, 共 {} 个座位", refreshed, catalog.seatCount());
+        }
+    }
+
+    /**
+     * 强制刷新全部区域
+     * @return 刷新成功的区域数
+     */
+    public int refreshAll() {
+        int refreshed = 0;
+        for (String regionKey : SeatCatalog.regionKeys()) {
+            if (refreshRegion(regionKey)) refreshed++;
+        }
+        log.info("座位目录强制刷新完成: 成功 {}/{} 个区域, 共 {} 个座位", refreshed, SeatCatalog.regionKeys().size(), catalog.seatCount());
+        return refreshed;
     }
 
-    private Integer fetchSeatIdFromApi(int regionId, String floor, String dir, int table, char column) {
+    /**
+     * 座位目录概况 (管理端查看)
+     */
+    public Map<String, Object> catalogStatus() {
+        Map<String, Object> status = catalog.status();
+        status.put("ttlMinutes", catalogTtlMinutes);
+        return status;
+    }
+
+    /**
+     * 拉取单个区域的布局并重建其索引，失败时保留旧索引
+     * @return 是否刷新成功
+     */
+    private boolean refreshRegion(String regionKey) {
+        Map<String, Integer> seats = fetchRegionLayout(regionKey);
+        if (seats == null) {
+            return false;
+        }
+        catalog.put(regionKey, seats);
+        return true;
+    }
+
+    /**
+     * 拉取区域布局并直接从响应流建立索引，失败返回 null
+     */
+    private Map<String, Integer> fetchRegionLayout(String regionKey) {
+        int regionId = SeatCatalog.regionId(regionKey);
         try {
-            // 构造查询时间范围 (当天到现在 ~ 当晚22点)
-            String startTime = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-            String endTime = LocalDate.now().atTime(22, 0).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+            // 构造查询时间范围 (当天到现在 ~ 当晚22点；过了闭馆前一小时则查次日)
+            LocalDateTime now = LocalDateTime.now();
+            LocalDate day = now.getHour() >= 21 ? now.toLocalDate().plusDays(1) : now.toLocalDate();
+            LocalDateTime from = day.equals(now.toLocalDate()) ? now : day.atTime(8, 0);
+            String startTime = from.format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
+            String endTime = day.atTime(22, 0).format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
 
             String url = buildUrl(regionId, startTime, endTime);
 
@@ -111,15 +191,14 @@ public class LibrarySeatUtil {
             for (int i = 0; i < 2; i++) {
                 try (Response response = client.newCall(request).execute()) {
                     if (response.isSuccessful() && response.body() != null) {
-                        String body = response.body().string();
-                        return parseSeatIdFromJson(body, floor, dir, table, column);
+                        return SeatCatalog.indexRegionLayout(response.body().byteStream(), regionKey);
                     }
                 } catch (IOException e) {
-                    log.warn("座位查询API请求失败 (第{}次): {}", i + 1, e.getMessage());
+                    log.warn("座位查询API请求失败 (区域{}, 第{}次): {}", regionId, i + 1, e.getMessage());
                 }
             }
         } catch (Exception e) {
-            log.error("解析座位ID异常", e);
+            log.error("查询座位布局异常", e);
         }
         return null;
     }
@@ -130,7 +209,7 @@ public class LibrarySeatUtil {
             String st = URLEncoder.encode(startTime, StandardCharsets.UTF_8).replace("+", "%20");
             String et = URLEncoder.encode(endTime, StandardCharsets.UTF_8).replace("+", "%20");
 
-            return "https://wslib.haut.edu.cn/stage-api/api/seatbook/layout/query"
+            return SitesURL.LIBRARY_BASE_URL.getUrl() + "/api/seatbook/layout/query"
                     + "?pageNum=1&pageSize=500" // 稍微放大 pageSize 确保能查到
                     + "&regionid=" + regionId
                     + "&starttime=" + st
@@ -139,59 +218,4 @@ public class LibrarySeatUtil {
             throw new RuntimeException(e);
         }
     }
-
-    private Integer parseSeatIdFromJson(String json, String floor, String dir, int table, char column) throws IOException {
-        JsonNode root = MAPPER.readTree(json);
-        if (!root.has("seatList") || !root.get("seatList").isArray()) {
-            return null;
-        }
-
-        String regionNameZh = buildRegionZh(floor, dir); // 如 "三层东书库北区"
-        String tableStr = String.format("%02d", table);  // 如 "01"
-
-        // 目标后缀1: " 01桌 A座"
-        String suffixDesk = " " + tableStr + "桌 " + column + "座";
-        // 目标后缀2: " 01座 A座" (中区常见)
-        String suffixSeat = " " + tableStr + "座 " + column + "座";
-
-        for (JsonNode node : root.get("seatList")) {
-            String seatName = node.path("seatName").asText("");
-            int id = node.path("id").asInt(-1);
-
-            if (id > 0 && seatName.contains(regionNameZh)) {
-                if (seatName.endsWith(suffixDesk) || seatName.endsWith(suffixSeat)) {
-                    log.info("座位解析成功: {} -> id={}", seatName, id);
-                    return id;
-                }
-            }
-        }
-        log.warn("API返回中未找到匹配座位: {}{}", regionNameZh, suffixDesk);
-        return null;
-    }
-
-    private String buildRegionZh(String floor, String dir) {
-        String floorZh = toChineseFloor(floor);
-        switch (dir) {
-            case "EN": return floorZh + "东书库北区";
-            case "ES": return floorZh + "东书库南区";
-            case "WN": return floorZh + "西书库北区";
-            case "WS": return floorZh + "西书库南区";
-            case "MM": return floorZh + "中区";
-            default: return floorZh;
-        }
-    }
-
-    private String toChineseFloor(String floor) {
-        switch (floor) {
-            case "03": return "三层";
-            case "04": return "四层";
-            case "05": return "五层";
-            case "06": return "六层";
-            case "07": return "七层";
-            case "08": return "八层";
-            case "09": return "九层";
-            case "10": return "十层";
-            default: return floor + "层";
-        }
-    }
-}
\ No newline at end of file
+}
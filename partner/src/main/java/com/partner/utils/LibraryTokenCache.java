@@ -0,0 +1,202 @@
+package com.partner.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * 图书馆登录态缓存 (按学号)
+ * 同一用户并发的任务共享一次登录；Token 在到期前主动刷新，预约返回认证失败时自动失效，
+ * 并根据实际失效时的 Token 年龄学习服务端的有效期
+ */
+@Slf4j
+@Component
+public class LibraryTokenCache {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // 未观测到失效前假定的有效期 (若依框架默认 30 分钟)
+    private static final long DEFAULT_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // 学习到的有效期下限，防止偶发失效把有效期压得过短
+    private static final long MIN_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(2);
+    // 超过有效期的该比例后，访问时在后台刷新
+    private static final double REFRESH_AHEAD_RATIO = 0.75;
+    // 超过该时长未被使用的登录态不再主动续期
+    private static final long IDLE_KEEP_MILLIS = TimeUnit.HOURS.toMillis(6);
+    private static final long LOGIN_WAIT_SECONDS = 30;
+
+    @Autowired
+    private LibraryHttpUtil httpUtil;
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Session>> pendingLogins = new ConcurrentHashMap<>();
+    // 已排队或正在执行续期的学号，同一学号同时只保留一个续期任务
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "library-token-refresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile long learnedLifetimeMillis = DEFAULT_LIFETIME_MILLIS;
+
+    /**
+     * 获取可用的登录态
+     * @param minValidMillis 要求 Token 至少还能再用多久 (如覆盖整个突发窗口)，不足则同步重新登录
+     */
+    public LibraryHttpUtil.LoginResult getLogin(String studentId, String password, long minValidMillis) throws Exception {
+        long now = System.currentTimeMillis();
+        Session session = sessions.get(studentId);
+
+        if (session != null && Objects.equals(session.password, password)
+                && session.expiresAt() - now >= minValidMillis) {
+            session.lastUsedAt = now;
+            if (now - session.issuedAt > session.lifetime() * REFRESH_AHEAD_RATIO && refreshing.add(studentId)) {
+                try {
+                    refresher.execute(() -> refreshOnce(studentId, password));
+                } catch (RejectedExecutionException e) {
+                    refreshing.remove(studentId);
+                }
+            }
+            return session.login;
+        }
+        return login(studentId, password).login;
+    }
+
+    /**
+     * 预约响应提示认证失败时调用：仅当失效的正是当前缓存的 Token 时才移除，并据此修正有效期
+     */
+    public void invalidate(String studentId, String token) {
+        Session session = sessions.get(studentId);
+        if (session == null || !session.login.getToken().equals(token)) {
+            return;
+        }
+        if (sessions.remove(studentId, session)) {
+            long age = System.currentTimeMillis() - session.issuedAt;
+            if (session.jwtExpiresAt == 0 && age < learnedLifetimeMillis) {
+                learnedLifetimeMillis = Math.max(age, MIN_LIFETIME_MILLIS);
+                log.info("图书馆 Token 有效期修正为 {} 秒", learnedLifetimeMillis / 1000);
+            }
+            log.info("图书馆登录态已失效: 学号={}, 使用时长={}秒", studentId, age / 1000);
+        }
+    }
+
+    /**
+     * 后台续期：最近用过且即将到期的登录态提前刷新，长期未用的直接淘汰
+     */
+    @Scheduled(fixedDelay = 30_000)
+    public void refreshExpiring() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Session> e : sessions.entrySet()) {
+            Session s = e.getValue();
+            if (now - s.lastUsedAt > IDLE_KEEP_MILLIS) {
+                if (s.expiresAt() <= now) sessions.remove(e.getKey(), s);
+                continue;
+            }
+            if (now - s.issuedAt > s.lifetime() * REFRESH_AHEAD_RATIO && refreshing.add(e.getKey())) {
+                refreshOnce(e.getKey(), s.password);
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", sessions.size());
+        stats.put("pendingLogins", pendingLogins.size());
+        stats.put("refreshing", refreshing.size());
+        stats.put("learnedLifetimeSeconds", learnedLifetimeMillis / 1000);
+        return stats;
+    }
+
+    /**
+     * 执行一次续期，调用方已通过 refreshing.add 占位，结束后释放
+     */
+    private void refreshOnce(String studentId, String password) {
+        try {
+            login(studentId, password);
+        } catch (Exception e) {
+            log.warn("图书馆登录态续期失败: 学号={}, {}", studentId, e.getMessage());
+        } finally {
+            refreshing.remove(studentId);
+        }
+    }
+
+    /**
+     * 同一学号同时只有一个登录请求在途，其余调用等待并共享结果
+     */
+    private Session login(String studentId, String password) throws Exception {
+        CompletableFuture<Session> mine = new CompletableFuture<>();
+        CompletableFuture<Session> inFlight = pendingLogins.putIfAbsent(studentId, mine);
+        if (inFlight != null) {
+            try {
+                return inFlight.get(LOGIN_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+            }
+        }
+
+        try {
+            String uuid = httpUtil.getCaptchaUuid();
+            LibraryHttpUtil.LoginResult result = httpUtil.login(studentId, password, uuid);
+            Session session = new Session(result, password, System.currentTimeMillis(), parseJwtExpiry(result.getToken()));
+            sessions.put(studentId, session);
+            mine.complete(session);
+            return session;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            pendingLogins.remove(studentId, mine);
+        }
+    }
+
+    /**
+     * Token 若为带 exp 声明的 JWT，直接取其过期时间；否则返回 0
+     */
+    private long parseJwtExpiry(String token) {
+        try {
+            String[] parts = token.split("\\.");
+            if (parts.length != 3) return 0;
+            byte[] payload = Base64.getUrlDecoder().decode(parts[1]);
+            JsonNode exp = MAPPER.readTree(new String(payload, StandardCharsets.UTF_8)).get("exp");
+            return exp != null && exp.canConvertToLong() ? exp.asLong() * 1000 : 0;
+        } catch (Exception e) {
+            return 0;
+        }
+    }
+
+    private final class Session {
+        private final LibraryHttpUtil.LoginResult login;
+        private final String password;
+        private final long issuedAt;
+        private final long jwtExpiresAt;
+        private volatile long lastUsedAt;
+
+        private Session(LibraryHttpUtil.LoginResult login, String password, long issuedAt, long jwtExpiresAt) {
+            this.login = login;
+            this.password = password;
+            this.issuedAt = issuedAt;
+            this.jwtExpiresAt = jwtExpiresAt;
+            this.lastUsedAt = issuedAt;
+        }
+
+        private long expiresAt() {
+            return jwtExpiresAt > 0 ? jwtExpiresAt : issuedAt + learnedLifetimeMillis;
+        }
+
+        private long lifetime() {
+            return expiresAt() - issuedAt;
+        }
+    }
+}
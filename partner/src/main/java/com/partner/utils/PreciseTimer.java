@@ -0,0 +1,48 @@
+package com.partner.utils;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 高精度等待工具
+ * 先粗粒度休眠，最后几毫秒自旋，保证在目标时刻的亚毫秒级精度内返回
+ * 虚拟线程自旋时让出载体线程，同一时刻等待的大量预约任务不会互相占满载体线程
+ */
+public final class PreciseTimer {
+
+    // 最后改为自旋的阈值 (Thread.sleep 在 Linux 上通常会多睡 0.1~1ms)
+    private static final long SPIN_THRESHOLD_NANOS = 3_000_000L;
+
+    private PreciseTimer() {
+    }
+
+    /**
+     * 把墙上时间 (epoch 毫秒) 换算为 System.nanoTime 基准的时刻
+     */
+    public static long toNanoDeadline(long epochMillis) {
+        return System.nanoTime() + (epochMillis - System.currentTimeMillis()) * 1_000_000L;
+    }
+
+    /**
+     * 阻塞直到 System.nanoTime() 到达 deadlineNanos
+     */
+    public static void parkUntil(long deadlineNanos) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > SPIN_THRESHOLD_NANOS) {
+            long sleepNanos = remaining - SPIN_THRESHOLD_NANOS;
+            if (sleepNanos >= 1_000_000L) {
+                Thread.sleep(sleepNanos / 1_000_000L, (int) (sleepNanos % 1_000_000L));
+            } else {
+                LockSupport.parkNanos(sleepNanos);
+            }
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+        boolean virtual = Thread.currentThread().isVirtual();
+        while (System.nanoTime() < deadlineNanos) {
+            if (virtual) {
+                Thread.yield();
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.partner.utils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 座位目录
+ * 按区域保存 "标准化标签 -> seatId" 索引 (如 "03EN11F -> 1234")，负责标签标准化与区域定位；
+ * 只做内存查找，不访问图书馆接口，加载与刷新由 LibrarySeatUtil 完成
+ */
+public final class SeatCatalog {
+
+    private static final Pattern LABEL_PATTERN = Pattern.compile("^[0-9]{2}(EN|ES|WN|WS|MM)[0-9]{2}[A-Z]$");
+    // 座位名称后缀，如 "三层东书库北区 01桌 A座" 或中区的 "五层中区 01座 A座"
+    private static final Pattern SEAT_SUFFIX_PATTERN = Pattern.compile(" ([0-9]{2})[桌座] ([A-Z])座$");
+
+    // 楼层-区域 到 regionId 的映射
+    private static final Map<String, Integer> REGION_ID_MAP = new HashMap<>();
+    static {
+        // 3F
+        REGION_ID_MAP.put("03-EN", 7); REGION_ID_MAP.put("03-ES", 8); REGION_ID_MAP.put("03-WN", 9); REGION_ID_MAP.put("03-WS", 10);
+        // 4F
+        REGION_ID_MAP.put("04-EN", 11); REGION_ID_MAP.put("04-ES", 12); REGION_ID_MAP.put("04-WN", 13); REGION_ID_MAP.put("04-WS", 14);
+        // 5F
+        REGION_ID_MAP.put("05-EN", 15); REGION_ID_MAP.put("05-ES", 16); REGION_ID_MAP.put("05-MM", 17); REGION_ID_MAP.put("05-WN", 18); REGION_ID_MAP.put("05-WS", 19);
+        // 6F
+        REGION_ID_MAP.put("06-EN", 20); REGION_ID_MAP.put("06-ES", 21); REGION_ID_MAP.put("06-WN", 22); REGION_ID_MAP.put("06-WS", 23);
+        // 7F
+        REGION_ID_MAP.put("07-EN", 24); REGION_ID_MAP.put("07-ES", 25); REGION_ID_MAP.put("07-WN", 26); REGION_ID_MAP.put("07-WS", 27);
+        // 8F
+        REGION_ID_MAP.put("08-EN", 28); REGION_ID_MAP.put("08-ES", 29); REGION_ID_MAP.put("08-MM", 30); REGION_ID_MAP.put("08-WN", 31); REGION_ID_MAP.put("08-WS", 32);
+        // 9F
+        REGION_ID_MAP.put("09-EN", 33); REGION_ID_MAP.put("09-ES", 34); REGION_ID_MAP.put("09-WN", 35); REGION_ID_MAP.put("09-WS", 36); REGION_ID_MAP.put("09-MM", 37);
+        // 10F
+        REGION_ID_MAP.put("10-EN", 38); REGION_ID_MAP.put("10-ES", 39); REGION_ID_MAP.put("10-WN", 40); REGION_ID_MAP.put("10-WS", 4);
+    }
+
+    // 区域索引：key 为 "03-EN"
+    private final Map<String, Region> regions = new ConcurrentHashMap<>();
+
+    /**
+     * 标准化输入：去除首尾空白与横杠，转大写 ("03-en-11-f" -> "03EN11F")
+     * @return 标准化后的标签，格式不符 (如 03EN11F) 时返回 null
+     */
+    public static String normalize(String label) {
+        if (label == null) return null;
+        String normLabel = label.trim().toUpperCase(Locale.ROOT).replace("-", "");
+        return LABEL_PATTERN.matcher(normLabel).matches() ? normLabel : null;
+    }
+
+    /**
+     * 标准化标签所在的区域，如 "03EN11F" -> "03-EN"
+     */
+    public static String regionKeyOf(String normLabel) {
+        return normLabel.substring(0, 2) + "-" + normLabel.substring(2, 4);
+    }
+
+    /**
+     * 区域对应的 regionId，未知区域返回 null
+     */
+    public static Integer regionId(String regionKey) {
+        return REGION_ID_MAP.get(regionKey);
+    }
+
+    public static Set<String> regionKeys() {
+        return Collections.unmodifiableSet(REGION_ID_MAP.keySet());
+    }
+
+    /**
+     * 在索引中查找标准化标签，区域未加载或没有该座位时返回 null
+     */
+    public Integer seatId(String normLabel) {
+        Region region = regions.get(regionKeyOf(normLabel));
+        return region != null ? region.seats.get(normLabel) : null;
+    }
+
+    /**
+     * 替换区域索引
+     */
+    public void put(String regionKey, Map<String, Integer> seats) {
+        regions.put(regionKey, new Region(seats, System.currentTimeMillis()));
+    }
+
+    /**
+     * 区域索引的加载时刻 (epoch 毫秒)，未加载返回 -1
+     */
+    public long loadedAt(String regionKey) {
+        Region region = regions.get(regionKey);
+        return region != null ? region.loadedAt : -1;
+    }
+
+    public int seatCount() {
+        return regions.values().stream().mapToInt(r -> r.seats.size()).sum();
+    }
+
+    /**
+     * 目录概况 (管理端查看)
+     */
+    public Map<String, Object> status() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> byRegion = new TreeMap<>();
+        long oldest = Long.MAX_VALUE;
+        for (Map.Entry<String, Region> e : regions.entrySet()) {
+            Region r = e.getValue();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("regionId", REGION_ID_MAP.get(e.getKey()));
+            item.put("seats", r.seats.size());
+            item.put("ageSeconds", (now - r.loadedAt) / 1000);
+            byRegion.put(e.getKey(), item);
+            oldest = Math.min(oldest, r.loadedAt);
+        }
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("loadedRegions", regions.size());
+        status.put("totalRegions", REGION_ID_MAP.size());
+        status.put("seats", seatCount());
+        if (oldest != Long.MAX_VALUE) {
+            status.put("oldestLoadedAt", LocalDateTime.ofInstant(Instant.ofEpochMilli(oldest), ZoneId.systemDefault()));
+            status.put("maxAgeSeconds", (now - oldest) / 1000);
+        }
+        status.put("regions", byRegion);
+        return status;
+    }
+
+    /**
+     * 把区域布局 (layout/query 响应) 中的座位名称反解为标准化标签，建立 "03EN11F -> seatId" 索引
+     */
+    public static Map<String, Integer> indexRegionLayout(InputStream in, String regionKey) throws IOException {
+        String floor = regionKey.substring(0, 2);
+        String dir = regionKey.substring(3, 5);
+        String regionNameZh = buildRegionZh(floor, dir); // 如 "三层东书库北区"
+        String prefix = floor + dir;
+        Map<String, Integer> index = new HashMap<>();
+        boolean[] hasSeatList = {false};
+
+        try (JsonParser p = JsonStreams.parser(in)) {
+            JsonStreams.readRoot(p, (name, v) -> {
+                if (!"seatList".equals(name)) return;
+                hasSeatList[0] = v.currentToken() == JsonToken.START_ARRAY;
+                JsonStreams.readArray(v, node -> {
+                    String[] seatName = {""};
+                    int[] id = {-1};
+                    JsonStreams.readObject(node, (field, value) -> {
+                        if ("seatName".equals(field)) seatName[0] = JsonStreams.text(value);
+                        else if ("id".equals(field)) id[0] = JsonStreams.intValue(value, -1);
+                    });
+                    if (id[0] <= 0 || !seatName[0].contains(regionNameZh)) return;
+
+                    Matcher m = SEAT_SUFFIX_PATTERN.matcher(seatName[0]);
+                    if (m.find()) {
+                        index.putIfAbsent(prefix + m.group(1) + m.group(2), id[0]);
+                    }
+                });
+            });
+        }
+        if (!hasSeatList[0]) {
+            throw new IOException("响应中缺少 seatList");
+        }
+        return index;
+    }
+
+    private static final class Region {
+        private final Map<String, Integer> seats;
+        private final long loadedAt;
+
+        private Region(Map<String, Integer> seats, long loadedAt) {
+            this.seats = seats;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static String buildRegionZh(String floor, String dir) {
+        String floorZh = toChineseFloor(floor);
+        switch (dir) {
+            case "EN": return floorZh + "东书库北区";
+            case "ES": return floorZh + "东书库南区";
+            case "WN": return floorZh + "西书库北区";
+            case "WS": return floorZh + "西书库南区";
+            case "MM": return floorZh + "中区";
+            default: return floorZh;
+        }
+    }
+
+    private static String toChineseFloor(String floor) {
+        switch (floor) {
+            case "03": return "三层";
+            case "04": return "四层";
+            case "05": return "五层";
+            case "06": return "六层";
+            case "07": return "七层";
+            case "08": return "八层";
+            case "09": return "九层";
+            case "10": return "十层";
+            default: return floor + "层";
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.partner.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 按键合并并发的相同操作 (single-flight)
+ * 同一个键同时只有一次真正执行，其余调用者等待并共享结果；成功的结果在完成后 shareWindowMillis 内仍直接复用，
+ * 失败不复用 (等待中的调用者收到同一个异常，之后的调用重新执行)
+ */
+public class SingleFlight<K, V> {
+
+    private final String name;
+    private final long shareWindowMillis;
+    private final Map<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong windowHits = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public SingleFlight(String name, long shareWindowMillis) {
+        this.name = name;
+        this.shareWindowMillis = shareWindowMillis;
+    }
+
+    public V execute(K key, Supplier<V> call) {
+        while (true) {
+            Flight<V> existing = flights.get(key);
+            if (existing != null) {
+                if (existing.completedAt == 0) {
+                    coalesced.incrementAndGet();
+                    return await(existing);
+                }
+                if (!expired(existing, System.currentTimeMillis())) {
+                    windowHits.incrementAndGet();
+                    return await(existing);
+                }
+                flights.remove(key, existing);
+                continue;
+            }
+
+            Flight<V> mine = new Flight<>();
+            if (flights.putIfAbsent(key, mine) != null) {
+                continue;
+            }
+            return lead(key, mine, call);
+        }
+    }
+
+    public Map<String, Object> stats() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("shareWindowMillis", shareWindowMillis);
+        stats.put("inFlight", flights.values().stream().filter(f -> f.completedAt == 0).count());
+        stats.put("shared", flights.values().stream().filter(f -> f.completedAt != 0 && !expired(f, now)).count());
+        stats.put("executions", executions.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("windowHits", windowHits.get());
+        stats.put("failures", failures.get());
+        return stats;
+    }
+
+    private V lead(K key, Flight<V> flight, Supplier<V> call) {
+        executions.incrementAndGet();
+        try {
+            V value = call.get();
+            flight.completedAt = System.currentTimeMillis();
+            flight.future.complete(value);
+            if (shareWindowMillis <= 0) {
+                flights.remove(key, flight);
+            }
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.incrementAndGet();
+            flights.remove(key, flight);
+            flight.completedAt = System.currentTimeMillis();
+            flight.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            // 顺带清理过了复用期的结果
+            long now = System.currentTimeMillis();
+            flights.values().removeIf(f -> f.completedAt != 0 && expired(f, now));
+        }
+    }
+
+    private V await(Flight<V> flight) {
+        try {
+            return flight.future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    private boolean expired(Flight<V> flight, long now) {
+        return now - flight.completedAt > shareWindowMillis;
+    }
+
+    private static final class Flight<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        // 0 表示仍在执行
+        private volatile long completedAt;
+    }
+}
@@ -0,0 +1,297 @@
+package com.partner.utils;
+
+import lombok.Data;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 单个上游的限流 (令牌桶) 与隔离舱 (并发上限 + 有界等待队列)
+ * 普通请求需要令牌；优先通道 (带 Lane.PRIORITY 标签的请求，如预约突发) 不消耗令牌，可使用全部并发名额。
+ * 保留名额只在预约窗口内 (reserve 登记的时间段) 生效，此时普通请求只能使用 maxConcurrent - reserved 个名额；
+ * 窗口外普通请求也可使用保留名额，窗口开始时已借出的名额随请求结束陆续归还。
+ * 队列已满或等待超时时立即失败 (BusyException)，不再让请求线程等满读超时
+ */
+public class UpstreamLimiter {
+
+    public enum Lane {
+        NORMAL, PRIORITY
+    }
+
+    @Data
+    public static class Config {
+        private double permitsPerSecond;    // 令牌生成速率，<= 0 表示不限速
+        private int burst;                  // 令牌桶容量
+        private int maxConcurrent;          // 同时在途请求上限
+        private int reserved;               // 预约窗口内为优先通道保留的并发名额
+        private int maxQueue;               // 普通请求最大排队数
+        private long maxWaitMs;             // 排队最长等待时间
+    }
+
+    public static class BusyException extends IOException {
+        public BusyException(String message) {
+            super(message);
+        }
+    }
+
+    private final String name;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+
+    private Config config;
+    private double tokens;
+    private long lastRefillNanos;
+    private int inFlight;
+    private int waiting;
+    private long reservedUntilNanos;        // 保留名额生效截止时刻 (System.nanoTime)，之前的时刻不保留
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong priorityAdmitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    public UpstreamLimiter(String name, Config config) {
+        this.name = name;
+        this.config = config;
+        this.tokens = config.getBurst();
+        this.lastRefillNanos = System.nanoTime();
+        this.reservedUntilNanos = lastRefillNanos;
+    }
+
+    /**
+     * 获取一个名额，成功后必须调用 release
+     */
+    public void acquire(Lane lane) throws IOException {
+        boolean priority = lane == Lane.PRIORITY;
+        lock.lock();
+        try {
+            refill();
+            if (canEnter(priority)) {
+                enter(priority);
+                return;
+            }
+            if (!priority && waiting >= config.getMaxQueue()) {
+                rejected.incrementAndGet();
+                throw new BusyException(name + " 繁忙，请稍后重试");
+            }
+            waiting++;
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getMaxWaitMs());
+                while (true) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timedOut.incrementAndGet();
+                        throw new BusyException(name + " 繁忙，请稍后重试");
+                    }
+                    // 只缺令牌时按下一个令牌的生成时间唤醒，缺名额时等待名额释放或预约窗口结束
+                    long wait = remaining;
+                    if (!priority && hasSlot(false) && config.getPermitsPerSecond() > 0) {
+                        wait = Math.min(wait, (long) ((1 - tokens) / config.getPermitsPerSecond() * 1_000_000_000L) + 1);
+                    } else if (!priority && reserving()) {
+                        wait = Math.min(wait, reservedUntilNanos - System.nanoTime() + 1);
+                    }
+                    changed.awaitNanos(wait);
+                    refill();
+                    if (canEnter(priority)) {
+                        enter(priority);
+                        return;
+                    }
+                }
+            } finally {
+                waiting--;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusyException(name + " 等待被中断");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 登记预约窗口：从现在起 durationMillis 内为优先通道保留名额 (与已登记的窗口取并集)
+     * 应在突发前提前登记，让窗口开始前借出保留名额的普通请求有时间归还
+     */
+    public void reserve(long durationMillis) {
+        lock.lock();
+        try {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+            if (!reserving() || until - reservedUntilNanos > 0) {
+                reservedUntilNanos = until;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 运行时调整限制 (立即唤醒等待者按新配置重新判断)
+     */
+    public void reconfigure(Config newConfig) {
+        lock.lock();
+        try {
+            refill();
+            config = newConfig;
+            tokens = Math.min(tokens, newConfig.getBurst());
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Config getConfig() {
+        lock.lock();
+        try {
+            return config;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            refill();
+            stats.put("config", config);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting);
+            stats.put("reserving", reserving());
+            stats.put("tokens", Math.floor(tokens * 100) / 100);
+        } finally {
+            lock.unlock();
+        }
+        stats.put("admitted", admitted.get());
+        stats.put("priorityAdmitted", priorityAdmitted.get());
+        stats.put("rejected", rejected.get());
+        stats.put("timedOut", timedOut.get());
+        return stats;
+    }
+
+    /**
+     * OkHttp 应用拦截器：请求发出前获取名额，响应体关闭 (或请求失败) 时释放
+     */
+    public Interceptor interceptor() {
+        return chain -> {
+            Request request = chain.request();
+            Lane lane = request.tag(Lane.class);
+            acquire(lane == null ? Lane.NORMAL : lane);
+            Runnable releaseOnce = onceReleaser();
+            try {
+                Response response = chain.proceed(request);
+                ResponseBody body = response.body();
+                if (body == null) {
+                    releaseOnce.run();
+                    return response;
+                }
+                return response.newBuilder().body(new ReleasingBody(body, releaseOnce)).build();
+            } catch (IOException | RuntimeException e) {
+                releaseOnce.run();
+                throw e;
+            }
+        };
+    }
+
+    private Runnable onceReleaser() {
+        AtomicBoolean released = new AtomicBoolean();
+        return () -> {
+            if (released.compareAndSet(false, true)) release();
+        };
+    }
+
+    private boolean hasSlot(boolean priority) {
+        int limit = priority || !reserving() ? config.getMaxConcurrent() : config.getMaxConcurrent() - config.getReserved();
+        return inFlight < limit;
+    }
+
+    private boolean reserving() {
+        return reservedUntilNanos - System.nanoTime() > 0;
+    }
+
+    private boolean canEnter(boolean priority) {
+        return hasSlot(priority) && (priority || config.getPermitsPerSecond() <= 0 || tokens >= 1);
+    }
+
+    private void enter(boolean priority) {
+        inFlight++;
+        if (priority) {
+            priorityAdmitted.incrementAndGet();
+        } else {
+            if (config.getPermitsPerSecond() > 0) tokens -= 1;
+            admitted.incrementAndGet();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (config.getPermitsPerSecond() > 0) {
+            tokens = Math.min(config.getBurst(), tokens + (now - lastRefillNanos) / 1_000_000_000.0 * config.getPermitsPerSecond());
+        }
+        lastRefillNanos = now;
+    }
+
+    /**
+     * 包装响应体：调用方读完并关闭响应时归还名额
+     */
+    private static final class ReleasingBody extends ResponseBody {
+        private final ResponseBody delegate;
+        private final Runnable release;
+        private BufferedSource source;
+
+        private ReleasingBody(ResponseBody delegate, Runnable release) {
+            this.delegate = delegate;
+            this.release = release;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            if (source == null) {
+                source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            release.run();
+                        }
+                    }
+                });
+            }
+            return source;
+        }
+    }
+}
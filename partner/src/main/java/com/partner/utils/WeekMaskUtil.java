@@ -0,0 +1,56 @@
+package com.partner.utils;
+
+import java.util.Collection;
+
+/**
+ * 周次位图工具
+ * 第 w 周对应 bit (w-1)，一个 long 可表示第 1~64 周；判断某周是否有课只需一次位运算
+ */
+public final class WeekMaskUtil {
+
+    public static final int MAX_WEEK = 64;
+
+    private WeekMaskUtil() {
+    }
+
+    /**
+     * 单周对应的位，超出 1~64 的周次返回 0
+     */
+    public static long bit(int week) {
+        return week >= 1 && week <= MAX_WEEK ? 1L << (week - 1) : 0L;
+    }
+
+    public static long toMask(Collection<Integer> weeks) {
+        long mask = 0L;
+        for (Integer week : weeks) {
+            if (week != null) mask |= bit(week);
+        }
+        return mask;
+    }
+
+    public static boolean contains(long mask, int week) {
+        return (mask & bit(week)) != 0;
+    }
+
+    /**
+     * 从 JSON 周次数组 (如 "[1,2,3]") 直接计算位图，不经过 JSON 反序列化
+     * 非数字字符一律视为分隔符，格式错误时返回 0
+     */
+    public static long fromJson(String jsonList) {
+        if (jsonList == null) return 0L;
+        long mask = 0L;
+        int value = -1;
+        for (int i = 0, n = jsonList.length(); i < n; i++) {
+            char c = jsonList.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > MAX_WEEK) value = MAX_WEEK + 1;
+            } else if (value >= 0) {
+                mask |= bit(value);
+                value = -1;
+            }
+        }
+        if (value >= 0) mask |= bit(value);
+        return mask;
+    }
+}
@@ -0,0 +1,26 @@
+package com.partner.vo;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 绩点与学分汇总 (总计 + 按学期)
+ */
+@Data
+public class GpaSummaryVO {
+    private Term total;
+    private List<Term> terms = new ArrayList<>();
+
+    @Data
+    public static class Term {
+        private String year;            // 学年，如 2023-2024
+        private String semester;        // 学期，如 1、2
+        private Integer courseCount;
+        private BigDecimal totalCredit; // 学分合计
+        private BigDecimal gpa;         // 学分加权平均绩点
+        private BigDecimal gpaSum;      // 学分绩点合计
+    }
+}
@@ -0,0 +1,23 @@
+package com.partner.vo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 课表导入结果 (增量对比后的变更数)
+ * 只含计数，导入后的课表通过 /client/querySemesterSchedule 读取；
+ * fresh、stale 或 unchanged 时 kept 为本地现有课程数，为 0 说明本地没有该学期课表
+ */
+@Data
+public class ImportSummaryVO {
+    private String semester;
+    private Boolean fresh;       // 距上次同步未超过有效期，未访问教务系统
+    private Boolean stale;       // 上游熔断，未访问教务系统
+    private LocalDateTime asOf;  // stale 时本地课表最后一次成功同步的时间
+    private Boolean unchanged;   // 上游数据与上次导入完全一致，未做任何写入
+    private Integer added;       // 新增课程数
+    private Integer changed;     // 内容有变化的课程数 (原行更新)
+    private Integer removed;     // 上游已不存在而删除的课程数
+    private Integer kept;        // 未变化的课程数
+}
@@ -0,0 +1,25 @@
+package com.partner.vo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 单次自动预约任务的执行报告
+ */
+@Data
+public class LibraryBookingReportVO {
+    private String studentId;
+    private Long configId;
+    private LocalDateTime windowOpenAt;  // 预约窗口开放时刻 (autoStartTime)
+    private Long rttMs;                  // 预热测得的往返耗时
+    private Double firstSendOffsetMs;    // 首个请求写出时刻 - 窗口开放时刻
+    private Double firstArrivalOffsetMs; // 首个请求估计到达服务器时刻 (写出 + RTT/2) - 窗口开放时刻
+    private Integer attempts;            // 实际发出的请求数
+    private Integer cancelledAttempts;   // 首个成功后被取消的请求数
+    private Integer extraSeats;          // 竞态中多抢到的座位数 (未释放的需人工处理)
+    private Integer releasedSeats;       // 其中已自动释放的座位数
+    private Boolean success;
+    private Integer seatId;              // 成功预约的座位
+    private String message;
+}
@@ -0,0 +1,24 @@
+package com.partner.vo;
+
+import com.partner.entity.Score;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 成绩同步的变更集：前端只需渲染新增和变化的成绩，全部成绩通过 /client/queryLocalScore 读取
+ * fresh 或 stale 为 true 时未访问教务系统，added/changed 为空，unchanged 为本地成绩条数，scores 为本地全部成绩；
+ * 访问了教务系统时 scores 为空
+ */
+@Data
+public class ScoreDeltaVO {
+    private Boolean fresh;                          // 距上次同步未超过有效期，未访问教务系统
+    private Boolean stale;                          // 上游熔断，未访问教务系统，scores 为本地旧数据
+    private LocalDateTime asOf;                     // stale 时本地数据最后一次成功同步的时间
+    private List<Score> added = new ArrayList<>();  // 新出的成绩
+    private List<Score> changed = new ArrayList<>();// 成绩、绩点或学分绩点有更正的
+    private Integer unchanged = 0;                  // 与本地一致的条数
+    private List<Score> scores;                     // 本地全部成绩 (仅 fresh/stale 时)
+}
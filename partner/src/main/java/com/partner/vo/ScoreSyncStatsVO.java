@@ -0,0 +1,35 @@
+package com.partner.vo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 单次成绩爬取的分页统计
+ */
+@Data
+public class ScoreSyncStatsVO {
+    private String studentId;
+    private String termKey;              // 学期标识，不限学期时为 all
+    private LocalDateTime startedAt;
+    private Integer pageSize;
+    private Integer totalResult;         // 教务返回的总条数
+    private Integer pages;               // 实际拉取的页数
+    private Integer rows;                // 实际解析出的成绩条数
+    private Long elapsedMs;              // 全部页面拉取完成的总耗时
+    private Boolean success;
+    private String message;
+    private List<PageTiming> pageTimings = new ArrayList<>();
+    private Map<String, Integer> rowsByTerm = new LinkedHashMap<>(); // 按 学年_学期 拆分的条数
+
+    @Data
+    public static class PageTiming {
+        private Integer page;
+        private Integer rows;
+        private Long elapsedMs;          // 从发出请求到该页解析完成
+    }
+}
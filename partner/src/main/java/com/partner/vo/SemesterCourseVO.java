@@ -0,0 +1,19 @@
+package com.partner.vo;
+
+import lombok.Data;
+
+/**
+ * 学期课表中的一门课 (每门课只出现一次，上课周次用位图表示)
+ */
+@Data
+public class SemesterCourseVO {
+    private String courseName;   // 课程名
+    private String teacher;      // 教师
+    private String location;     // 教室
+    private String weekRange;    // 周次描述 (原始 zcd)
+    private String dayOfWeek;    // 星期几
+    private String dayCode;      // 星期代码
+    private String sessionInfo;  // 节次
+    private Long weekMask;       // 周次位图: 第 w 周对应 bit (w-1)
+    private Boolean custom;      // 是否为用户添加的课程
+}
@@ -0,0 +1,17 @@
+package com.partner.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 整学期课表：课程只列一次，weeks[w-1] 为第 w 周有课的课程下标 (按星期、节次排序)
+ * 前端切换周次时直接查 weeks，无需再请求服务端
+ */
+@Data
+public class SemesterScheduleVO {
+    private String semester;
+    private Integer weekCount;
+    private List<SemesterCourseVO> courses;
+    private int[][] weeks;
+}
@@ -0,0 +1,24 @@
+package com.partner.vo;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 后台同步任务状态 (提交后立即返回，之后凭 jobId 轮询或长轮询结果)
+ */
+@Data
+public class SyncJobVO {
+    private String jobId;
+    private String account;
+    private String dataType;        // scores / timetable
+    private String termKey;
+    private String status;          // RUNNING / SUCCESS / FAILED
+    private Boolean stale;          // 上游熔断，result 为本地保存的数据
+    private LocalDateTime asOf;     // 本地数据最后一次成功同步的时间
+    private Boolean attached;       // 本次提交是否并入了同一账号同类数据正在执行的任务
+    private LocalDateTime submittedAt;
+    private LocalDateTime finishedAt;
+    private Object result;          // 成功时为 ScoreDeltaVO / ImportSummaryVO (stale 时同类型，由本地数据构造并带 stale/asOf)
+    private String message;         // 失败原因
+}
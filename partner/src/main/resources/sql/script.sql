@@ -112,3 +112,103 @@ create table system_notice
     comment '系统公告表';
 
 
+-- 图书馆预约：备选座位 (按优先级并发抢座)
+alter table library_profile
+    add column backup_seat_labels varchar(255) null comment '备选座位标签，逗号分隔',
+    add column backup_seat_ids    varchar(255) null comment '备选座位ID，逗号分隔';
+
+-- 课表周次位图：第 w 周对应 bit (w-1)，按周筛选改为位运算，不再逐行解析 JSON
+alter table schedule_system
+    add column week_mask bigint default 0 not null comment '周次位图，第w周对应bit(w-1)' after week_list,
+    add index idx_std_sem (student_id, semester);
+
+-- 从 week_list 回填已有数据 (MySQL 8.0 JSON_TABLE)
+update schedule_system s
+    join (select ss.id, cast(bit_or(1 << (jt.week - 1)) as signed) as mask
+          from schedule_system ss,
+               json_table(ss.week_list, '$[*]' columns (week int path '$')) jt
+          where jt.week between 1 and 64
+          group by ss.id) m on s.id = m.id
+set s.week_mask = m.mask;
+
+-- 课表增量导入：每行内容哈希 + 每学期整体哈希 (一致时跳过写入)
+alter table schedule_system
+    add column content_hash char(64) null comment '课程内容哈希(SHA-256)';
+
+create table schedule_import
+(
+    student_id   varchar(50) not null,
+    semester     varchar(20) not null,
+    payload_hash char(64)    not null comment '上次导入的整学期哈希',
+    course_count int         not null,
+    import_time  datetime    not null,
+    primary key (student_id, semester)
+)
+    comment '课表导入记录';
+
+-- 成绩自然键：同一学生同一学期同一课程只有一行，重修按学期区分，更正成绩原地更新
+delete s1
+from score s1
+         join score s2
+              on s1.student_id = s2.student_id and s1.year = s2.year
+                  and s1.semester = s2.semester and s1.course_name = s2.course_name
+                  and s1.id < s2.id;
+
+alter table score
+    add constraint uk_student_term_course
+        unique (student_id, year, semester, course_name);
+
+-- 成绩汇总：每学期一行 + year/semester 为 ALL 的总计行，随成绩写入增量维护，每日重建校正
+create table score_aggregate
+(
+    student_id       varchar(20)    not null,
+    year             varchar(20)    not null comment '学年，总计行为 ALL',
+    semester         varchar(20)    not null comment '学期，总计行为 ALL',
+    course_count     int            not null default 0,
+    total_credit     decimal(10, 1) not null default 0 comment '学分合计',
+    gpa_credit       decimal(10, 1) not null default 0 comment '有绩点课程的学分合计',
+    point_credit_sum decimal(12, 3) not null default 0 comment 'Σ 学分×绩点',
+    gpa_sum          decimal(12, 2) not null default 0 comment 'Σ 学分绩点',
+    update_time      datetime       not null,
+    primary key (student_id, year, semester)
+)
+    comment '成绩汇总';
+
+insert into score_aggregate (student_id, year, semester, course_count, total_credit, gpa_credit, point_credit_sum, gpa_sum, update_time)
+select student_id, year, semester, count(*), ifnull(sum(credit), 0), ifnull(sum(if(point is null, 0, credit)), 0),
+       ifnull(sum(credit * point), 0), ifnull(sum(gpa), 0), now()
+from score
+group by student_id, year, semester;
+
+insert into score_aggregate (student_id, year, semester, course_count, total_credit, gpa_credit, point_credit_sum, gpa_sum, update_time)
+select student_id, 'ALL', 'ALL', count(*), ifnull(sum(credit), 0), ifnull(sum(if(point is null, 0, credit)), 0),
+       ifnull(sum(credit * point), 0), ifnull(sum(gpa), 0), now()
+from score
+group by student_id;
+
+-- client.id 原为 mediumtext 且无主键 (insertClient 不写 id，应用创建的用户 id 均为 NULL)：
+-- 保留已有的数字 id，其余按账号顺序接在最大 id 之后补号，再改为 bigint 自增主键，
+-- 批量同步的 id 游标 (id > ? ORDER BY id) 由此走主键范围扫描，按数值排序且不会漏掉原来为 NULL 的行
+-- (若已有重复的数字 id，add primary key 会失败，需先手工处理)
+set @next_client_id = (select ifnull(max(cast(id as unsigned)), 0) from client where id regexp '^[0-9]+$');
+update client
+set id = (@next_client_id := @next_client_id + 1)
+where id is null or id not regexp '^[0-9]+$'
+order by account;
+
+alter table client
+    modify column id bigint not null auto_increment comment '主键ID',
+    add primary key (id);
+
+-- 后台批量同步检查点：按 client.id 游标推进，重启后从断点继续
+create table sync_checkpoint
+(
+    job_name       varchar(50) not null primary key,
+    last_client_id bigint      not null default 0 comment '已完成批次中最大的 client.id',
+    status         varchar(20) not null comment 'RUNNING / DONE',
+    processed      int         not null default 0,
+    failed         int         not null default 0,
+    started_at     datetime    null,
+    update_time    datetime    not null
+)
+    comment '批量同步检查点';
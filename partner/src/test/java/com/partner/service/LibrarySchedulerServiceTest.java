@@ -0,0 +1,144 @@
+package com.partner.service;
+
+import com.partner.entity.library.LibraryProfile;
+import com.partner.entity.library.LibraryTimeConfig;
+import com.partner.mapper.LibraryMapper;
+import com.partner.utils.InstrumentedExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 触发器的补发与去重：直接以指定的 "当前时刻" 排期和触发，不启动触发线程
+ */
+class LibrarySchedulerServiceTest {
+
+    private static final long LEAD_MILLIS = 5_000;
+
+    private final LibraryMapper libraryMapper = mock(LibraryMapper.class);
+    private final LibraryBookingService bookingService = mock(LibraryBookingService.class);
+    private final InstrumentedExecutor bookingExecutor = mock(InstrumentedExecutor.class);
+    private final LibrarySchedulerService scheduler = new LibrarySchedulerService();
+
+    private LibraryProfile profile;
+    private LibraryTimeConfig config;
+    // 今天该配置的触发时刻 (开放时刻前 5 秒)
+    private long fireAt;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(scheduler, "libraryMapper", libraryMapper);
+        ReflectionTestUtils.setField(scheduler, "bookingService", bookingService);
+        ReflectionTestUtils.setField(scheduler, "bookingExecutor", bookingExecutor);
+
+        profile = new LibraryProfile();
+        profile.setStudentId("2021001");
+        profile.setAutoEnable(true);
+        profile.setSeatId(1001);
+
+        LocalTime openAt = LocalTime.now().withSecond(0).withNano(0);
+        config = new LibraryTimeConfig();
+        config.setId(1L);
+        config.setStudentId(profile.getStudentId());
+        config.setAutoStartTime(openAt.format(DateTimeFormatter.ofPattern("HH:mm")));
+        config.setIsActive(true);
+        fireAt = LocalDate.now().atTime(openAt).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() - LEAD_MILLIS;
+
+        when(libraryMapper.findAutoEnabledUsers()).thenReturn(List.of(profile));
+        when(libraryMapper.findAllActiveTimeConfigs()).thenReturn(List.of(config));
+        scheduler.rebuildAll();
+    }
+
+    @Test
+    void triggerMissedByLessThanCatchUpWindowIsFiredImmediately() {
+        schedule(fireAt + 3_000);
+        fire(fireAt + 3_000);
+
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(bookingExecutor).execute(task.capture());
+        task.getValue().run();
+        verify(bookingService).executeBookingTask(profile, config);
+    }
+
+    @Test
+    void triggerMissedBeyondCatchUpWindowIsSkipped() {
+        schedule(fireAt + 3_000);
+        fire(fireAt + 6_000);
+
+        verify(bookingExecutor, never()).execute(any());
+        // 跳过的触发不记为已执行，下一次仍排到明天
+        assertEquals(LocalDate.now().plusDays(1), nextFireDate());
+    }
+
+    @Test
+    void triggerTooFarInThePastIsNotQueuedForToday() {
+        schedule(fireAt + 6_000);
+
+        assertEquals(LocalDate.now().plusDays(1), nextFireDate());
+    }
+
+    @Test
+    void sameTargetDateFiresOnlyOnce() {
+        schedule(fireAt);
+        Object trigger = pollDue();
+        ReflectionTestUtils.invokeMethod(scheduler, "fire", trigger, fireAt + 10);
+        // 同一天的触发再次出队 (如重建队列后重复排入) 不再执行
+        ReflectionTestUtils.invokeMethod(scheduler, "fire", trigger, fireAt + 20);
+
+        verify(bookingExecutor, times(1)).execute(any());
+    }
+
+    @Test
+    void rescheduleAfterFiringSkipsTheDateAlreadyFired() {
+        schedule(fireAt);
+        fire(fireAt + 10);
+
+        // 即使仍在补发窗口内，重新排期 (配置变更、全量重建) 也不会把今天再排一次
+        schedule(fireAt + 20);
+        assertEquals(LocalDate.now().plusDays(1), nextFireDate());
+        verify(bookingExecutor, times(1)).execute(any());
+    }
+
+    /**
+     * 以 now 为当前时刻重新排期该配置 (清掉 rebuildAll 按真实时间排入的触发)
+     */
+    private void schedule(long now) {
+        Map<?, ?> triggersByConfig = (Map<?, ?>) ReflectionTestUtils.getField(scheduler, "triggersByConfig");
+        ReflectionTestUtils.invokeMethod(scheduler, "cancel", config.getId());
+        assertFalse(triggersByConfig.containsKey(config.getId()));
+        ReflectionTestUtils.invokeMethod(scheduler, "schedule", config, now);
+    }
+
+    /**
+     * 取出该配置当前排入的触发并以 now 为当前时刻触发
+     */
+    private void fire(long now) {
+        ReflectionTestUtils.invokeMethod(scheduler, "fire", pollDue(), now);
+    }
+
+    private Object pollDue() {
+        PriorityQueue<?> queue = (PriorityQueue<?>) ReflectionTestUtils.getField(scheduler, "queue");
+        Map<?, ?> triggersByConfig = (Map<?, ?>) ReflectionTestUtils.getField(scheduler, "triggersByConfig");
+        Object trigger = triggersByConfig.remove(config.getId());
+        assertNotNull(trigger);
+        queue.remove(trigger);
+        return trigger;
+    }
+
+    private LocalDate nextFireDate() {
+        List<Map<String, Object>> snapshot = scheduler.snapshot();
+        assertEquals(1, snapshot.size());
+        return ((LocalDateTime) snapshot.get(0).get("fireAt")).plusSeconds(LEAD_MILLIS / 1000).toLocalDate();
+    }
+}
@@ -0,0 +1,125 @@
+package com.partner.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedCacheTest {
+
+    @Test
+    void loadsOnceAndServesHitsFromCache() {
+        BoundedCache<String, Integer> cache = new BoundedCache<>(10, 60_000);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(1, cache.getOrLoad("k", loads::incrementAndGet));
+        assertEquals(1, cache.getOrLoad("k", loads::incrementAndGet));
+        assertEquals(1, loads.get());
+        assertEquals(1L, cache.stats().get("hits"));
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void nullResultIsNotCached() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60_000);
+
+        assertNull(cache.getOrLoad("k", () -> null));
+        assertEquals(0, cache.stats().get("size"));
+        assertEquals("v", cache.getOrLoad("k", () -> "v"));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntryBeyondMaxSize() {
+        BoundedCache<String, String> cache = new BoundedCache<>(2, 60_000);
+        cache.getOrLoad("a", () -> "A");
+        cache.getOrLoad("b", () -> "B");
+        // 访问 a 后 b 成为最久未使用
+        assertEquals("A", cache.get("a"));
+        cache.getOrLoad("c", () -> "C");
+
+        assertEquals("A", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("C", cache.get("c"));
+        assertEquals(1L, cache.stats().get("evictions"));
+    }
+
+    @Test
+    void expiresEntriesAfterTtl() throws InterruptedException {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 50);
+        cache.getOrLoad("k", () -> "v");
+        assertEquals("v", cache.get("k"));
+
+        Thread.sleep(100);
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.stats().get("size"));
+    }
+
+    @Test
+    void invalidateIfRemovesMatchingKeysOnly() {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60_000);
+        cache.getOrLoad("2024:1", () -> "x");
+        cache.getOrLoad("2024:2", () -> "y");
+        cache.getOrLoad("2025:1", () -> "z");
+
+        cache.invalidateIf(k -> k.startsWith("2024:"));
+        assertNull(cache.get("2024:1"));
+        assertNull(cache.get("2024:2"));
+        assertEquals("z", cache.get("2025:1"));
+        assertEquals(2L, cache.stats().get("invalidations"));
+    }
+
+    @Test
+    void loadStartedBeforeInvalidationIsNotWrittenBack() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60_000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> stale = CompletableFuture.supplyAsync(() -> cache.getOrLoad("k", () -> {
+            loading.countDown();
+            await(release);
+            return "旧数据";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        // 加载进行中数据被修改
+        cache.invalidate("k");
+        release.countDown();
+
+        // 调用方仍拿到自己加载的值，但不写回缓存
+        assertEquals("旧数据", stale.get(5, TimeUnit.SECONDS));
+        assertNull(cache.get("k"));
+        assertEquals("新数据", cache.getOrLoad("k", () -> "新数据"));
+        assertEquals("新数据", cache.get("k"));
+    }
+
+    @Test
+    void invalidatingOneKeyDoesNotDiscardLoadsOfOtherKeys() throws Exception {
+        BoundedCache<String, String> cache = new BoundedCache<>(10, 60_000);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> other = CompletableFuture.supplyAsync(() -> cache.getOrLoad("b", () -> {
+            loading.countDown();
+            await(release);
+            return "B";
+        }));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.invalidate("a");
+        release.countDown();
+
+        assertEquals("B", other.get(5, TimeUnit.SECONDS));
+        assertEquals("B", cache.get("b"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("等待超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.partner.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CircuitBreakerTest {
+
+    private final CircuitBreaker breaker = new CircuitBreaker("test", config());
+
+    private static CircuitBreaker.Config config() {
+        CircuitBreaker.Config config = new CircuitBreaker.Config();
+        config.setWindowSize(4);
+        config.setMinCalls(4);
+        config.setFailureRatePercent(50);
+        config.setSlowCallMillis(1_000);
+        config.setSlowRatePercent(75);
+        config.setOpenSeconds(30);
+        return config;
+    }
+
+    @Test
+    void staysClosedUntilMinCallsReached() {
+        for (int i = 0; i < 3; i++) {
+            breaker.record(breaker.tryAcquire(), true, 10);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+        assertNotNull(breaker.tryAcquire());
+    }
+
+    @Test
+    void opensWhenFailureRateReachedAndRejectsCalls() {
+        breaker.record(breaker.tryAcquire(), false, 10);
+        breaker.record(breaker.tryAcquire(), false, 10);
+        breaker.record(breaker.tryAcquire(), true, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+        breaker.record(breaker.tryAcquire(), true, 10);
+
+        assertEquals(CircuitBreaker.State.OPEN, state());
+        assertTrue(breaker.isOpen());
+        assertNull(breaker.tryAcquire());
+        assertEquals(1L, breaker.stats().get("rejected"));
+    }
+
+    @Test
+    void opensWhenSlowCallRateReached() {
+        breaker.record(breaker.tryAcquire(), false, 10);
+        for (int i = 0; i < 3; i++) {
+            breaker.record(breaker.tryAcquire(), false, 1_500);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, state());
+    }
+
+    @Test
+    void halfOpenAdmitsSingleProbeAndClosesOnSuccess() {
+        tripOpen();
+        expireOpenPeriod();
+        assertFalse(breaker.isOpen());
+
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertNotNull(probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+        // 探测进行中：其他调用仍被拒绝
+        assertTrue(breaker.isOpen());
+        assertNull(breaker.tryAcquire());
+
+        breaker.record(probe, false, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+        assertEquals(0, breaker.stats().get("calls"));
+        assertNotNull(breaker.tryAcquire());
+    }
+
+    @Test
+    void failedOrSlowProbeReopens() {
+        tripOpen();
+        expireOpenPeriod();
+        breaker.record(breaker.tryAcquire(), true, 10);
+        assertEquals(CircuitBreaker.State.OPEN, state());
+        assertNull(breaker.tryAcquire());
+
+        expireOpenPeriod();
+        breaker.record(breaker.tryAcquire(), false, 1_500);
+        assertEquals(CircuitBreaker.State.OPEN, state());
+        assertEquals(3L, breaker.stats().get("opens"));
+    }
+
+    @Test
+    void ignoredProbeFreesTheProbeSlot() {
+        tripOpen();
+        expireOpenPeriod();
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+        assertNull(breaker.tryAcquire());
+
+        breaker.ignore(probe);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+        assertNotNull(breaker.tryAcquire());
+    }
+
+    @Test
+    void resultsFromAnEarlierEpochAreIgnored() {
+        // 熔断前放行、半开时才返回的调用不能顶替探测结果
+        CircuitBreaker.Permit beforeOpen = breaker.tryAcquire();
+        tripOpen();
+        expireOpenPeriod();
+        CircuitBreaker.Permit probe = breaker.tryAcquire();
+
+        breaker.record(beforeOpen, false, 10);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, state());
+        assertNull(breaker.tryAcquire());
+
+        breaker.record(probe, false, 10);
+        assertEquals(CircuitBreaker.State.CLOSED, state());
+
+        // 恢复之后才返回的旧失败也不计入新窗口
+        breaker.record(beforeOpen, true, 10);
+        assertEquals(0, breaker.stats().get("calls"));
+    }
+
+    @Test
+    void isOpenFailureFindsOpenExceptionInCauseChain() {
+        Exception wrapped = new RuntimeException("同步失败", new CircuitBreaker.OpenException("熔断中"));
+        assertTrue(CircuitBreaker.isOpenFailure(wrapped));
+        assertFalse(CircuitBreaker.isOpenFailure(new RuntimeException("网络异常")));
+    }
+
+    private void tripOpen() {
+        for (int i = 0; i < 4; i++) {
+            breaker.record(breaker.tryAcquire(), true, 10);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, state());
+    }
+
+    /**
+     * 把熔断开始时间往前拨过熔断持续时间，不必真的等待
+     */
+    private void expireOpenPeriod() {
+        long openedAt = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(config().getOpenSeconds()) - 1;
+        ReflectionTestUtils.setField(breaker, "openedAt", openedAt);
+    }
+
+    private CircuitBreaker.State state() {
+        return (CircuitBreaker.State) breaker.stats().get("state");
+    }
+}
@@ -0,0 +1,132 @@
+package com.partner.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final ExecutorService callers = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentCallsForSameKeyShareOneExecution() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", 0);
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            results.add(callers.submit(() -> flight.execute("k", () -> {
+                executions.incrementAndGet();
+                await(release);
+                return "v";
+            })));
+        }
+        // 一个调用在执行，其余三个在等待它的结果
+        waitFor(() -> (long) flight.stats().get("coalesced") == 3);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("v", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, executions.get());
+    }
+
+    @Test
+    void differentKeysDoNotCoalesce() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>("test", 60_000);
+        AtomicInteger executions = new AtomicInteger();
+
+        assertEquals(1, flight.execute("a", executions::incrementAndGet));
+        assertEquals(2, flight.execute("b", executions::incrementAndGet));
+        assertEquals(1, flight.execute("a", executions::incrementAndGet));
+    }
+
+    @Test
+    void resultIsReusedWithinShareWindowAndRecomputedAfter() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>("test", 100);
+        AtomicInteger executions = new AtomicInteger();
+
+        assertEquals(1, flight.execute("k", executions::incrementAndGet));
+        assertEquals(1, flight.execute("k", executions::incrementAndGet));
+        assertEquals(1L, flight.stats().get("windowHits"));
+
+        Thread.sleep(150);
+        assertEquals(2, flight.execute("k", executions::incrementAndGet));
+        assertEquals(2, executions.get());
+    }
+
+    @Test
+    void zeroShareWindowDoesNotReuseCompletedResults() {
+        SingleFlight<String, Integer> flight = new SingleFlight<>("test", 0);
+        AtomicInteger executions = new AtomicInteger();
+
+        flight.execute("k", executions::incrementAndGet);
+        flight.execute("k", executions::incrementAndGet);
+        assertEquals(2, executions.get());
+        assertEquals(0L, flight.stats().get("shared"));
+    }
+
+    @Test
+    void failureIsPropagatedToWaitersAndNotShared() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>("test", 60_000);
+        IllegalStateException failure = new IllegalStateException("上游异常");
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = callers.submit(() -> flight.execute("k", () -> {
+            await(release);
+            throw failure;
+        }));
+        waitFor(() -> (long) flight.stats().get("executions") == 1);
+        Future<String> waiter = callers.submit(() -> flight.execute("k", () -> "不应执行"));
+        waitFor(() -> (long) flight.stats().get("coalesced") == 1);
+        release.countDown();
+
+        assertSame(failure, causeOf(leader));
+        assertSame(failure, causeOf(waiter));
+        assertEquals(1L, flight.stats().get("failures"));
+
+        // 失败不进入复用期，下一次调用重新执行
+        assertEquals("ok", flight.execute("k", () -> "ok"));
+        assertEquals(2L, flight.stats().get("executions"));
+    }
+
+    private static Throwable causeOf(Future<?> future) throws Exception {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        return e.getCause();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("等待超时");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("条件未在 5 秒内满足");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.partner.utils;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UpstreamLimiterTest {
+
+    private static UpstreamLimiter.Config config(int maxConcurrent, int reserved, int maxQueue, long maxWaitMs) {
+        UpstreamLimiter.Config config = new UpstreamLimiter.Config();
+        config.setPermitsPerSecond(0);
+        config.setBurst(1);
+        config.setMaxConcurrent(maxConcurrent);
+        config.setReserved(reserved);
+        config.setMaxQueue(maxQueue);
+        config.setMaxWaitMs(maxWaitMs);
+        return config;
+    }
+
+    @Test
+    void permitIsHeldUntilResponseBodyIsClosed() throws IOException {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(1, 0, 0, 0));
+        OkHttpClient client = client(limiter, chain -> respond(chain.request(), "ok"));
+
+        Response response = client.newCall(request()).execute();
+        assertEquals(1, inFlight(limiter));
+        // 响应未关闭前名额不归还，下一个请求直接被拒
+        assertThrows(UpstreamLimiter.BusyException.class, () -> client.newCall(request()).execute());
+
+        assertEquals("ok", response.body().string());
+        response.close();
+        assertEquals(0, inFlight(limiter));
+        // 重复关闭不会多还名额
+        response.close();
+        assertEquals(0, inFlight(limiter));
+        client.newCall(request()).execute().close();
+        assertEquals(0, inFlight(limiter));
+    }
+
+    @Test
+    void permitIsReleasedWhenCallFails() {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(1, 0, 0, 0));
+        OkHttpClient client = client(limiter, chain -> {
+            throw new IOException("连接被重置");
+        });
+
+        assertThrows(IOException.class, () -> client.newCall(request()).execute());
+        assertEquals(0, inFlight(limiter));
+    }
+
+    @Test
+    void fullQueueFailsImmediatelyWithBusyException() throws IOException {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(1, 0, 0, 5_000));
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+
+        long start = System.nanoTime();
+        assertThrows(UpstreamLimiter.BusyException.class, () -> limiter.acquire(UpstreamLimiter.Lane.NORMAL));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1L, limiter.stats().get("rejected"));
+    }
+
+    @Test
+    void queuedRequestTimesOutWithBusyException() throws IOException {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(1, 0, 1, 50));
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+
+        assertThrows(UpstreamLimiter.BusyException.class, () -> limiter.acquire(UpstreamLimiter.Lane.NORMAL));
+        assertEquals(1L, limiter.stats().get("timedOut"));
+        assertEquals(0, limiter.stats().get("waiting"));
+    }
+
+    @Test
+    void queuedRequestIsAdmittedWhenPermitIsReleased() throws Exception {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(1, 0, 1, 5_000));
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+
+        CompletableFuture<Void> queued = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waitForWaiting(limiter, 1);
+        limiter.release();
+
+        queued.get(5, TimeUnit.SECONDS);
+        assertEquals(1, inFlight(limiter));
+    }
+
+    @Test
+    void tokenBucketLimitsNormalLaneButNotPriorityLane() throws IOException {
+        UpstreamLimiter.Config config = config(10, 0, 1, 50);
+        config.setPermitsPerSecond(1);
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config);
+
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+        assertThrows(UpstreamLimiter.BusyException.class, () -> limiter.acquire(UpstreamLimiter.Lane.NORMAL));
+        limiter.acquire(UpstreamLimiter.Lane.PRIORITY);
+        assertEquals(1L, limiter.stats().get("priorityAdmitted"));
+    }
+
+    @Test
+    void reservedPermitsAreBorrowableOutsideBookingWindow() throws IOException {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(4, 2, 0, 0));
+
+        for (int i = 0; i < 4; i++) {
+            limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+        }
+        assertEquals(4, inFlight(limiter));
+        assertFalse((boolean) limiter.stats().get("reserving"));
+    }
+
+    @Test
+    void reservedPermitsAreKeptForPriorityLaneInsideBookingWindow() throws IOException {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(4, 2, 0, 0));
+        limiter.reserve(60_000);
+
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+        assertThrows(UpstreamLimiter.BusyException.class, () -> limiter.acquire(UpstreamLimiter.Lane.NORMAL));
+        limiter.acquire(UpstreamLimiter.Lane.PRIORITY);
+        limiter.acquire(UpstreamLimiter.Lane.PRIORITY);
+        assertEquals(4, inFlight(limiter));
+    }
+
+    @Test
+    void queuedNormalRequestIsAdmittedWhenBookingWindowEnds() throws IOException {
+        UpstreamLimiter limiter = new UpstreamLimiter("test", config(2, 1, 1, 5_000));
+        limiter.reserve(100);
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+
+        long start = System.nanoTime();
+        limiter.acquire(UpstreamLimiter.Lane.NORMAL);
+        long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(waitedMillis >= 50 && waitedMillis < 2_000, "等待了 " + waitedMillis + "ms");
+    }
+
+    private static OkHttpClient client(UpstreamLimiter limiter, Interceptor upstream) {
+        // 第二个拦截器直接构造响应，代替真实的网络调用
+        return new OkHttpClient.Builder()
+                .addInterceptor(limiter.interceptor())
+                .addInterceptor(upstream)
+                .build();
+    }
+
+    private static Request request() {
+        return new Request.Builder().url("http://upstream.test/").build();
+    }
+
+    private static Response respond(Request request, String body) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .body(ResponseBody.create(body, null))
+                .build();
+    }
+
+    private static int inFlight(UpstreamLimiter limiter) {
+        return (int) limiter.stats().get("inFlight");
+    }
+
+    private static void waitForWaiting(UpstreamLimiter limiter, int waiting) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((int) limiter.stats().get("waiting") != waiting) {
+            if (System.nanoTime() > deadline) fail("排队请求未在 5 秒内出现");
+            Thread.sleep(5);
+        }
+    }
+}
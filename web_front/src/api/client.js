@@ -3,7 +3,13 @@ import request from "@/utils/request";
 //登录
 export const loginApi = (data) => request.post("/client/login", data);
 
-//查询成绩
+//查询成绩 (提交后台同步任务，返回 jobId)
 export const queryScoreApi = (scoreQuery) => request.post("/client/queryScore", scoreQuery);
 
+//查询本地成绩 (不访问教务系统)
+export const queryLocalScoreApi = (scoreQuery) => request.post("/client/queryLocalScore", scoreQuery);
+
+//查询同步任务状态 (wait > 0 时长轮询，最多挂起 wait 秒)
+export const getSyncJobApi = (jobId, wait) => request.get(`/client/syncJob/${jobId}`, { params: { wait } });
+
 //查询课表